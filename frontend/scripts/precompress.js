@@ -0,0 +1,54 @@
+// Writes .gz and .br copies next to the compressible files of the production
+// build, so the backend can serve them as they are (Content-Encoding: gzip/br)
+// instead of compressing the same bytes on every request.
+// Runs automatically after `npm run build` (see "postbuild" in package.json).
+
+const fs = require("fs");
+const path = require("path");
+const zlib = require("zlib");
+
+const buildDir = path.join(__dirname, "..", "build");
+const compressible = /\.(js|css|html|json|svg|txt|map|ico)$/;
+const minSize = 1024;
+
+function* files(dir) {
+  for (const entry of fs.readdirSync(dir, { withFileTypes: true })) {
+    const file = path.join(dir, entry.name);
+    if (entry.isDirectory()) {
+      yield* files(file);
+    } else {
+      yield file;
+    }
+  }
+}
+
+const encoders = {
+  gz: (data) => zlib.gzipSync(data, { level: zlib.constants.Z_BEST_COMPRESSION }),
+  br: (data) =>
+    zlib.brotliCompressSync(data, {
+      params: {
+        [zlib.constants.BROTLI_PARAM_QUALITY]: zlib.constants.BROTLI_MAX_QUALITY,
+        [zlib.constants.BROTLI_PARAM_SIZE_HINT]: data.length,
+      },
+    }),
+};
+
+let written = 0;
+for (const file of files(buildDir)) {
+  if (!compressible.test(file)) {
+    continue;
+  }
+  const data = fs.readFileSync(file);
+  if (data.length < minSize) {
+    continue;
+  }
+  for (const [extension, encode] of Object.entries(encoders)) {
+    const encoded = encode(data);
+    // an encoding that does not make the file smaller is not worth serving
+    if (encoded.length < data.length) {
+      fs.writeFileSync(`${file}.${extension}`, encoded);
+      written++;
+    }
+  }
+}
+console.log(`precompress: wrote ${written} .gz/.br files under ${buildDir}`);
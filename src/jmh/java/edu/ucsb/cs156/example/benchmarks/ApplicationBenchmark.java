@@ -0,0 +1,192 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.StreamSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+
+import edu.ucsb.cs156.example.ExampleApplication;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.models.CurrentUser;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.CurrentUserService;
+
+/**
+ * Repository reads against an in-memory H2 database holding
+ * <code>rows</code> rows per table, and
+ * {@link CurrentUserService#getCurrentUser} for a signed-in Google user,
+ * all going through the beans of the real application (so the
+ * <code>findById</code> of organizations and menu items is served from
+ * their caches, see CacheConfig).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApplicationBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Application {
+
+    @Param({ "100", "10000" })
+    int rows;
+
+    ConfigurableApplicationContext context;
+    UCSBDateRepository ucsbDateRepository;
+    UCSBOrganizationRepository ucsbOrganizationRepository;
+    UCSBDiningCommonsMenuItemRepository menuItemRepository;
+    CurrentUserService currentUserService;
+    List<Long> ucsbDateIds;
+    List<Long> menuItemIds;
+    List<String> orgCodes;
+    User user;
+
+    @Setup(Level.Trial)
+    public void start() {
+      SpringApplication application = new SpringApplication(ExampleApplication.class);
+      application.addInitializers(context -> context.getBeanFactory()
+          .registerSingleton("excludeTestComponents", new ExcludeTestComponents()));
+      context = application.run(
+          "--spring.profiles.active=development",
+          "--spring.datasource.url=jdbc:h2:mem:benchmarks;DB_CLOSE_DELAY=-1",
+          "--spring.jpa.hibernate.ddl-auto=create",
+          "--server.port=0",
+          "--logging.level.root=WARN",
+          "--logging.level.sql=WARN",
+          "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN");
+      ucsbDateRepository = context.getBean(UCSBDateRepository.class);
+      ucsbOrganizationRepository = context.getBean(UCSBOrganizationRepository.class);
+      menuItemRepository = context.getBean(UCSBDiningCommonsMenuItemRepository.class);
+      currentUserService = context.getBean(CurrentUserService.class);
+
+      ucsbDateIds = keys(ucsbDateRepository.saveAll(SampleData.rows(rows, SampleData::ucsbDate)),
+          UCSBDate::getId);
+      menuItemIds = keys(menuItemRepository.saveAll(SampleData.rows(rows, SampleData::menuItem)),
+          UCSBDiningCommonsMenuItem::getId);
+      orgCodes = keys(ucsbOrganizationRepository.saveAll(SampleData.rows(rows, SampleData::ucsbOrganization)),
+          UCSBOrganization::getOrgCode);
+      user = context.getBean(UserRepository.class).save(SampleData.user(0));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+      context.close();
+    }
+
+    static <T, K> List<K> keys(Iterable<T> saved, Function<T, K> keyOf) {
+      return StreamSupport.stream(saved.spliterator(), false).map(keyOf).toList();
+    }
+
+    static <T> T any(List<T> keys) {
+      return keys.get(ThreadLocalRandom.current().nextInt(keys.size()));
+    }
+  }
+
+  /**
+   * The test classes are on the benchmarks' classpath, so keep their
+   * components (such as the mock current user service) out of the scan.
+   */
+  static class ExcludeTestComponents extends TypeExcludeFilter {
+    @Override
+    public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory) {
+      String className = metadataReader.getClassMetadata().getClassName();
+      return className.startsWith("edu.ucsb.cs156.example.testconfig.") || className.matches(".*Tests(\\$.*)?");
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class SignedIn {
+
+    @Setup(Level.Trial)
+    public void signIn(Application application) {
+      User user = application.user;
+      DefaultOAuth2User principal = new DefaultOAuth2User(
+          AuthorityUtils.createAuthorityList("ROLE_USER"),
+          Map.of("sub", user.getGoogleSub(),
+              "email", user.getEmail(),
+              "name", user.getFullName(),
+              "given_name", user.getGivenName(),
+              "family_name", user.getFamilyName(),
+              "picture", user.getPictureUrl(),
+              "email_verified", true,
+              "locale", user.getLocale(),
+              "hd", user.getHostedDomain()),
+          "sub");
+      SecurityContextHolder.getContext().setAuthentication(
+          new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "google"));
+    }
+
+    @TearDown(Level.Trial)
+    public void signOut() {
+      SecurityContextHolder.clearContext();
+    }
+  }
+
+  @Benchmark
+  public Iterable<UCSBDate> ucsbDatesFindAll(Application application) {
+    return application.ucsbDateRepository.findAll();
+  }
+
+  @Benchmark
+  public Optional<UCSBDate> ucsbDatesFindById(Application application) {
+    return application.ucsbDateRepository.findById(Application.any(application.ucsbDateIds));
+  }
+
+  @Benchmark
+  public Iterable<UCSBDiningCommonsMenuItem> menuItemsFindAll(Application application) {
+    return application.menuItemRepository.findAll();
+  }
+
+  @Benchmark
+  public Optional<UCSBDiningCommonsMenuItem> menuItemsFindById(Application application) {
+    return application.menuItemRepository.findById(Application.any(application.menuItemIds));
+  }
+
+  @Benchmark
+  public Iterable<UCSBOrganization> ucsbOrganizationsFindAll(Application application) {
+    return application.ucsbOrganizationRepository.findAll();
+  }
+
+  @Benchmark
+  public Optional<UCSBOrganization> ucsbOrganizationsFindById(Application application) {
+    return application.ucsbOrganizationRepository.findById(Application.any(application.orgCodes));
+  }
+
+  @Benchmark
+  public CurrentUser getCurrentUser(Application application, SignedIn signedIn) {
+    return application.currentUserService.getCurrentUser();
+  }
+}
@@ -0,0 +1,115 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.helpers.NOPAppender;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import edu.ucsb.cs156.example.aop.LoggingAspect;
+
+/**
+ * What {@link LoggingAspect#logControllers} adds to a controller call: a
+ * handler called through a proxy carrying the aspect, against the same
+ * handler called directly. Log events go through a non-blocking async
+ * appender, as configured in <code>logback-spring.xml</code>, to an appender
+ * that discards them, so only the cost paid on the request thread is
+ * measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggingAspectBenchmark {
+
+  public static class BenchmarkController {
+    @GetMapping("/api/benchmark")
+    public String handle() {
+      return "ok";
+    }
+  }
+
+  /** Level of the aspect's logger: INFO writes the line, WARN skips it. */
+  @Param({ "INFO", "WARN" })
+  String level;
+
+  @Param({ "1.0", "0.01" })
+  double sampleRate;
+
+  BenchmarkController direct;
+  BenchmarkController advised;
+  AsyncAppender async;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+    NOPAppender<ILoggingEvent> discard = new NOPAppender<>();
+    discard.setContext(context);
+    discard.start();
+    async = new AsyncAppender();
+    async.setContext(context);
+    async.setNeverBlock(true);
+    async.addAppender(discard);
+    async.start();
+    Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+    root.detachAndStopAllAppenders();
+    root.addAppender(async);
+    context.getLogger(LoggingAspect.class).setLevel(ch.qos.logback.classic.Level.toLevel(level));
+
+    LoggingAspect aspect = new LoggingAspect();
+    ReflectionTestUtils.setField(aspect, "stoplistNames",
+        new String[] { "edu.ucsb.cs156.example.controllers.FrontendProxyController" });
+    ReflectionTestUtils.setField(aspect, "sampleRate", sampleRate);
+    ReflectionTestUtils.invokeMethod(aspect, "init");
+
+    direct = new BenchmarkController();
+    AspectJProxyFactory proxyFactory = new AspectJProxyFactory(direct);
+    proxyFactory.setProxyTargetClass(true);
+    proxyFactory.addAspect(aspect);
+    advised = proxyFactory.getProxy();
+
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/benchmark");
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    RequestContextHolder.resetRequestAttributes();
+    async.stop();
+  }
+
+  @Benchmark
+  public String withoutAspect() {
+    return direct.handle();
+  }
+
+  @Benchmark
+  public String withAspect() {
+    return advised.handle();
+  }
+}
@@ -0,0 +1,130 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import edu.ucsb.cs156.example.entities.Article;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.Recommendation;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.entities.User;
+
+/**
+ * Rows that look like real ones (similar field lengths), numbered so that
+ * every row is distinct. Ids are left at 0 for rows that will be saved.
+ */
+final class SampleData {
+
+  private static final LocalDateTime BASE = LocalDateTime.parse("2022-04-01T12:00:00");
+
+  private SampleData() {
+  }
+
+  static <T> List<T> rows(int count, IntFunction<T> row) {
+    List<T> rows = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      rows.add(row.apply(i));
+    }
+    return rows;
+  }
+
+  static UCSBDate ucsbDate(int i) {
+    return UCSBDate.builder()
+        .quarterYYYYQ("2022" + (1 + i % 4))
+        .name("event number " + i)
+        .localDateTime(BASE.plusHours(i))
+        .build();
+  }
+
+  static UCSBOrganization ucsbOrganization(int i) {
+    return UCSBOrganization.builder()
+        .orgCode("ORG" + i)
+        .orgTranslationShort("Org " + i)
+        .orgTranslation("Student Organization Number " + i)
+        .inactive(i % 10 == 0)
+        .build();
+  }
+
+  static UCSBDiningCommons ucsbDiningCommons(int i) {
+    return UCSBDiningCommons.builder()
+        .code("commons" + i)
+        .name("Dining Commons " + i)
+        .hasSackMeal(i % 2 == 0)
+        .hasTakeOutMeal(i % 3 == 0)
+        .hasDiningCam(true)
+        .latitude(34.409953 + i * 0.0001)
+        .longitude(-119.85277 - i * 0.0001)
+        .build();
+  }
+
+  static UCSBDiningCommonsMenuItem menuItem(int i) {
+    return UCSBDiningCommonsMenuItem.builder()
+        .diningCommonsCode("commons" + i % 4)
+        .name("Menu item " + i)
+        .station("Station " + i % 8)
+        .build();
+  }
+
+  static MenuItemReview menuItemReview(int i) {
+    return MenuItemReview.builder()
+        .itemId(1 + i % 100)
+        .reviewerEmail("reviewer" + i + "@ucsb.edu")
+        .stars(1 + i % 5)
+        .dateReviewed(BASE.plusMinutes(i))
+        .comments("Comments for review " + i)
+        .build();
+  }
+
+  static HelpRequest helpRequest(int i) {
+    return HelpRequest.builder()
+        .requesterEmail("student" + i + "@ucsb.edu")
+        .teamId("s22-6pm-" + i % 8)
+        .tableOrBreakoutRoom("table " + i % 12)
+        .requestTime(BASE.plusMinutes(i))
+        .explanation("Need help with request " + i)
+        .solved(i % 3 == 0)
+        .build();
+  }
+
+  static Recommendation recommendation(int i) {
+    return Recommendation.builder()
+        .requesterEmail("student" + i + "@ucsb.edu")
+        .professorEmail("professor" + i % 20 + "@ucsb.edu")
+        .explanation("Applying to program " + i)
+        .dateRequested(BASE.plusDays(i % 30))
+        .dateNeeded(BASE.plusDays(30 + i % 30))
+        .done(i % 2 == 0)
+        .build();
+  }
+
+  static Article article(int i) {
+    return Article.builder()
+        .title("Article " + i)
+        .url("https://example.org/articles/" + i)
+        .explanation("Why article " + i + " is worth reading")
+        .email("author" + i + "@ucsb.edu")
+        .dateAdded(BASE.plusHours(i))
+        .build();
+  }
+
+  static User user(int i) {
+    return User.builder()
+        .email("user" + i + "@ucsb.edu")
+        .googleSub(String.valueOf(100000000000000000L + i))
+        .pictureUrl("https://lh3.googleusercontent.com/a/user" + i)
+        .fullName("Given" + i + " Family" + i)
+        .givenName("Given" + i)
+        .familyName("Family" + i)
+        .emailVerified(true)
+        .locale("en")
+        .hostedDomain("ucsb.edu")
+        .admin(false)
+        .build();
+  }
+}
@@ -0,0 +1,117 @@
+package edu.ucsb.cs156.example.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import edu.ucsb.cs156.example.entities.Article;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.Recommendation;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.entities.User;
+
+/**
+ * Writing a list of <code>rows</code> entities as JSON, the way the
+ * <code>/all</code> endpoints do, with an ObjectMapper set up like
+ * Spring Boot's (including JSR-310 dates).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+  @Param({ "10", "1000" })
+  int rows;
+
+  ObjectMapper mapper;
+  List<UCSBDate> ucsbDates;
+  List<UCSBOrganization> ucsbOrganizations;
+  List<UCSBDiningCommons> ucsbDiningCommons;
+  List<UCSBDiningCommonsMenuItem> menuItems;
+  List<MenuItemReview> menuItemReviews;
+  List<HelpRequest> helpRequests;
+  List<Recommendation> recommendations;
+  List<Article> articles;
+  List<User> users;
+
+  @Setup
+  public void setup() {
+    mapper = Jackson2ObjectMapperBuilder.json().build();
+    ucsbDates = SampleData.rows(rows, SampleData::ucsbDate);
+    ucsbOrganizations = SampleData.rows(rows, SampleData::ucsbOrganization);
+    ucsbDiningCommons = SampleData.rows(rows, SampleData::ucsbDiningCommons);
+    menuItems = SampleData.rows(rows, SampleData::menuItem);
+    menuItemReviews = SampleData.rows(rows, SampleData::menuItemReview);
+    helpRequests = SampleData.rows(rows, SampleData::helpRequest);
+    recommendations = SampleData.rows(rows, SampleData::recommendation);
+    articles = SampleData.rows(rows, SampleData::article);
+    users = SampleData.rows(rows, SampleData::user);
+  }
+
+  @Benchmark
+  public byte[] ucsbDates() throws JsonProcessingException {
+    return mapper.writeValueAsBytes(ucsbDates);
+  }
+
+  @Benchmark
+  public byte[] ucsbOrganizations() throws JsonProcessingException {
+    return mapper.writeValueAsBytes(ucsbOrganizations);
+  }
+
+  @Benchmark
+  public byte[] ucsbDiningCommons() throws JsonProcessingException {
+    return mapper.writeValueAsBytes(ucsbDiningCommons);
+  }
+
+  @Benchmark
+  public byte[] menuItems() throws JsonProcessingException {
+    return mapper.writeValueAsBytes(menuItems);
+  }
+
+  @Benchmark
+  public byte[] menuItemReviews() throws JsonProcessingException {
+    return mapper.writeValueAsBytes(menuItemReviews);
+  }
+
+  @Benchmark
+  public byte[] helpRequests() throws JsonProcessingException {
+    return mapper.writeValueAsBytes(helpRequests);
+  }
+
+  @Benchmark
+  public byte[] recommendations() throws JsonProcessingException {
+    return mapper.writeValueAsBytes(recommendations);
+  }
+
+  @Benchmark
+  public byte[] articles() throws JsonProcessingException {
+    return mapper.writeValueAsBytes(articles);
+  }
+
+  @Benchmark
+  public byte[] users() throws JsonProcessingException {
+    return mapper.writeValueAsBytes(users);
+  }
+}
@@ -0,0 +1,313 @@
+package edu.ucsb.cs156.example.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.CookieManager;
+import java.net.HttpCookie;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+
+import edu.ucsb.cs156.example.ExampleApplication;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+
+/**
+ * End-to-end load test: boots the application on an in-memory H2 database
+ * filled by the <code>seed</code> profile, then has <code>concurrency</code>
+ * signed-in users (see {@link MockOAuthLoginFilter}) send requests drawn
+ * from the mix (see {@link Operations}) over HTTP, each starting its next
+ * request as soon as the last one is answered. After a warmup, it measures
+ * for <code>duration</code> seconds and prints the throughput, errors and
+ * latency percentiles of each operation.
+ *
+ * Options are given as <code>--name=value</code>; any other option (such as
+ * <code>--logging.level.root=INFO</code>) is passed on to the application.
+ * See docs/load-test.md.
+ */
+public class LoadTest {
+
+  public static void main(String[] args) throws Exception {
+    SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+    int concurrency = Integer.parseInt(option(options, "concurrency", "16"));
+    long warmupSeconds = Long.parseLong(option(options, "warmup", "10"));
+    long durationSeconds = Long.parseLong(option(options, "duration", "30"));
+    int rows = Integer.parseInt(option(options, "rows", "1000"));
+    Map<String, Integer> mix = parseMix(option(options, "mix", Operations.DEFAULT_MIX));
+    String report = option(options, "report", null);
+
+    ConfigurableApplicationContext context = start(args, rows);
+    try {
+      URI base = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+      Operations.Rows saved = saveRows(context, rows);
+      Map<String, Stats> stats = new LinkedHashMap<>();
+      mix.keySet().forEach(name -> stats.put(name, new Stats()));
+
+      List<Worker> workers = new ArrayList<>();
+      for (int i = 0; i < concurrency; i++) {
+        Worker worker = new Worker(i, base, saved, mix, stats);
+        worker.signIn();
+        workers.add(worker);
+      }
+      System.out.printf("load test: %d users, %ds warmup, %ds measured, mix %s%n",
+          concurrency, warmupSeconds, durationSeconds, mix);
+      workers.forEach(Thread::start);
+
+      TimeUnit.SECONDS.sleep(warmupSeconds);
+      stats.values().forEach(Stats::reset);
+      long start = System.nanoTime();
+      TimeUnit.SECONDS.sleep(durationSeconds);
+      Map<String, Histogram> measured = new LinkedHashMap<>();
+      Map<String, Long> errors = new LinkedHashMap<>();
+      stats.forEach((name, s) -> {
+        measured.put(name, s.latencies.getIntervalHistogram());
+        errors.put(name, s.errors.sum());
+      });
+      double seconds = (System.nanoTime() - start) / 1e9;
+      Histogram total = new Histogram(3);
+      measured.values().forEach(total::add);
+      measured.put("total", total);
+      errors.put("total", errors.values().stream().mapToLong(Long::longValue).sum());
+
+      workers.forEach(Worker::interrupt);
+      for (Worker worker : workers) {
+        worker.join();
+      }
+      print(System.out, measured, errors, seconds);
+      if (report != null) {
+        writeCsv(Path.of(report), measured, errors, seconds);
+      }
+    } finally {
+      context.close();
+    }
+  }
+
+  private static String option(SimpleCommandLinePropertySource options, String name, String defaultValue) {
+    return options.containsProperty(name) ? options.getProperty(name) : defaultValue;
+  }
+
+  static Map<String, Integer> parseMix(String mix) {
+    Map<String, Integer> weights = new LinkedHashMap<>();
+    for (String entry : mix.split(",")) {
+      String[] nameAndWeight = entry.trim().split("=");
+      if (nameAndWeight.length != 2 || !Operations.ALL.containsKey(nameAndWeight[0])) {
+        throw new IllegalArgumentException(
+            "bad mix entry \"" + entry + "\"; expected name=weight with name one of " + Operations.ALL.keySet());
+      }
+      weights.put(nameAndWeight[0], Integer.parseInt(nameAndWeight[1]));
+    }
+    return weights;
+  }
+
+  private static ConfigurableApplicationContext start(String[] args, int rows) {
+    SpringApplication application = new SpringApplication(ExampleApplication.class);
+    application.addInitializers(context -> {
+      context.getBeanFactory().registerSingleton("excludeTestComponents", new ExcludeTestComponents());
+      FilterRegistrationBean<MockOAuthLoginFilter> login = new FilterRegistrationBean<>(new MockOAuthLoginFilter());
+      login.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+      context.getBeanFactory().registerSingleton("mockOAuthLoginFilter", login);
+    });
+    // on top of development, which the loadtest Maven profile sets like localhost does
+    application.setAdditionalProfiles("seed");
+    // as system properties, these win over the profiles' files (which log every statement) but not over options
+    Map.ofEntries(
+        Map.entry("spring.datasource.url", "jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1"),
+        Map.entry("spring.devtools.restart.enabled", "false"),
+        Map.entry("spring.jpa.hibernate.ddl-auto", "create"),
+        Map.entry("server.port", "0"),
+        Map.entry("logging.level.root", "WARN"),
+        Map.entry("logging.level.sql", "WARN"),
+        Map.entry("logging.level.org.hibernate.type.descriptor.sql.BasicBinder", "WARN"),
+        Map.entry("app.seed.users", String.valueOf(rows)),
+        Map.entry("app.seed.menuItems", String.valueOf(rows)),
+        Map.entry("app.seed.menuItemReviews", String.valueOf(rows * 10)),
+        Map.entry("app.seed.helpRequests", String.valueOf(rows)),
+        Map.entry("app.seed.exitWhenDone", "false"))
+        .forEach(System.getProperties()::putIfAbsent);
+    return application.run(args);
+  }
+
+  /** Dates and organizations are not seeded, so save <code>rows</code> of each. */
+  private static Operations.Rows saveRows(ConfigurableApplicationContext context, int rows) {
+    List<Long> ucsbDateIds = StreamSupport.stream(context.getBean(UCSBDateRepository.class).saveAll(
+        LongStream.range(0, rows).mapToObj(n -> UCSBDate.builder()
+            .quarterYYYYQ("2022" + (1 + n % 4))
+            .name("load-test-date-" + n)
+            .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00").plusDays(n))
+            .build()).toList()).spliterator(), false)
+        .map(UCSBDate::getId)
+        .toList();
+    List<String> orgCodes = StreamSupport.stream(context.getBean(UCSBOrganizationRepository.class).saveAll(
+        LongStream.range(0, rows).mapToObj(n -> UCSBOrganization.builder()
+            .orgCode("LT" + n)
+            .orgTranslationShort("Load Test " + n)
+            .orgTranslation("Load Test Organization " + n)
+            .inactive(n % 10 == 0)
+            .build()).toList()).spliterator(), false)
+        .map(UCSBOrganization::getOrgCode)
+        .toList();
+    List<Long> menuItemIds = context.getBean(UCSBDiningCommonsMenuItemRepository.class).findAllIds();
+    return new Operations.Rows(ucsbDateIds, orgCodes, menuItemIds);
+  }
+
+  /** Latencies (in microseconds) and failed requests of one operation. */
+  static class Stats {
+    final Recorder latencies = new Recorder(3);
+    final LongAdder errors = new LongAdder();
+
+    void reset() {
+      latencies.getIntervalHistogram();
+      errors.reset();
+    }
+  }
+
+  /** One signed-in user, with its own session and CSRF token, sending one request at a time. */
+  static class Worker extends Thread {
+    private final int user;
+    private final URI base;
+    private final Operations.Rows rows;
+    private final String[] names;
+    private final int[] cumulativeWeights;
+    private final Map<String, Stats> stats;
+    private final CookieManager cookies = new CookieManager();
+    private final HttpClient client;
+    private String csrfToken;
+
+    Worker(int user, URI base, Operations.Rows rows, Map<String, Integer> mix, Map<String, Stats> stats) {
+      super("load-test-user-" + user);
+      this.user = user;
+      this.base = base;
+      this.rows = rows;
+      this.stats = stats;
+      this.names = mix.keySet().toArray(String[]::new);
+      this.cumulativeWeights = new int[names.length];
+      int total = 0;
+      for (int i = 0; i < names.length; i++) {
+        total += mix.get(names[i]);
+        cumulativeWeights[i] = total;
+      }
+      this.client = HttpClient.newBuilder()
+          .version(HttpClient.Version.HTTP_1_1)
+          .cookieHandler(cookies)
+          .connectTimeout(Duration.ofSeconds(10))
+          .build();
+    }
+
+    /** Gets a session, which the filter signs in, and the CSRF cookie that writes must echo. */
+    void signIn() throws IOException, InterruptedException {
+      client.send(HttpRequest.newBuilder(base.resolve("/api/currentUser"))
+          .header(MockOAuthLoginFilter.USER_HEADER, String.valueOf(user))
+          .build(), BodyHandlers.discarding());
+      csrfToken = cookies.getCookieStore().getCookies().stream()
+          .filter(cookie -> cookie.getName().equals("XSRF-TOKEN"))
+          .map(HttpCookie::getValue)
+          .findFirst()
+          .orElseThrow(() -> new IllegalStateException("no XSRF-TOKEN cookie after signing in"));
+    }
+
+    @Override
+    public void run() {
+      while (!isInterrupted()) {
+        String name = next();
+        BiFunction<URI, Operations.Rows, HttpRequest.Builder> operation = Operations.ALL.get(name);
+        HttpRequest request = operation.apply(base, rows)
+            .header("X-XSRF-TOKEN", csrfToken)
+            .build();
+        Stats s = stats.get(name);
+        long start = System.nanoTime();
+        try {
+          int status = client.send(request, BodyHandlers.discarding()).statusCode();
+          s.latencies.recordValue((System.nanoTime() - start) / 1000);
+          if (status >= 400) {
+            s.errors.increment();
+          }
+        } catch (IOException e) {
+          s.errors.increment();
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+    }
+
+    private String next() {
+      int pick = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+      for (int i = 0; i < names.length; i++) {
+        if (pick < cumulativeWeights[i]) {
+          return names[i];
+        }
+      }
+      throw new IllegalStateException();
+    }
+  }
+
+  private static void print(PrintStream out, Map<String, Histogram> measured, Map<String, Long> errors,
+      double seconds) {
+    out.printf("%n%-20s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+        "operation", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "p999 ms", "max ms");
+    measured.forEach((name, histogram) -> out.printf("%-20s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+        row(name, histogram, errors.get(name), seconds)));
+  }
+
+  private static void writeCsv(Path path, Map<String, Histogram> measured, Map<String, Long> errors, double seconds)
+      throws IOException {
+    List<String> lines = new ArrayList<>();
+    lines.add("operation,requests,errors,requestsPerSecond,p50Millis,p95Millis,p99Millis,p999Millis,maxMillis");
+    measured.forEach((name, histogram) -> lines.add("%s,%d,%d,%.1f,%.2f,%.2f,%.2f,%.2f,%.2f".formatted(
+        row(name, histogram, errors.get(name), seconds))));
+    if (path.getParent() != null) {
+      Files.createDirectories(path.getParent());
+    }
+    Files.write(path, lines);
+  }
+
+  private static Object[] row(String name, Histogram histogram, long errors, double seconds) {
+    return new Object[] { name, histogram.getTotalCount(), errors, histogram.getTotalCount() / seconds,
+        millis(histogram, 50), millis(histogram, 95), millis(histogram, 99), millis(histogram, 99.9),
+        histogram.getMaxValue() / 1000.0 };
+  }
+
+  private static double millis(Histogram histogram, double percentile) {
+    return histogram.getValueAtPercentile(percentile) / 1000.0;
+  }
+
+  /**
+   * The test classes are on the load test's classpath, so keep their
+   * components (such as the mock current user service) out of the scan.
+   */
+  static class ExcludeTestComponents extends TypeExcludeFilter {
+    @Override
+    public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory) {
+      String className = metadataReader.getClassMetadata().getClassName();
+      return className.startsWith("edu.ucsb.cs156.example.testconfig.") || className.matches(".*Tests(\\$.*)?");
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package edu.ucsb.cs156.example.loadtest;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Signs every new session in as a Google user with ROLE_USER and
+ * ROLE_ADMIN, as if it had come back from the OAuth login, so that the
+ * load test can call any <code>/api</code> endpoint without Google.
+ * The <code>X-Load-Test-User</code> header of the first request of a
+ * session picks the user (<code>load-test-user-N@example.org</code>).
+ *
+ * Only registered by {@link LoadTest}, in front of Spring Security, which
+ * then finds the signed-in context in the session like any other.
+ */
+class MockOAuthLoginFilter extends OncePerRequestFilter {
+
+  static final String USER_HEADER = "X-Load-Test-User";
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    HttpSession session = request.getSession();
+    if (session.getAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY) == null) {
+      String user = request.getHeader(USER_HEADER) == null ? "0" : request.getHeader(USER_HEADER);
+      session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, signedIn(user));
+    }
+    chain.doFilter(request, response);
+  }
+
+  private static SecurityContext signedIn(String user) {
+    String email = "load-test-user-" + user + "@example.org";
+    DefaultOAuth2User principal = new DefaultOAuth2User(
+        AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN"),
+        Map.of("sub", "load-test-" + user,
+            "email", email,
+            "name", "Load Test " + user,
+            "given_name", "Load",
+            "family_name", "Test " + user,
+            "picture", "https://example.org/" + user + ".png",
+            "email_verified", true,
+            "locale", "en",
+            "hd", "example.org"),
+        "sub");
+    return new SecurityContextImpl(new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "google"));
+  }
+}
@@ -0,0 +1,66 @@
+package edu.ucsb.cs156.example.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiFunction;
+
+/**
+ * The requests the load test can make, by name. Reads go to the endpoints
+ * the frontend calls most; writes create and change rows, which also
+ * invalidates the snapshots and caches behind those reads.
+ */
+final class Operations {
+
+  /** Rows the requests pick from: the ones the load test saved before it started. */
+  record Rows(List<Long> ucsbDateIds, List<String> orgCodes, List<Long> menuItemIds) {
+  }
+
+  /** Relative weights used unless <code>--mix</code> is given; they add up to 100. */
+  static final String DEFAULT_MIX = "currentUser=5,dates.all=10,dates.get=15,dates.post=3,dates.put=3,"
+      + "organizations.get=5,menuItems.page=10,menuItems.get=15,reviews.ratings=15,reviews.top=4,"
+      + "reviews.post=5,helpRequests.queue=10";
+
+  static final Map<String, BiFunction<URI, Rows, HttpRequest.Builder>> ALL = new LinkedHashMap<>();
+
+  static {
+    ALL.put("currentUser", (base, rows) -> get(base, "/api/currentUser"));
+    ALL.put("dates.all", (base, rows) -> get(base, "/api/ucsbdates/all"));
+    ALL.put("dates.get", (base, rows) -> get(base, "/api/ucsbdates?id=" + any(rows.ucsbDateIds())));
+    ALL.put("dates.post", (base, rows) -> HttpRequest.newBuilder(base.resolve(
+        "/api/ucsbdates/post?quarterYYYYQ=20224&name=load-test&localDateTime=2022-10-01T00:00:00"))
+        .POST(BodyPublishers.noBody()));
+    ALL.put("dates.put", (base, rows) -> HttpRequest.newBuilder(base.resolve(
+        "/api/ucsbdates?id=" + any(rows.ucsbDateIds())))
+        .header("Content-Type", "application/json")
+        .PUT(BodyPublishers.ofString(
+            "{\"quarterYYYYQ\":\"20224\",\"name\":\"load-test-%d\",\"localDateTime\":\"2022-10-01T00:00:00\"}"
+                .formatted(ThreadLocalRandom.current().nextInt(1000)))));
+    ALL.put("organizations.get", (base, rows) -> get(base, "/api/ucsborganization?orgCode=" + any(rows.orgCodes())));
+    ALL.put("menuItems.page", (base, rows) -> get(base, "/api/UCSBDiningCommonsMenuItem/page?limit=100"));
+    ALL.put("menuItems.get", (base, rows) -> get(base, "/api/UCSBDiningCommonsMenuItem?id=" + any(rows.menuItemIds())));
+    ALL.put("reviews.ratings", (base, rows) -> get(base, "/api/MenuItemReview/ratings?itemId=" + any(rows.menuItemIds())));
+    ALL.put("reviews.top", (base, rows) -> get(base, "/api/MenuItemReview/ratings/top"));
+    ALL.put("reviews.post", (base, rows) -> HttpRequest.newBuilder(base.resolve(
+        "/api/MenuItemReview/post?itemId=%d&reviewerEmail=load-test@example.org&stars=%d"
+            .formatted(any(rows.menuItemIds()), 1 + ThreadLocalRandom.current().nextInt(5))
+            + "&dateReviewed=2022-10-01T00:00:00&comments=load-test"))
+        .POST(BodyPublishers.noBody()));
+    ALL.put("helpRequests.queue", (base, rows) -> get(base, "/api/helprequest/queue"));
+  }
+
+  private Operations() {
+  }
+
+  private static HttpRequest.Builder get(URI base, String path) {
+    return HttpRequest.newBuilder(base.resolve(path)).GET();
+  }
+
+  private static <T> T any(List<T> rows) {
+    return rows.get(ThreadLocalRandom.current().nextInt(rows.size()));
+  }
+}
@@ -2,18 +2,30 @@ package edu.ucsb.cs156.example.aop;
 
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.JoinPoint;
-import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
+import org.aspectj.lang.annotation.Pointcut;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
+import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logs one line per controller invocation, e.g.
+ * <code>request method=GET uri=/api/ucsbdates/all handler=UCSBDatesController.allUCSBDates</code>.
+ *
+ * Controllers listed in <code>app.requestLogging.stoplist</code> are never
+ * logged, and only a <code>app.requestLogging.sampleRate</code> fraction of
+ * the rest is. Nothing is looked up or formatted unless the line is written.
+ */
 
 @Slf4j
 @Aspect
@@ -29,25 +41,42 @@ public class LoggingAspect {
       @annotation(org.springframework.web.bind.annotation.PatchMapping)
       """;
 
-  private ArrayList<String> stoplist = new ArrayList<String>(Arrays.asList(
-      "edu.ucsb.cs156.example.controllers.FrontendProxyController"));
+  @Value("${app.requestLogging.stoplist:edu.ucsb.cs156.example.controllers.FrontendProxyController}")
+  private String[] stoplistNames;
+
+  @Value("${app.requestLogging.sampleRate:1.0}")
+  private double sampleRate;
+
+  private Set<String> stoplist;
+
+  @PostConstruct
+  void init() {
+    stoplist = Set.of(stoplistNames);
+  }
+
+  /** Every request handler method; also used by {@link MetricsAspect}. */
+  @Pointcut(pointcut)
+  public void controllerMethods() {
+  }
 
-  @Before(pointcut)
+  @Before("controllerMethods()")
   public void logControllers(JoinPoint joinPoint) {
-    getCurrentHttpRequest().ifPresent(
-        request -> {
-          String declaringTypeName = joinPoint.getSignature().getDeclaringTypeName();
-          if (!stoplist.contains(declaringTypeName)) {
-            log.info("===== %s %s handled by %s in %s".formatted(request.getMethod(), request.getRequestURI(),
-                joinPoint.getSignature().getName(), declaringTypeName));
-          }
-        });
+    if (!log.isInfoEnabled() || !sampled()) {
+      return;
+    }
+    Signature signature = joinPoint.getSignature();
+    if (stoplist.contains(signature.getDeclaringTypeName())) {
+      return;
+    }
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    if (attributes instanceof ServletRequestAttributes servletAttributes) {
+      HttpServletRequest request = servletAttributes.getRequest();
+      log.info("request method={} uri={} handler={}.{}", request.getMethod(), request.getRequestURI(),
+          signature.getDeclaringType().getSimpleName(), signature.getName());
+    }
   }
 
-  private static Optional<HttpServletRequest> getCurrentHttpRequest() {
-    return Optional.ofNullable(RequestContextHolder.getRequestAttributes())
-        .filter(ServletRequestAttributes.class::isInstance)
-        .map(ServletRequestAttributes.class::cast)
-        .map(ServletRequestAttributes::getRequest);
+  private boolean sampled() {
+    return sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate;
   }
 }
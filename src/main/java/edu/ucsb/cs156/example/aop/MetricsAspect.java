@@ -0,0 +1,72 @@
+package edu.ucsb.cs156.example.aop;
+
+import edu.ucsb.cs156.example.services.SqlStatementCounter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records, for each controller method, how long its calls take
+ * (<code>app.handler</code>) and how many SQL statements each call issues
+ * (<code>app.handler.sql.statements</code>), both tagged with
+ * <code>controller</code> and <code>method</code>. See
+ * <code>/actuator/metrics</code> or <code>/actuator/prometheus</code>.
+ *
+ * For a streamed response (<code>StreamingResponseBody</code>) only the work
+ * done before the body is written is counted.
+ */
+
+@Aspect
+@Component
+public class MetricsAspect {
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Autowired
+  private SqlStatementCounter sqlStatements;
+
+  private final Map<Method, HandlerMeters> metersByHandler = new ConcurrentHashMap<>();
+
+  private record HandlerMeters(Timer latency, DistributionSummary statements) {
+  }
+
+  @Around("edu.ucsb.cs156.example.aop.LoggingAspect.controllerMethods()")
+  public Object recordControllers(ProceedingJoinPoint joinPoint) throws Throwable {
+    HandlerMeters meters = metersByHandler.computeIfAbsent(
+        ((MethodSignature) joinPoint.getSignature()).getMethod(), this::register);
+    long statementsBefore = sqlStatements.count();
+    long start = System.nanoTime();
+    try {
+      return joinPoint.proceed();
+    } finally {
+      meters.latency().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      meters.statements().record(sqlStatements.count() - statementsBefore);
+    }
+  }
+
+  private HandlerMeters register(Method handler) {
+    Tags tags = Tags.of("controller", handler.getDeclaringClass().getSimpleName(), "method", handler.getName());
+    return new HandlerMeters(
+        Timer.builder("app.handler")
+            .description("Time spent in a controller method")
+            .tags(tags)
+            .register(meterRegistry),
+        DistributionSummary.builder("app.handler.sql.statements")
+            .description("SQL statements prepared by one call of a controller method")
+            .tags(tags)
+            .register(meterRegistry));
+  }
+}
@@ -0,0 +1,79 @@
+package edu.ucsb.cs156.example.config;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.events.TableChangedEvent;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Read-through caches for reference entities that are looked up by id far
+ * more often than they change; the repositories mark their
+ * <code>findById</code> as <code>@Cacheable</code> with these names.
+ *
+ * Each cache holds at most <code>app.entityCache.maximumSize</code> rows for
+ * at most <code>app.entityCache.expireAfterWriteSeconds</code>. A cache is
+ * emptied after any committed write to its table ({@link TableChangedEvent});
+ * the age bound limits how long a read that raced such a write can keep
+ * serving the old row. Ids that are not found are not cached, so inserts
+ * never leave a stale miss behind.
+ *
+ * Hits and misses are recorded and reported as the <code>cache.gets</code>
+ * metric (see <code>/actuator/metrics/cache.gets</code>).
+ */
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+  public static final String UCSB_DINING_COMMONS = "ucsbDiningCommons";
+  public static final String UCSB_ORGANIZATIONS = "ucsbOrganizations";
+  public static final String UCSB_DINING_COMMONS_MENU_ITEMS = "ucsbDiningCommonsMenuItems";
+
+  private static final Map<Class<?>, String> CACHE_BY_ENTITY = Map.of(
+      UCSBDiningCommons.class, UCSB_DINING_COMMONS,
+      UCSBOrganization.class, UCSB_ORGANIZATIONS,
+      UCSBDiningCommonsMenuItem.class, UCSB_DINING_COMMONS_MENU_ITEMS);
+
+  @Value("${app.entityCache.maximumSize:1000}")
+  private long maximumSize;
+
+  @Value("${app.entityCache.expireAfterWriteSeconds:600}")
+  private long expireAfterWriteSeconds;
+
+  @Bean
+  public CacheManager cacheManager() {
+    CaffeineCacheManager cacheManager = new CaffeineCacheManager(
+        UCSB_DINING_COMMONS, UCSB_ORGANIZATIONS, UCSB_DINING_COMMONS_MENU_ITEMS);
+    cacheManager.setCaffeine(Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+        .recordStats());
+    return cacheManager;
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onTableChanged(TableChangedEvent event) {
+    String name = CACHE_BY_ENTITY.get(event.getEntityType());
+    if (name == null) {
+      return;
+    }
+    Cache cache = cacheManager().getCache(name);
+    if (cache != null) {
+      cache.clear();
+    }
+  }
+}
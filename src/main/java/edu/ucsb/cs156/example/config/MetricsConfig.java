@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.config;
+
+import edu.ucsb.cs156.example.services.SqlStatementCounter;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Lets {@link SqlStatementCounter} see every statement Hibernate prepares,
+ * so that {@link edu.ucsb.cs156.example.aop.MetricsAspect} can report SQL
+ * statements per controller call.
+ */
+
+@Configuration
+public class MetricsConfig {
+
+  @Bean
+  public HibernatePropertiesCustomizer sqlStatementCounting(SqlStatementCounter sqlStatements) {
+    return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, sqlStatements);
+  }
+}
@@ -0,0 +1,36 @@
+package edu.ucsb.cs156.example.config;
+
+import edu.ucsb.cs156.example.services.SeedDataService;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * With the <code>seed</code> profile active, fills the database through
+ * {@link SeedDataService} before the application starts serving requests,
+ * then carries on running (or exits, with <code>app.seed.exitWhenDone</code>).
+ * See docs/seed-data.md.
+ */
+
+@Configuration
+@Profile("seed")
+public class SeedDataConfig {
+
+  @Value("${app.seed.exitWhenDone:false}")
+  private boolean exitWhenDone;
+
+  @Bean
+  public ApplicationRunner seedDataRunner(SeedDataService seedData, ConfigurableApplicationContext context) {
+    return args -> {
+      seedData.seed();
+      if (exitWhenDone) {
+        System.exit(SpringApplication.exit(context));
+      }
+    };
+  }
+}
@@ -0,0 +1,50 @@
+package edu.ucsb.cs156.example.config;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+
+/**
+ * How the production frontend bundle (copied to <code>classpath:/public</code>
+ * by the production Maven profile) is served.
+ *
+ * Files under <code>/static</code> carry a content hash in their names, so
+ * they are cached for <code>app.frontend.immutableMaxAgeDays</code> and
+ * marked immutable. The other files (<code>index.html</code>, the manifest,
+ * ...) keep their names across deploys and are revalidated instead (see
+ * <code>spring.web.resources.*</code> in application.properties). Either way
+ * the <code>.br</code> or <code>.gz</code> copy written at build time (see
+ * <code>frontend/scripts/precompress.js</code>) is sent when the client
+ * accepts that encoding.
+ */
+
+@Configuration
+public class StaticResourceConfig implements WebMvcConfigurer {
+
+  @Value("${app.frontend.immutableMaxAgeDays:365}")
+  private long immutableMaxAgeDays;
+
+  @Override
+  public void addResourceHandlers(ResourceHandlerRegistry registry) {
+    registry.addResourceHandler("/static/**")
+        .addResourceLocations("classpath:/public/static/")
+        .setCacheControl(immutable(CacheControl.maxAge(immutableMaxAgeDays, TimeUnit.DAYS).cachePublic()))
+        .resourceChain(true)
+        .addResolver(new EncodedResourceResolver());
+  }
+
+  /** Adds the <code>immutable</code> directive, which CacheControl only learns in Spring 6. */
+  private static CacheControl immutable(CacheControl cacheControl) {
+    return new CacheControl() {
+      @Override
+      public String getHeaderValue() {
+        return cacheControl.getHeaderValue() + ", immutable";
+      }
+    };
+  }
+}
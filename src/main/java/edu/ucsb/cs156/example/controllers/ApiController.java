@@ -1,20 +1,48 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.EntityPreconditionFailedException;
+import edu.ucsb.cs156.example.errors.EntityVersionConflictException;
+import edu.ucsb.cs156.example.errors.InvalidEntityException;
 import net.bytebuddy.implementation.bytecode.Throw;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import edu.ucsb.cs156.example.models.CurrentUser;
+import edu.ucsb.cs156.example.models.JsonSnapshot;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.TableVersionService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
 @Slf4j
 public abstract class ApiController {
+  public static final int MAX_PAGE_LIMIT = 1000;
+
+  /**
+   * Browsers may keep a copy but must revalidate it on every use; without this
+   * Spring Security's default of <code>no-store</code> would make ETags useless.
+   */
+  private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
   @Autowired
   private CurrentUserService currentUserService;
 
@@ -26,6 +54,176 @@ public abstract class ApiController {
     return Map.of("message", message);
   }
 
+  /**
+   * Pageable for a keyset query; asks for one row more than the (clamped)
+   * limit so that {@link #keysetPage} can tell whether another page exists.
+   */
+  protected Pageable keysetPageable(int limit) {
+    return PageRequest.of(0, clampLimit(limit) + 1);
+  }
+
+  /** First page of at most <code>limit</code> (clamped to {@link #MAX_PAGE_LIMIT}) rows. */
+  protected Pageable pageable(int limit) {
+    return PageRequest.of(0, clampLimit(limit));
+  }
+
+  protected <T, K> KeysetPage<T, K> keysetPage(List<T> rows, int limit, Function<T, K> keyOf) {
+    int pageSize = clampLimit(limit);
+    if (rows.size() <= pageSize) {
+      return new KeysetPage<>(rows, null);
+    }
+    List<T> content = rows.subList(0, pageSize);
+    return new KeysetPage<>(content, keyOf.apply(content.get(pageSize - 1)));
+  }
+
+  protected static int clampLimit(int limit) {
+    return Math.max(1, Math.min(limit, MAX_PAGE_LIMIT));
+  }
+
+  protected static String etag(long version) {
+    return "\"" + version + "\"";
+  }
+
+  /**
+   * 200 response carrying the row's version as a strong ETag; for a GET with
+   * a matching <code>If-None-Match</code>, Spring turns it into a bodyless 304.
+   */
+  protected <T> ResponseEntity<T> withETag(T body, long version) {
+    return ResponseEntity.ok().eTag(etag(version)).body(body);
+  }
+
+  /**
+   * The version named by an <code>If-Match</code> header (<code>"3"</code>,
+   * <code>W/"3"</code>, or <code>"3.1650000000"</code> as sent by
+   * {@link #conditionalOnTable}), or null when there is no header or it is <code>*</code>.
+   * A value that is not one of our ETags can never match, so it fails the precondition.
+   */
+  protected static Long ifMatchVersion(String ifMatch, Class<?> entityType, Object id) {
+    if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+      return null;
+    }
+    String tag = ifMatch.trim();
+    if (tag.startsWith("W/")) {
+      tag = tag.substring(2);
+    }
+    if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+      tag = tag.substring(1, tag.length() - 1);
+    }
+    int tableStamp = tag.indexOf('.');
+    if (tableStamp >= 0) {
+      tag = tag.substring(0, tableStamp);
+    }
+    try {
+      return Long.parseLong(tag);
+    } catch (NumberFormatException e) {
+      throw new EntityPreconditionFailedException(entityType, id, ifMatch);
+    }
+  }
+
+  /**
+   * GET response for data that can only change when its table's stamp (see
+   * {@link TableVersionService}) moves. When the client's ETag or
+   * <code>If-Modified-Since</code> already covers the current stamp, this is
+   * a 304 and <code>loader</code> is never called. Otherwise the ETag is the
+   * stamp, prefixed with the row's version when <code>versionOf</code> is
+   * given, so that it still works as an <code>If-Match</code>.
+   * <code>lastModified</code> is the table's, and -1 leaves out the
+   * <code>Last-Modified</code> header (and ignores <code>If-Modified-Since</code>).
+   * A <code>tableStamp</code> of -1 (conditional GETs turned off) never
+   * answers 304, and the ETag is then only the row's version, if any.
+   *
+   * The stamp and the last modified time must be read before the data: a write
+   * in between only makes the client fetch again.
+   */
+  protected <T> ResponseEntity<T> conditionalOnTable(HttpHeaders request, long tableStamp, long lastModified,
+      Supplier<T> loader, ToLongFunction<T> versionOf) {
+    List<String> ifNoneMatch = request.getIfNoneMatch();
+    String cached = ifNoneMatch.stream()
+      .filter(tag -> tableStamp >= 0 && tableStampOf(tag) == tableStamp)
+      .findFirst()
+      .orElse(null);
+    if (cached != null || (ifNoneMatch.isEmpty() && lastModified >= 0 && request.getIfModifiedSince() >= lastModified)) {
+      ResponseEntity.BodyBuilder notModified = ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+        .cacheControl(REVALIDATE);
+      if (lastModified >= 0) {
+        notModified.lastModified(lastModified);
+      }
+      if (cached != null) {
+        notModified.eTag(cached);
+      }
+      return notModified.build();
+    }
+
+    T body = loader.get();
+    ResponseEntity.BodyBuilder ok = ResponseEntity.ok()
+      .cacheControl(REVALIDATE);
+    if (tableStamp < 0) {
+      if (versionOf != null) {
+        ok.eTag(etag(versionOf.applyAsLong(body)));
+      }
+    } else {
+      ok.eTag(versionOf == null
+        ? etag(tableStamp)
+        : "\"" + versionOf.applyAsLong(body) + "." + tableStamp + "\"");
+    }
+    if (lastModified >= 0) {
+      ok.lastModified(lastModified);
+    }
+    return ok.body(body);
+  }
+
+  /**
+   * {@link #conditionalOnTable} for a body that was encoded ahead of time: the
+   * bytes are written as they are, the gzipped ones when the client accepts
+   * gzip. Both encodings share one (hence weak) ETag.
+   */
+  protected ResponseEntity<byte[]> jsonSnapshotOnTable(HttpHeaders request, long tableStamp, long lastModified,
+      Supplier<JsonSnapshot> loader) {
+    ResponseEntity<JsonSnapshot> response = conditionalOnTable(request, tableStamp, lastModified, loader, null);
+    HttpHeaders headers = new HttpHeaders();
+    headers.putAll(response.getHeaders());
+    headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+    JsonSnapshot snapshot = response.getBody();
+    if (snapshot == null) {
+      return new ResponseEntity<>(headers, response.getStatusCode());
+    }
+
+    if (headers.getETag() != null) {
+      headers.setETag("W/" + headers.getETag());
+    }
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    if (snapshot.getGzip() != null && acceptsGzip(request)) {
+      headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+      return new ResponseEntity<>(snapshot.getGzip(), headers, HttpStatus.OK);
+    }
+    return new ResponseEntity<>(snapshot.getJson(), headers, HttpStatus.OK);
+  }
+
+  private static boolean acceptsGzip(HttpHeaders request) {
+    return request.getOrEmpty(HttpHeaders.ACCEPT_ENCODING).stream()
+      .flatMap(value -> Arrays.stream(value.split(",")))
+      .map(coding -> coding.trim().toLowerCase().replace(" ", ""))
+      .anyMatch(coding -> coding.equals("gzip") || (coding.startsWith("gzip;") && !coding.matches("gzip;q=0(\\.0*)?")));
+  }
+
+  /** The table stamp at the end of an ETag from {@link #conditionalOnTable}, or -1. */
+  private static long tableStampOf(String tag) {
+    String opaque = tag.startsWith("W/") ? tag.substring(2) : tag;
+    opaque = opaque.replace("\"", "");
+    try {
+      return Long.parseLong(opaque.substring(opaque.lastIndexOf('.') + 1));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  protected ResponseEntity<StreamingResponseBody> jsonAttachment(String filename, StreamingResponseBody body) {
+    return ResponseEntity.ok()
+      .contentType(MediaType.APPLICATION_JSON)
+      .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+      .body(body);
+  }
+
   @ExceptionHandler({ EntityNotFoundException.class })
   @ResponseStatus(HttpStatus.NOT_FOUND)
   public Object handleGenericException(Throwable e) {
@@ -34,4 +232,31 @@ public abstract class ApiController {
       "message", e.getMessage()
     );
   }
+
+  @ExceptionHandler({ InvalidEntityException.class })
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public Object handleInvalidEntityException(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
+
+  @ExceptionHandler({ EntityPreconditionFailedException.class })
+  @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+  public Object handlePreconditionFailedException(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
+
+  @ExceptionHandler({ EntityVersionConflictException.class, ObjectOptimisticLockingFailureException.class })
+  @ResponseStatus(HttpStatus.CONFLICT)
+  public Object handleConflictException(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
 }
@@ -2,7 +2,10 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.Article;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.EntityPreconditionFailedException;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.ArticleRepository;
+import edu.ucsb.cs156.example.services.JsonExportService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -12,18 +15,25 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.util.List;
+import java.util.Optional;
+
 import java.time.LocalDateTime;
 
 @Api(description = "Article")
@@ -35,23 +45,46 @@ public class ArticleController extends ApiController {
     @Autowired
     ArticleRepository articleRepository;
 
-    @ApiOperation(value = "List all articles")
+    @Autowired
+    JsonExportService jsonExportService;
+
+    @ApiOperation(value = "List all articles, optionally only those with a given title")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<Article> allArticles() {
-        Iterable<Article> articles = articleRepository.findAll();
-        return articles;
+    public Iterable<Article> allArticles(
+            @ApiParam("only articles with exactly this title") @RequestParam(required = false) String title) {
+        if (title != null) {
+            return articleRepository.findAllByTitle(title);
+        }
+        return articleRepository.findAll();
+    }
+
+    @ApiOperation(value = "List articles one page at a time, ordered by id")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/page")
+    public KeysetPage<Article, Long> pageArticles(
+            @ApiParam("only return rows whose id is after this one (the previous page's next)") @RequestParam(defaultValue = "0") long afterId,
+            @ApiParam("maximum number of rows to return (at most 1000)") @RequestParam(defaultValue = "100") int limit) {
+        List<Article> rows = articleRepository.findByIdGreaterThanOrderByIdAsc(afterId, keysetPageable(limit));
+        return keysetPage(rows, limit, Article::getId);
+    }
+
+    @ApiOperation(value = "Export all articles as a streamed JSON array")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportArticles() {
+        return jsonAttachment("article.json", jsonExportService.exportJson(articleRepository::streamAll));
     }
 
     @ApiOperation(value = "Get a single article")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public Article getById(
+    public ResponseEntity<Article> getById(
             @ApiParam("id") @RequestParam Long id) {
         Article article = articleRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Article.class, id));
 
-        return article;
+        return withETag(article, article.getVersion());
     }
 
     
@@ -88,31 +121,32 @@ public class ArticleController extends ApiController {
     @DeleteMapping("")
     public Object deleteArticle(
             @ApiParam("id") @RequestParam Long id) {
-        Article article = articleRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Article.class, id));
+        if (articleRepository.deleteRow(id) == 0) {
+            throw new EntityNotFoundException(Article.class, id);
+        }
 
-        articleRepository.delete(article);
         return genericMessage("Article with id %s deleted".formatted(id));
     }
     
     @ApiOperation(value = "Update a single article")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public Article updateArticle(
+    public ResponseEntity<Article> updateArticle(
             @ApiParam("id") @RequestParam Long id,
-            @RequestBody @Valid Article incoming) {
-
-        Article article = articleRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Article.class, id));
-
-        article.setTitle(incoming.getTitle());
-        article.setUrl(incoming.getUrl());
-        article.setExplanation(incoming.getExplanation());
-        article.setEmail(incoming.getEmail());
-        article.setDateAdded(incoming.getDateAdded());
-
-        articleRepository.save(article);
-
-        return article;
+            @RequestBody @Valid Article incoming,
+            @ApiParam("only update if the article is still at this ETag") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        Long version = ifMatchVersion(ifMatch, Article.class, id);
+        incoming.setId(id);
+        Optional<Long> written = articleRepository.updateRowAndGetVersion(incoming, version);
+        if (written.isEmpty()) {
+            if (version != null && articleRepository.existsById(id)) {
+                throw new EntityPreconditionFailedException(Article.class, id, ifMatch);
+            }
+            throw new EntityNotFoundException(Article.class, id);
+        }
+
+        incoming.setVersion(written.get());
+        return withETag(incoming, written.get());
     }
 } 
@@ -2,7 +2,14 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.HelpRequest;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.EntityPreconditionFailedException;
+import edu.ucsb.cs156.example.errors.EntityVersionConflictException;
+import edu.ucsb.cs156.example.events.HelpRequestChangedEvent;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.services.HelpRequestQueueService;
+import edu.ucsb.cs156.example.services.HelpRequestStreamService;
+import edu.ucsb.cs156.example.services.JsonExportService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -11,19 +18,31 @@ import lombok.extern.slf4j.Slf4j;
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.io.IOException;
+
+import java.util.List;
+import java.util.Optional;
+
 import java.time.LocalDateTime;
 
 @Api(description = "HelpRequest")
@@ -36,23 +55,108 @@ public class HelpRequestController extends ApiController {
     @Autowired
     HelpRequestRepository helpRequestRepository;
 
-    @ApiOperation(value = "List all help requests")
+    @Autowired
+    JsonExportService jsonExportService;
+
+    @Autowired
+    HelpRequestStreamService helpRequestStreamService;
+
+    @Autowired
+    HelpRequestQueueService helpRequestQueueService;
+
+    @Autowired
+    ApplicationEventPublisher publisher;
+
+    @ApiOperation(value = "List all help requests, optionally only those of one team and/or with a given solved status")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<HelpRequest> allHelpRequests(){
-        Iterable<HelpRequest> requests = helpRequestRepository.findAll();
-        return requests;
-    }   
+    public Iterable<HelpRequest> allHelpRequests(
+            @ApiParam("only requests from this team") @RequestParam(required = false) String teamId,
+            @ApiParam("only solved (true) or unsolved (false) requests") @RequestParam(required = false) Boolean solved) {
+        if (teamId != null && solved != null) {
+            return helpRequestRepository.findAllByTeamIdAndSolved(teamId, solved);
+        }
+        if (teamId != null) {
+            return helpRequestRepository.findAllByTeamId(teamId);
+        }
+        if (solved != null) {
+            return helpRequestRepository.findAllBySolved(solved);
+        }
+        return helpRequestRepository.findAll();
+    }
 
     @ApiOperation(value = "Get a single request")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public HelpRequest getById(
+    public ResponseEntity<HelpRequest> getById(
             @ApiParam("Request ID") @RequestParam Long id){
         HelpRequest helpRequest = helpRequestRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
 
-        return helpRequest;
+        return withETag(helpRequest, helpRequest.getVersion());
+    }
+
+    @ApiOperation(value = "List help requests one page at a time, ordered by id")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/page")
+    public KeysetPage<HelpRequest, Long> pageHelpRequests(
+            @ApiParam("only return rows whose id is after this one (the previous page's next)") @RequestParam(defaultValue = "0") long afterId,
+            @ApiParam("maximum number of rows to return (at most 1000)") @RequestParam(defaultValue = "100") int limit) {
+        List<HelpRequest> rows = helpRequestRepository.findByIdGreaterThanOrderByIdAsc(afterId, keysetPageable(limit));
+        return keysetPage(rows, limit, HelpRequest::getId);
+    }
+
+    @ApiOperation(value = "Oldest waiting (unsolved and unclaimed) help requests, from memory")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/queue")
+    public List<HelpRequest> peekHelpRequests(
+            @ApiParam("only requests from this team") @RequestParam(required = false) String teamId,
+            @ApiParam("maximum number of requests to return (at most 1000)") @RequestParam(defaultValue = "10") int limit) {
+        return helpRequestQueueService.peek(teamId, clampLimit(limit));
+    }
+
+    @ApiOperation(value = "Oldest waiting help request, from memory (204 if there is none)")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/queue/next")
+    public ResponseEntity<HelpRequest> nextHelpRequest(
+            @ApiParam("only requests from this team") @RequestParam(required = false) String teamId) {
+        return helpRequestQueueService.next(teamId)
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.noContent().build());
+    }
+
+    @ApiOperation(value = "Claim the oldest waiting help request for the current user (204 if there is none)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/queue/claim")
+    public ResponseEntity<HelpRequest> claimHelpRequest(
+            @ApiParam("only requests from this team") @RequestParam(required = false) String teamId) {
+        return helpRequestQueueService.claim(teamId, getCurrentUser().getUser().getEmail())
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.noContent().build());
+    }
+
+    @ApiOperation(value = "Release the claim on an unsolved help request, putting it back in the queue")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/queue/release")
+    public HelpRequest releaseHelpRequest(
+            @ApiParam("Request ID") @RequestParam Long id) {
+        return helpRequestQueueService.release(id)
+            .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
+    }
+
+    @ApiOperation(value = "Stream help requests as Server-Sent Events: a snapshot of the current rows, then a delta for every create, update or delete")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamHelpRequests(
+            @ApiParam("only stream requests from this team (deletes are always sent)") @RequestParam(required = false) String teamId) throws IOException {
+        return helpRequestStreamService.subscribe(teamId);
+    }
+
+    @ApiOperation(value = "Export all help requests as a streamed JSON array")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportHelpRequests() {
+        return jsonAttachment("helprequest.json", jsonExportService.exportJson(helpRequestRepository::streamAll));
     }
 
     @ApiOperation(value = "Create a new request")
@@ -75,6 +179,7 @@ public class HelpRequestController extends ApiController {
         request.setSolved(solved);
 
         HelpRequest savedHelpRequest = helpRequestRepository.save(request); 
+        publisher.publishEvent(HelpRequestChangedEvent.created(savedHelpRequest));
 
         return savedHelpRequest; 
     }
@@ -84,33 +189,39 @@ public class HelpRequestController extends ApiController {
     @DeleteMapping("")
     public Object deleteHelpRequest(
             @ApiParam("Request ID") @RequestParam Long id){
-        HelpRequest helpRequest = helpRequestRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
-    
-        helpRequestRepository.delete(helpRequest);
+        if (helpRequestRepository.deleteRow(id) == 0) {
+            throw new EntityNotFoundException(HelpRequest.class, id);
+        }
+        publisher.publishEvent(HelpRequestChangedEvent.deleted(id));
+
         return genericMessage("HelpRequest with id %s deleted".formatted(id));
     }
 
-    @ApiOperation(value = "Update a single help request")
+    @ApiOperation(value = "Update a single help request; fails with 412 if the If-Match version (or 409 if the version in the body) is not the current one, and overwrites any version when neither is given")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public HelpRequest updateHelpRequest(
+    public ResponseEntity<HelpRequest> updateHelpRequest(
         @ApiParam("Request ID") @RequestParam Long id,
-        @RequestBody @Valid HelpRequest incoming
+        @RequestBody @Valid HelpRequest incoming,
+        @ApiParam("only update if the request is still at this ETag (overrides the version in the body)") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ){
 
-    HelpRequest request = helpRequestRepository.findById(id)
-        .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
-    
-    request.setRequesterEmail(incoming.getRequesterEmail());
-    request.setTeamId(incoming.getTeamId());
-    request.setTableOrBreakoutRoom(incoming.getTableOrBreakoutRoom());
-    request.setRequestTime(incoming.getRequestTime());
-    request.setExplanation(incoming.getExplanation());
-    request.setSolved(incoming.getSolved());
-
-    helpRequestRepository.save(request);
-    
-    return request;
+    Long headerVersion = ifMatchVersion(ifMatch, HelpRequest.class, id);
+    Long version = headerVersion != null ? headerVersion : incoming.getVersion();
+    incoming.setId(id);
+    Optional<Long> written = helpRequestRepository.updateRowAndGetVersion(incoming, version);
+    if (written.isEmpty()) {
+        if (version == null || !helpRequestRepository.existsById(id)) {
+            throw new EntityNotFoundException(HelpRequest.class, id);
+        }
+        if (headerVersion != null) {
+            throw new EntityPreconditionFailedException(HelpRequest.class, id, ifMatch);
+        }
+        throw new EntityVersionConflictException(HelpRequest.class, id, version);
+    }
+    incoming.setVersion(written.get());
+    publisher.publishEvent(HelpRequestChangedEvent.updated(incoming));
+
+    return withETag(incoming, incoming.getVersion());
     }
 }
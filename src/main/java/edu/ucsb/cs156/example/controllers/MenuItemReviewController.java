@@ -1,8 +1,16 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.entities.MenuItemRatingSummary;
 import edu.ucsb.cs156.example.entities.MenuItemReview;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.InvalidEntityException;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
+import edu.ucsb.cs156.example.repositories.MenuItemRatingSummaryRepository;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.services.BulkSaveService;
+import edu.ucsb.cs156.example.services.JsonExportService;
+import edu.ucsb.cs156.example.services.MenuItemReviewService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -12,18 +20,27 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
 import java.time.LocalDateTime;
 
 @Api(description = "MenuItemReview")
@@ -35,25 +52,64 @@ public class MenuItemReviewController extends ApiController {
     @Autowired
     MenuItemReviewRepository menuItemReviewRepository;
 
+    @Autowired
+    JsonExportService jsonExportService;
+
+    @Autowired
+    BulkSaveService bulkSaveService;
+
+    @Autowired
+    MenuItemReviewService menuItemReviewService;
+
+    @Autowired
+    MenuItemRatingSummaryRepository menuItemRatingSummaryRepository;
+
     /* Index Action - GET ALL reviews */
-    @ApiOperation(value = "List all menu item reviews")
+    @ApiOperation(value = "List all menu item reviews, optionally only those of one item and/or one reviewer")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<MenuItemReview> allReviews() {
-        Iterable<MenuItemReview> reviews = menuItemReviewRepository.findAll();
-        return reviews;
+    public Iterable<MenuItemReview> allReviews(
+            @ApiParam("only reviews of this menu item") @RequestParam(required = false) Long itemId,
+            @ApiParam("only reviews written by this email") @RequestParam(required = false) String reviewerEmail) {
+        if (itemId != null && reviewerEmail != null) {
+            return menuItemReviewRepository.findAllByItemIdAndReviewerEmail(itemId, reviewerEmail);
+        }
+        if (itemId != null) {
+            return menuItemReviewRepository.findAllByItemId(itemId);
+        }
+        if (reviewerEmail != null) {
+            return menuItemReviewRepository.findAllByReviewerEmail(reviewerEmail);
+        }
+        return menuItemReviewRepository.findAll();
+    }
+
+    @ApiOperation(value = "List menu item reviews one page at a time, ordered by id")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/page")
+    public KeysetPage<MenuItemReview, Long> pageReviews(
+            @ApiParam("only return rows whose id is after this one (the previous page's next)") @RequestParam(defaultValue = "0") long afterId,
+            @ApiParam("maximum number of rows to return (at most 1000)") @RequestParam(defaultValue = "100") int limit) {
+        List<MenuItemReview> rows = menuItemReviewRepository.findByIdGreaterThanOrderByIdAsc(afterId, keysetPageable(limit));
+        return keysetPage(rows, limit, MenuItemReview::getId);
+    }
+
+    @ApiOperation(value = "Export all menu item reviews as a streamed JSON array")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportReviews() {
+        return jsonAttachment("menuitemreview.json", jsonExportService.exportJson(menuItemReviewRepository::streamAll));
     }
 
     /* GET a single review */
     @ApiOperation(value = "Get a single review")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public MenuItemReview getById(
+    public ResponseEntity<MenuItemReview> getById(
             @ApiParam("id") @RequestParam long id) {
                 MenuItemReview review = menuItemReviewRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
 
-        return review;
+        return withETag(review, review.getVersion());
     }
 
     /* Create Action - POST a new entry */
@@ -75,22 +131,57 @@ public class MenuItemReviewController extends ApiController {
         review.setStars(stars);
         review.setDateReviewed(dateReviewed);
         review.setComments(comments);
+        requireValid(review);
 
-        MenuItemReview savedReview = menuItemReviewRepository.save(review);
+        MenuItemReview savedReview = menuItemReviewService.createReview(review);
 
         return savedReview;
     }
 
+    /* Bulk Create Action - POST many reviews at once */
+    @ApiOperation(value = "Create many reviews from a JSON array or NDJSON body")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping(value = "/bulk", consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE })
+    public BulkResult postReviewsBulk(
+        @ApiParam("reviews, each with itemId, reviewerEmail, stars, dateReviewed and comments; any id is ignored") InputStream body
+        ) throws IOException
+        {
+        return bulkSaveService.saveAll(body, MenuItemReview.class, review -> {
+            review.setId(0);
+            return validate(review);
+        }, menuItemReviewRepository, MenuItemReview::getId, menuItemReviewService::recordReviews);
+    }
+
+    private static void requireValid(MenuItemReview review) {
+        String problem = validate(review);
+        if (problem != null) {
+            throw new InvalidEntityException(MenuItemReview.class, problem);
+        }
+    }
+
+    private static String validate(MenuItemReview review) {
+        if (review.getItemId() <= 0) {
+            return "itemId is required";
+        }
+        if (review.getReviewerEmail() == null || review.getReviewerEmail().isBlank()) {
+            return "reviewerEmail is required";
+        }
+        if (review.getStars() < 1 || review.getStars() > 5) {
+            return "stars must be between 1 and 5";
+        }
+        if (review.getDateReviewed() == null) {
+            return "dateReviewed is required";
+        }
+        return null;
+    }
+
     /* DEL request - deletes a review with given id */
     @ApiOperation(value = "Delete a MenuItemReview")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
     public Object deleteReview(
             @ApiParam("id") @RequestParam long id) {
-            MenuItemReview review = menuItemReviewRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
-
-            menuItemReviewRepository.delete(review);
+            menuItemReviewService.deleteReview(id);
         return genericMessage("MenuItemReview with id %s deleted".formatted(id));
     }
 
@@ -98,23 +189,33 @@ public class MenuItemReviewController extends ApiController {
     @ApiOperation(value = "Update a single review")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public MenuItemReview updateReview(
+    public ResponseEntity<MenuItemReview> updateReview(
             @ApiParam("id") @RequestParam long id,
-            @RequestBody @Valid MenuItemReview incoming) {
-
-            MenuItemReview review = menuItemReviewRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
-
-
-        review.setItemId(incoming.getItemId());  
-        review.setReviewerEmail(incoming.getReviewerEmail());
-        review.setStars(incoming.getStars());
-        review.setDateReviewed(incoming.getDateReviewed());
-        review.setComments(incoming.getComments());
+            @RequestBody @Valid MenuItemReview incoming,
+            @ApiParam("only update if the review is still at this ETag") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
+            requireValid(incoming);
+            MenuItemReview updated = menuItemReviewService.updateReview(id, incoming, ifMatchVersion(ifMatch, MenuItemReview.class, id));
+            return withETag(updated, updated.getVersion());
+    }
 
-        menuItemReviewRepository.save(review);
+    /* GET the rating summary of one menu item */
+    @ApiOperation(value = "Get the review count, average stars and star histogram of a menu item")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/ratings")
+    public MenuItemRatingSummary getRatings(
+            @ApiParam("itemId") @RequestParam long itemId) {
+        return menuItemRatingSummaryRepository.findById(itemId)
+                .orElse(MenuItemRatingSummary.builder().itemId(itemId).build());
+    }
 
-        return review;
+    /* GET the best rated menu items */
+    @ApiOperation(value = "List the menu items with the highest average stars")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/ratings/top")
+    public List<MenuItemRatingSummary> topRated(
+            @ApiParam("only include items with at least this many reviews") @RequestParam(defaultValue = "1") long minReviews,
+            @ApiParam("maximum number of items to return (at most 1000)") @RequestParam(defaultValue = "10") int limit) {
+        return menuItemRatingSummaryRepository.findTopRated(Math.max(1, minReviews), pageable(limit));
     }
 }
@@ -2,7 +2,10 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.Recommendation;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.EntityPreconditionFailedException;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.RecommendationRepository;
+import edu.ucsb.cs156.example.services.JsonExportService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -12,18 +15,25 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.util.List;
+import java.util.Optional;
+
 import java.time.LocalDateTime;
 
 @Api(description = "Recommendation")
@@ -35,23 +45,53 @@ public class RecommendationController extends ApiController {
     @Autowired
     RecommendationRepository recommendationRepository;
 
-    @ApiOperation(value = "List all recommendations")
+    @Autowired
+    JsonExportService jsonExportService;
+
+    @ApiOperation(value = "List all recommendations, optionally only those of one requester and/or with a given done status")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<Recommendation> allRecommendations() {
-        Iterable<Recommendation> recommendation = recommendationRepository.findAll();
-        return recommendation;
+    public Iterable<Recommendation> allRecommendations(
+            @ApiParam("only recommendations requested by this email") @RequestParam(required = false) String requesterEmail,
+            @ApiParam("only done (true) or pending (false) recommendations") @RequestParam(required = false) Boolean done) {
+        if (requesterEmail != null && done != null) {
+            return recommendationRepository.findAllByRequesterEmailAndDone(requesterEmail, done);
+        }
+        if (requesterEmail != null) {
+            return recommendationRepository.findAllByRequesterEmail(requesterEmail);
+        }
+        if (done != null) {
+            return recommendationRepository.findAllByDone(done);
+        }
+        return recommendationRepository.findAll();
+    }
+
+    @ApiOperation(value = "List recommendations one page at a time, ordered by id")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/page")
+    public KeysetPage<Recommendation, Long> pageRecommendations(
+            @ApiParam("only return rows whose id is after this one (the previous page's next)") @RequestParam(defaultValue = "0") long afterId,
+            @ApiParam("maximum number of rows to return (at most 1000)") @RequestParam(defaultValue = "100") int limit) {
+        List<Recommendation> rows = recommendationRepository.findByIdGreaterThanOrderByIdAsc(afterId, keysetPageable(limit));
+        return keysetPage(rows, limit, Recommendation::getId);
+    }
+
+    @ApiOperation(value = "Export all recommendations as a streamed JSON array")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportRecommendations() {
+        return jsonAttachment("recommendation.json", jsonExportService.exportJson(recommendationRepository::streamAll));
     }
 
     @ApiOperation(value = "Get a single recommendation")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public Recommendation getById(
+    public ResponseEntity<Recommendation> getById(
             @ApiParam("id") @RequestParam Long id) {
         Recommendation recommendation = recommendationRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Recommendation.class, id));
 
-        return recommendation;
+        return withETag(recommendation, recommendation.getVersion());
     }
 
     @ApiOperation(value = "Create a new recommendation")
@@ -86,32 +126,32 @@ public class RecommendationController extends ApiController {
     @DeleteMapping("")
     public Object deleteRecommendation(
             @ApiParam("id") @RequestParam Long id) {
-        Recommendation recommendation = recommendationRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Recommendation.class, id));
+        if (recommendationRepository.deleteRow(id) == 0) {
+            throw new EntityNotFoundException(Recommendation.class, id);
+        }
 
-        recommendationRepository.delete(recommendation);
         return genericMessage("Recommendation with id %s deleted".formatted(id));
     }
 
     @ApiOperation(value = "Update a single recommendation")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public Recommendation updateRecommendation(
+    public ResponseEntity<Recommendation> updateRecommendation(
             @ApiParam("id") @RequestParam Long id,
-            @RequestBody @Valid Recommendation incoming) {
-
-        Recommendation recommendation = recommendationRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Recommendation.class, id));
-
-        recommendation.setRequesterEmail(incoming.getRequesterEmail());
-        recommendation.setProfessorEmail(incoming.getProfessorEmail());
-        recommendation.setExplanation(incoming.getExplanation());
-        recommendation.setDateRequested(incoming.getDateRequested());
-        recommendation.setDateNeeded(incoming.getDateNeeded());
-        recommendation.setDone(incoming.getDone());
-
-        recommendationRepository.save(recommendation);
-
-        return recommendation;
+            @RequestBody @Valid Recommendation incoming,
+            @ApiParam("only update if the recommendation is still at this ETag") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        Long version = ifMatchVersion(ifMatch, Recommendation.class, id);
+        incoming.setId(id);
+        Optional<Long> written = recommendationRepository.updateRowAndGetVersion(incoming, version);
+        if (written.isEmpty()) {
+            if (version != null && recommendationRepository.existsById(id)) {
+                throw new EntityPreconditionFailedException(Recommendation.class, id, ifMatch);
+            }
+            throw new EntityNotFoundException(Recommendation.class, id);
+        }
+
+        incoming.setVersion(written.get());
+        return withETag(incoming, written.get());
     }
 }
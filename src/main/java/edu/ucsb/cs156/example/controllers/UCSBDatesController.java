@@ -2,7 +2,14 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.EntityPreconditionFailedException;
+import edu.ucsb.cs156.example.events.TableChangedEvent;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.services.ImportService;
+import edu.ucsb.cs156.example.services.JsonExportService;
+import edu.ucsb.cs156.example.services.JsonSnapshotService;
+import edu.ucsb.cs156.example.services.TableVersionService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -11,19 +18,31 @@ import lombok.extern.slf4j.Slf4j;
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 import java.time.LocalDateTime;
 
 @Api(description = "UCSBDates")
@@ -35,23 +54,63 @@ public class UCSBDatesController extends ApiController {
     @Autowired
     UCSBDateRepository ucsbDateRepository;
 
-    @ApiOperation(value = "List all ucsb dates")
+    @Autowired
+    JsonExportService jsonExportService;
+
+    @Autowired
+    ImportService importService;
+
+    @Autowired
+    TableVersionService tableVersions;
+
+    @Autowired
+    JsonSnapshotService jsonSnapshots;
+
+    @Autowired
+    ApplicationEventPublisher publisher;
+
+    @ApiOperation(value = "List all ucsb dates, optionally only those of one quarter", response = UCSBDate.class, responseContainer = "List")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBDate> allUCSBDates() {
-        Iterable<UCSBDate> dates = ucsbDateRepository.findAll();
-        return dates;
+    public ResponseEntity<byte[]> allUCSBDates(
+            @ApiParam("only dates in this quarter, in format YYYYQ (e.g. 20224 for Fall 2022)") @RequestParam(required = false) String quarterYYYYQ,
+            @RequestHeader HttpHeaders headers) {
+        long stamp = tableVersions.stamp(UCSBDate.class);
+        return jsonSnapshotOnTable(headers, stamp, tableVersions.lastModified(UCSBDate.class), () -> {
+            if (quarterYYYYQ != null) {
+                return jsonSnapshots.encode(stamp, ucsbDateRepository.findAllByQuarterYYYYQ(quarterYYYYQ));
+            }
+            return jsonSnapshots.snapshot(UCSBDate.class, stamp, ucsbDateRepository::findAll);
+        });
+    }
+
+    @ApiOperation(value = "List ucsb dates one page at a time, ordered by id")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/page")
+    public KeysetPage<UCSBDate, Long> pageUCSBDates(
+            @ApiParam("only return rows whose id is after this one (the previous page's next)") @RequestParam(defaultValue = "0") long afterId,
+            @ApiParam("maximum number of rows to return (at most 1000)") @RequestParam(defaultValue = "100") int limit) {
+        List<UCSBDate> rows = ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(afterId, keysetPageable(limit));
+        return keysetPage(rows, limit, UCSBDate::getId);
+    }
+
+    @ApiOperation(value = "Export all ucsb dates as a streamed JSON array")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUCSBDates() {
+        return jsonAttachment("ucsbdates.json", jsonExportService.exportJson(ucsbDateRepository::streamAll));
     }
 
     @ApiOperation(value = "Get a single date")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public UCSBDate getById(
-            @ApiParam("id") @RequestParam Long id) {
-        UCSBDate ucsbDate = ucsbDateRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
-
-        return ucsbDate;
+    public ResponseEntity<UCSBDate> getById(
+            @ApiParam("id") @RequestParam Long id,
+            @RequestHeader HttpHeaders headers) {
+        return conditionalOnTable(headers, tableVersions.stamp(UCSBDate.class), tableVersions.lastModified(UCSBDate.class),
+                () -> ucsbDateRepository.findById(id)
+                        .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id)),
+                UCSBDate::getVersion);
     }
 
     @ApiOperation(value = "Create a new date")
@@ -74,38 +133,77 @@ public class UCSBDatesController extends ApiController {
         ucsbDate.setLocalDateTime(localDateTime);
 
         UCSBDate savedUcsbDate = ucsbDateRepository.save(ucsbDate);
+        publisher.publishEvent(new TableChangedEvent(UCSBDate.class));
 
         return savedUcsbDate;
     }
 
+    @ApiOperation(value = "Import ucsb dates from a CSV (with a header row) or NDJSON file; rows with the same quarterYYYYQ and name are updated. Progress is streamed back as NDJSON")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> importUCSBDates(
+            @ApiParam("file with quarterYYYYQ, name and localDateTime columns") @RequestParam MultipartFile file) {
+        StreamingResponseBody progress = importService.importRows(file, UCSBDate.class,
+                ucsbDate -> {
+                    ucsbDate.setId(0);
+                    return validate(ucsbDate);
+                },
+                ucsbDate -> List.of(ucsbDate.getQuarterYYYYQ(), ucsbDate.getName()),
+                keys -> ucsbDateRepository.findAllByQuarterYYYYQIn(quarters(keys)),
+                (incoming, ucsbDate) -> ucsbDate.setLocalDateTime(incoming.getLocalDateTime()));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(progress);
+    }
+
+    private static String validate(UCSBDate ucsbDate) {
+        if (ucsbDate.getQuarterYYYYQ() == null || ucsbDate.getQuarterYYYYQ().isBlank()) {
+            return "quarterYYYYQ is required";
+        }
+        if (ucsbDate.getName() == null || ucsbDate.getName().isBlank()) {
+            return "name is required";
+        }
+        if (ucsbDate.getLocalDateTime() == null) {
+            return "localDateTime is required";
+        }
+        return null;
+    }
+
+    private static Set<String> quarters(Set<List<String>> keys) {
+        return keys.stream().map(key -> key.get(0)).collect(Collectors.toSet());
+    }
+
     @ApiOperation(value = "Delete a UCSBDate")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
     public Object deleteUCSBDate(
             @ApiParam("id") @RequestParam Long id) {
-        UCSBDate ucsbDate = ucsbDateRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
+        if (ucsbDateRepository.deleteRow(id) == 0) {
+            throw new EntityNotFoundException(UCSBDate.class, id);
+        }
+        publisher.publishEvent(new TableChangedEvent(UCSBDate.class));
 
-        ucsbDateRepository.delete(ucsbDate);
         return genericMessage("UCSBDate with id %s deleted".formatted(id));
     }
 
     @ApiOperation(value = "Update a single date")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public UCSBDate updateUCSBDate(
+    public ResponseEntity<UCSBDate> updateUCSBDate(
             @ApiParam("id") @RequestParam Long id,
-            @RequestBody @Valid UCSBDate incoming) {
-
-        UCSBDate ucsbDate = ucsbDateRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
-
-        ucsbDate.setQuarterYYYYQ(incoming.getQuarterYYYYQ());
-        ucsbDate.setName(incoming.getName());
-        ucsbDate.setLocalDateTime(incoming.getLocalDateTime());
-
-        ucsbDateRepository.save(ucsbDate);
-
-        return ucsbDate;
+            @RequestBody @Valid UCSBDate incoming,
+            @ApiParam("only update if the date is still at this ETag") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        Long version = ifMatchVersion(ifMatch, UCSBDate.class, id);
+        incoming.setId(id);
+        Optional<Long> written = ucsbDateRepository.updateRowAndGetVersion(incoming, version);
+        if (written.isEmpty()) {
+            if (version != null && ucsbDateRepository.existsById(id)) {
+                throw new EntityPreconditionFailedException(UCSBDate.class, id, ifMatch);
+            }
+            throw new EntityNotFoundException(UCSBDate.class, id);
+        }
+        publisher.publishEvent(new TableChangedEvent(UCSBDate.class));
+
+        incoming.setVersion(written.get());
+        return withETag(incoming, written.get());
     }
 }
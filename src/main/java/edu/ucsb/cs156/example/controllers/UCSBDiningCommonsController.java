@@ -2,25 +2,39 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.EntityPreconditionFailedException;
+import edu.ucsb.cs156.example.events.TableChangedEvent;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.services.JsonExportService;
+import edu.ucsb.cs156.example.services.JsonSnapshotService;
+import edu.ucsb.cs156.example.services.TableVersionService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 
+import java.util.List;
+import java.util.Optional;
+
 
 @Api(description = "UCSBDiningCommons")
 @RequestMapping("/api/ucsbdiningcommons")
@@ -31,23 +45,54 @@ public class UCSBDiningCommonsController extends ApiController {
     @Autowired
     UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
 
-    @ApiOperation(value = "List all ucsb dining commons")
+    @Autowired
+    JsonExportService jsonExportService;
+
+    @Autowired
+    TableVersionService tableVersions;
+
+    @Autowired
+    JsonSnapshotService jsonSnapshots;
+
+    @Autowired
+    ApplicationEventPublisher publisher;
+
+    @ApiOperation(value = "List all ucsb dining commons", response = UCSBDiningCommons.class, responseContainer = "List")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBDiningCommons> allCommonss() {
-        Iterable<UCSBDiningCommons> commons = ucsbDiningCommonsRepository.findAll();
-        return commons;
+    public ResponseEntity<byte[]> allCommonss(@RequestHeader HttpHeaders headers) {
+        long stamp = tableVersions.stamp(UCSBDiningCommons.class);
+        return jsonSnapshotOnTable(headers, stamp, tableVersions.lastModified(UCSBDiningCommons.class),
+                () -> jsonSnapshots.snapshot(UCSBDiningCommons.class, stamp, ucsbDiningCommonsRepository::findAll));
+    }
+
+    @ApiOperation(value = "List ucsb dining commons one page at a time, ordered by code")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/page")
+    public KeysetPage<UCSBDiningCommons, String> pageCommonss(
+            @ApiParam("only return rows whose code is after this one (the previous page's next)") @RequestParam(defaultValue = "") String afterId,
+            @ApiParam("maximum number of rows to return (at most 1000)") @RequestParam(defaultValue = "100") int limit) {
+        List<UCSBDiningCommons> rows = ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(afterId, keysetPageable(limit));
+        return keysetPage(rows, limit, UCSBDiningCommons::getCode);
+    }
+
+    @ApiOperation(value = "Export all ucsb dining commons as a streamed JSON array")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportCommonss() {
+        return jsonAttachment("ucsbdiningcommons.json", jsonExportService.exportJson(ucsbDiningCommonsRepository::streamAll));
     }
 
     @ApiOperation(value = "Get a single commons")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public UCSBDiningCommons getById(
-            @ApiParam("code") @RequestParam String code) {
-        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
-
-        return commons;
+    public ResponseEntity<UCSBDiningCommons> getById(
+            @ApiParam("code") @RequestParam String code,
+            @RequestHeader HttpHeaders headers) {
+        return conditionalOnTable(headers, tableVersions.stamp(UCSBDiningCommons.class), tableVersions.lastModified(UCSBDiningCommons.class),
+                () -> ucsbDiningCommonsRepository.findById(code)
+                        .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code)),
+                UCSBDiningCommons::getVersion);
     }
 
     @ApiOperation(value = "Create a new commons")
@@ -74,6 +119,7 @@ public class UCSBDiningCommonsController extends ApiController {
         commons.setLongitude(longitude);
 
         UCSBDiningCommons savedCommons = ucsbDiningCommonsRepository.save(commons);
+        publisher.publishEvent(new TableChangedEvent(UCSBDiningCommons.class));
 
         return savedCommons;
     }
@@ -83,33 +129,34 @@ public class UCSBDiningCommonsController extends ApiController {
     @DeleteMapping("")
     public Object deleteCommons(
             @ApiParam("code") @RequestParam String code) {
-        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
+        if (ucsbDiningCommonsRepository.deleteRow(code) == 0) {
+            throw new EntityNotFoundException(UCSBDiningCommons.class, code);
+        }
+        publisher.publishEvent(new TableChangedEvent(UCSBDiningCommons.class));
 
-        ucsbDiningCommonsRepository.delete(commons);
         return genericMessage("UCSBDiningCommons with id %s deleted".formatted(code));
     }
 
     @ApiOperation(value = "Update a single commons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public UCSBDiningCommons updateCommons(
+    public ResponseEntity<UCSBDiningCommons> updateCommons(
             @ApiParam("code") @RequestParam String code,
-            @RequestBody @Valid UCSBDiningCommons incoming) {
-
-        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
-
-
-        commons.setName(incoming.getName());  
-        commons.setHasSackMeal(incoming.getHasSackMeal());
-        commons.setHasTakeOutMeal(incoming.getHasTakeOutMeal());
-        commons.setHasDiningCam(incoming.getHasDiningCam());
-        commons.setLatitude(incoming.getLatitude());
-        commons.setLongitude(incoming.getLongitude());
-
-        ucsbDiningCommonsRepository.save(commons);
-
-        return commons;
+            @RequestBody @Valid UCSBDiningCommons incoming,
+            @ApiParam("only update if the commons is still at this ETag") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        Long version = ifMatchVersion(ifMatch, UCSBDiningCommons.class, code);
+        incoming.setCode(code);
+        Optional<Long> written = ucsbDiningCommonsRepository.updateRowAndGetVersion(incoming, version);
+        if (written.isEmpty()) {
+            if (version != null && ucsbDiningCommonsRepository.existsById(code)) {
+                throw new EntityPreconditionFailedException(UCSBDiningCommons.class, code, ifMatch);
+            }
+            throw new EntityNotFoundException(UCSBDiningCommons.class, code);
+        }
+        publisher.publishEvent(new TableChangedEvent(UCSBDiningCommons.class));
+
+        incoming.setVersion(written.get());
+        return withETag(incoming, written.get());
     }
 }
@@ -2,23 +2,39 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.EntityPreconditionFailedException;
+import edu.ucsb.cs156.example.events.TableChangedEvent;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.services.BulkSaveService;
+import edu.ucsb.cs156.example.services.JsonExportService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Optional;
 @Api(description = "UCSBDiningCommonsMenuItem")
 @RequestMapping("/api/UCSBDiningCommonsMenuItem")
 @RestController
@@ -26,21 +42,50 @@ import javax.validation.Valid;
 public class UCSBDiningCommonsMenuItemController extends ApiController {
     @Autowired
     UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
-    @ApiOperation (value = "List of all UCSB Dining Commons Menu Items")
+
+    @Autowired
+    JsonExportService jsonExportService;
+
+    @Autowired
+    BulkSaveService bulkSaveService;
+
+    @Autowired
+    ApplicationEventPublisher publisher;
+    @ApiOperation (value = "List of all UCSB Dining Commons Menu Items, optionally only those of one dining commons")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBDiningCommonsMenuItem> allMenuItems() {
-        Iterable<UCSBDiningCommonsMenuItem> menuitems = ucsbDiningCommonsMenuItemRepository.findAll();
-        return menuitems;
+    public Iterable<UCSBDiningCommonsMenuItem> allMenuItems(
+            @ApiParam("only items served at this dining commons, e.g. ortega") @RequestParam(required = false) String diningCommonsCode) {
+        if (diningCommonsCode != null) {
+            return ucsbDiningCommonsMenuItemRepository.findAllByDiningCommonsCode(diningCommonsCode);
+        }
+        return ucsbDiningCommonsMenuItemRepository.findAll();
+    }
+
+    @ApiOperation(value = "List UCSB Dining Commons Menu Items one page at a time, ordered by id")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/page")
+    public KeysetPage<UCSBDiningCommonsMenuItem, Long> pageMenuItems(
+            @ApiParam("only return rows whose id is after this one (the previous page's next)") @RequestParam(defaultValue = "0") long afterId,
+            @ApiParam("maximum number of rows to return (at most 1000)") @RequestParam(defaultValue = "100") int limit) {
+        List<UCSBDiningCommonsMenuItem> rows = ucsbDiningCommonsMenuItemRepository.findByIdGreaterThanOrderByIdAsc(afterId, keysetPageable(limit));
+        return keysetPage(rows, limit, UCSBDiningCommonsMenuItem::getId);
+    }
+
+    @ApiOperation(value = "Export all UCSB Dining Commons Menu Items as a streamed JSON array")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportMenuItems() {
+        return jsonAttachment("ucsbmenuitems.json", jsonExportService.exportJson(ucsbDiningCommonsMenuItemRepository::streamAll));
     }
     @ApiOperation(value = "Get a UCSB dining commons menu item")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public UCSBDiningCommonsMenuItem getById(
+    public ResponseEntity<UCSBDiningCommonsMenuItem> getById(
         @ApiParam("id") @RequestParam Long id){
             UCSBDiningCommonsMenuItem menuItem = ucsbDiningCommonsMenuItemRepository.findById(id)
             .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
-            return menuItem;
+            return withETag(menuItem, menuItem.getVersion());
     }
     @ApiOperation(value = "Create a new menu item")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
@@ -57,36 +102,70 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
             menuitem.setStation(station);
     
             UCSBDiningCommonsMenuItem savedMenuItem = ucsbDiningCommonsMenuItemRepository.save(menuitem);
+            publisher.publishEvent(new TableChangedEvent(UCSBDiningCommonsMenuItem.class));
     
             return savedMenuItem;
     }
 
+    @ApiOperation(value = "Create many UCSB dining commons menu items from a JSON array or NDJSON body")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping(value = "/bulk", consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE })
+    public BulkResult postMenuItemsBulk(
+        @ApiParam("menu items, each with diningCommonsCode, name and station; any id is ignored") InputStream body
+        ) throws IOException
+    {
+        return bulkSaveService.saveAll(body, UCSBDiningCommonsMenuItem.class, menuitem -> {
+            menuitem.setId(0);
+            return validate(menuitem);
+        }, ucsbDiningCommonsMenuItemRepository, UCSBDiningCommonsMenuItem::getId);
+    }
+
+    private static String validate(UCSBDiningCommonsMenuItem menuitem) {
+        if (menuitem.getDiningCommonsCode() == null || menuitem.getDiningCommonsCode().isBlank()) {
+            return "diningCommonsCode is required";
+        }
+        if (menuitem.getName() == null || menuitem.getName().isBlank()) {
+            return "name is required";
+        }
+        if (menuitem.getStation() == null || menuitem.getStation().isBlank()) {
+            return "station is required";
+        }
+        return null;
+    }
+
     @ApiOperation(value = "Delete a UCSB dining commons menu item")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
     public Object deleteMenuItem(
             @ApiParam("id") @RequestParam Long id) {
-        UCSBDiningCommonsMenuItem menuitem = ucsbDiningCommonsMenuItemRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
+        if (ucsbDiningCommonsMenuItemRepository.deleteRow(id) == 0) {
+            throw new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id);
+        }
+        publisher.publishEvent(new TableChangedEvent(UCSBDiningCommonsMenuItem.class));
 
-        ucsbDiningCommonsMenuItemRepository.delete(menuitem);
         return genericMessage("UCSBDiningCommonsMenuItem with the id of %s is deleted".formatted(id));
     }
     @ApiOperation(value = "Update a single UCSB Dining Commons Menu item")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public UCSBDiningCommonsMenuItem updateMenuItem(
+    public ResponseEntity<UCSBDiningCommonsMenuItem> updateMenuItem(
         @ApiParam("id") @RequestParam Long id,
-        @RequestBody @Valid UCSBDiningCommonsMenuItem incoming) {
+        @RequestBody @Valid UCSBDiningCommonsMenuItem incoming,
+        @ApiParam("only update if the menu item is still at this ETag") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
-        UCSBDiningCommonsMenuItem menuitem = ucsbDiningCommonsMenuItemRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
-        menuitem.setName(incoming.getName());
-        menuitem.setDiningCommonsCode(incoming.getDiningCommonsCode());
-        menuitem.setStation(incoming.getStation());
-        ucsbDiningCommonsMenuItemRepository.save(menuitem);
+        Long version = ifMatchVersion(ifMatch, UCSBDiningCommonsMenuItem.class, id);
+        incoming.setId(id);
+        Optional<Long> written = ucsbDiningCommonsMenuItemRepository.updateRowAndGetVersion(incoming, version);
+        if (written.isEmpty()) {
+            if (version != null && ucsbDiningCommonsMenuItemRepository.existsById(id)) {
+                throw new EntityPreconditionFailedException(UCSBDiningCommonsMenuItem.class, id, ifMatch);
+            }
+            throw new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id);
+        }
+        publisher.publishEvent(new TableChangedEvent(UCSBDiningCommonsMenuItem.class));
 
-        return menuitem;
+        incoming.setVersion(written.get());
+        return withETag(incoming, written.get());
     }   
   
 
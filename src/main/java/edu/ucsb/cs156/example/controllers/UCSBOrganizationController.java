@@ -4,7 +4,14 @@
 package edu.ucsb.cs156.example.controllers;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.EntityPreconditionFailedException;
+import edu.ucsb.cs156.example.events.TableChangedEvent;
+import edu.ucsb.cs156.example.models.KeysetPage;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.services.ImportService;
+import edu.ucsb.cs156.example.services.JsonExportService;
+import edu.ucsb.cs156.example.services.JsonSnapshotService;
+import edu.ucsb.cs156.example.services.TableVersionService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -13,17 +20,27 @@ import lombok.extern.slf4j.Slf4j;
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+
+import java.util.List;
+import java.util.Optional;
 import java.time.LocalDateTime;
 
 
@@ -37,24 +54,58 @@ public class UCSBOrganizationController extends ApiController {
     @Autowired
     UCSBOrganizationRepository ucsbOrganizationRepository;
 
+    @Autowired
+    JsonExportService jsonExportService;
+
+    @Autowired
+    ImportService importService;
+
+    @Autowired
+    TableVersionService tableVersions;
+
+    @Autowired
+    JsonSnapshotService jsonSnapshots;
+
+    @Autowired
+    ApplicationEventPublisher publisher;
+
     //list all orgs
-    @ApiOperation(value = "List all ucsb organizations")
+    @ApiOperation(value = "List all ucsb organizations", response = UCSBOrganization.class, responseContainer = "List")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBOrganization> allOrgs() {
-        Iterable<UCSBOrganization> orgs = ucsbOrganizationRepository.findAll();
-        return orgs;
+    public ResponseEntity<byte[]> allOrgs(@RequestHeader HttpHeaders headers) {
+        long stamp = tableVersions.stamp(UCSBOrganization.class);
+        return jsonSnapshotOnTable(headers, stamp, tableVersions.lastModified(UCSBOrganization.class),
+                () -> jsonSnapshots.snapshot(UCSBOrganization.class, stamp, ucsbOrganizationRepository::findAll));
+    }
+
+    @ApiOperation(value = "List ucsb organizations one page at a time, ordered by orgCode")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/page")
+    public KeysetPage<UCSBOrganization, String> pageOrgs(
+            @ApiParam("only return rows whose orgCode is after this one (the previous page's next)") @RequestParam(defaultValue = "") String afterId,
+            @ApiParam("maximum number of rows to return (at most 1000)") @RequestParam(defaultValue = "100") int limit) {
+        List<UCSBOrganization> rows = ucsbOrganizationRepository.findByOrgCodeGreaterThanOrderByOrgCodeAsc(afterId, keysetPageable(limit));
+        return keysetPage(rows, limit, UCSBOrganization::getOrgCode);
+    }
+
+    @ApiOperation(value = "Export all ucsb organizations as a streamed JSON array")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportOrgs() {
+        return jsonAttachment("ucsborganization.json", jsonExportService.exportJson(ucsbOrganizationRepository::streamAll));
     }
 
     @ApiOperation(value = "Get a single organization")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public UCSBOrganization getById(
-            @ApiParam("orgCode") @RequestParam String orgCode) {
-        UCSBOrganization orgs = ucsbOrganizationRepository.findById(orgCode)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
-
-        return orgs;
+    public ResponseEntity<UCSBOrganization> getById(
+            @ApiParam("orgCode") @RequestParam String orgCode,
+            @RequestHeader HttpHeaders headers) {
+        return conditionalOnTable(headers, tableVersions.stamp(UCSBOrganization.class), tableVersions.lastModified(UCSBOrganization.class),
+                () -> ucsbOrganizationRepository.findById(orgCode)
+                        .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode)),
+                UCSBOrganization::getVersion);
     }
 
     //create org
@@ -75,20 +126,55 @@ public class UCSBOrganizationController extends ApiController {
         org.setInactive(inactive);
 
         UCSBOrganization savedOrgs = ucsbOrganizationRepository.save(org);
+        publisher.publishEvent(new TableChangedEvent(UCSBOrganization.class));
 
         return savedOrgs;
     }
 
+    //import orgs
+    @ApiOperation(value = "Import organizations from a CSV (with a header row) or NDJSON file; existing orgCodes are updated. Progress is streamed back as NDJSON")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> importOrganizations(
+        @ApiParam("file with orgCode, orgTranslationShort, orgTranslation and inactive columns") @RequestParam MultipartFile file
+    )
+    {
+        StreamingResponseBody progress = importService.importRows(file, UCSBOrganization.class,
+            UCSBOrganizationController::validate,
+            UCSBOrganization::getOrgCode,
+            ucsbOrganizationRepository::findAllById,
+            (incoming, org) -> {
+                org.setOrgTranslationShort(incoming.getOrgTranslationShort());
+                org.setOrgTranslation(incoming.getOrgTranslation());
+                org.setInactive(incoming.getInactive());
+            });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(progress);
+    }
+
+    private static String validate(UCSBOrganization org) {
+        if (org.getOrgCode() == null || org.getOrgCode().isBlank()) {
+            return "orgCode is required";
+        }
+        if (org.getOrgTranslationShort() == null || org.getOrgTranslationShort().isBlank()) {
+            return "orgTranslationShort is required";
+        }
+        if (org.getOrgTranslation() == null || org.getOrgTranslation().isBlank()) {
+            return "orgTranslation is required";
+        }
+        return null;
+    }
+
     //delete org
     @ApiOperation(value = "Delete a UCSBOrganization")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
     public Object deleteOrganization(
             @ApiParam("orgCode") @RequestParam String orgCode) {
-        UCSBOrganization org = ucsbOrganizationRepository.findById(orgCode)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
+        if (ucsbOrganizationRepository.deleteRow(orgCode) == 0) {
+            throw new EntityNotFoundException(UCSBOrganization.class, orgCode);
+        }
+        publisher.publishEvent(new TableChangedEvent(UCSBOrganization.class));
 
-        ucsbOrganizationRepository.delete(org);
         return genericMessage("UCSBOrganization with id %s deleted".formatted(orgCode));
     }
 
@@ -96,20 +182,23 @@ public class UCSBOrganizationController extends ApiController {
     @ApiOperation(value = "Update a single organization")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public UCSBOrganization updateOrganization(
+    public ResponseEntity<UCSBOrganization> updateOrganization(
             @ApiParam("orgCode") @RequestParam String orgCode,
-            @RequestBody @Valid UCSBOrganization incoming) {
-
-         UCSBOrganization org = ucsbOrganizationRepository.findById(orgCode)
-                 .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
-
-        //org.setOrgCode(incoming.getOrgCode());
-        org.setOrgTranslationShort(incoming.getOrgTranslationShort());
-        org.setOrgTranslation(incoming.getOrgTranslation());
-        org.setInactive(incoming.getInactive());
-
-        ucsbOrganizationRepository.save(org);
-
-        return org;
+            @RequestBody @Valid UCSBOrganization incoming,
+            @ApiParam("only update if the organization is still at this ETag") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        Long version = ifMatchVersion(ifMatch, UCSBOrganization.class, orgCode);
+        incoming.setOrgCode(orgCode);
+        Optional<Long> written = ucsbOrganizationRepository.updateRowAndGetVersion(incoming, version);
+        if (written.isEmpty()) {
+            if (version != null && ucsbOrganizationRepository.existsById(orgCode)) {
+                throw new EntityPreconditionFailedException(UCSBOrganization.class, orgCode, ifMatch);
+            }
+            throw new EntityNotFoundException(UCSBOrganization.class, orgCode);
+        }
+        publisher.publishEvent(new TableChangedEvent(UCSBOrganization.class));
+
+        incoming.setVersion(written.get());
+        return withETag(incoming, written.get());
     }
 }
@@ -2,10 +2,15 @@ package edu.ucsb.cs156.example.entities;
 
 import java.time.LocalDateTime;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.GeneratedValue;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,9 +22,11 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "article")
+@Table(indexes = @Index(name = "idx_article_title", columnList = "title"))
 public class Article {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "article_seq")
+    @SequenceGenerator(name = "article_seq", sequenceName = "article_seq", allocationSize = 50)
     private long id;
 
     private String title;
@@ -27,4 +34,8 @@ public class Article {
     private String explanation; 
     private String email; 
     private LocalDateTime dateAdded;
+
+    @Version
+    @Column(columnDefinition = "bigint default 0")
+    private long version;
 }
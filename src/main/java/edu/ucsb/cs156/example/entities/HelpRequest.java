@@ -2,10 +2,15 @@ package edu.ucsb.cs156.example.entities;
 
 import java.time.LocalDateTime;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.GeneratedValue;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,9 +22,14 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "helprequest")
+@Table(indexes = {
+    @Index(name = "idx_helprequest_solved", columnList = "solved"),
+    @Index(name = "idx_helprequest_team_id", columnList = "teamId")
+})
 public class HelpRequest {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "helprequest_seq")
+    @SequenceGenerator(name = "helprequest_seq", sequenceName = "helprequest_seq", allocationSize = 50)
     private long id;
 
     private String requesterEmail;
@@ -29,4 +39,13 @@ public class HelpRequest {
     private String explanation;
     private boolean solved;
 
+    /** Email of the TA who claimed the request from the queue; null while it is waiting for one. */
+    private String claimedBy;
+    private LocalDateTime claimedAt;
+
+    /** Null in a request body that doesn't say which version it was based on. */
+    @Version
+    @Column(columnDefinition = "bigint default 0", nullable = false)
+    private Long version;
+
 }
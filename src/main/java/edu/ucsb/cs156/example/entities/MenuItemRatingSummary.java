@@ -0,0 +1,37 @@
+package edu.ucsb.cs156.example.entities;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+/**
+ * Running totals of the reviews of one menu item, kept up to date by
+ * {@link edu.ucsb.cs156.example.services.MenuItemReviewService} whenever a
+ * review is created, changed or deleted.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "menuitemratingsummary")
+public class MenuItemRatingSummary {
+  @Id
+  private long itemId;
+
+  private long reviewCount;
+  private long starTotal;
+  private long stars1;
+  private long stars2;
+  private long stars3;
+  private long stars4;
+  private long stars5;
+
+  public Double getAverageStars() {
+    return reviewCount == 0 ? null : (double) starTotal / reviewCount;
+  }
+}
@@ -2,10 +2,15 @@ package edu.ucsb.cs156.example.entities;
 
 import java.time.LocalDateTime;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.GeneratedValue;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,9 +22,14 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "menuitemreview")
+@Table(indexes = {
+    @Index(name = "idx_menuitemreview_item_id", columnList = "itemId"),
+    @Index(name = "idx_menuitemreview_reviewer_email", columnList = "reviewerEmail")
+})
 public class MenuItemReview {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "menuitemreview_seq")
+  @SequenceGenerator(name = "menuitemreview_seq", sequenceName = "menuitemreview_seq", allocationSize = 50)
   private long id;
 
   private long itemId;
@@ -27,4 +37,8 @@ public class MenuItemReview {
   private int stars;  
   private LocalDateTime dateReviewed;
   private String comments;
+
+  @Version
+  @Column(columnDefinition = "bigint default 0")
+  private long version;
 }
\ No newline at end of file
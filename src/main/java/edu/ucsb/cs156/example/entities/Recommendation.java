@@ -2,10 +2,15 @@ package edu.ucsb.cs156.example.entities;
 
 import java.time.LocalDateTime;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.GeneratedValue;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,9 +22,14 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "recommendation")
+@Table(indexes = {
+    @Index(name = "idx_recommendation_done", columnList = "done"),
+    @Index(name = "idx_recommendation_requester_email", columnList = "requesterEmail")
+})
 public class Recommendation {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "recommendation_seq")
+  @SequenceGenerator(name = "recommendation_seq", sequenceName = "recommendation_seq", allocationSize = 50)
   private long id;
 
   private String requesterEmail;
@@ -28,4 +38,8 @@ public class Recommendation {
   private LocalDateTime dateRequested;
   private LocalDateTime dateNeeded;
   private boolean done;
+
+  @Version
+  @Column(columnDefinition = "bigint default 0")
+  private long version;
 }
@@ -3,10 +3,15 @@ package edu.ucsb.cs156.example.entities;
 
 import java.time.LocalDateTime;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.GeneratedValue;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -18,11 +23,17 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "UCSBmenuitems")
+@Table(indexes = @Index(name = "idx_ucsbmenuitems_dining_commons_code", columnList = "diningCommonsCode"))
 public class UCSBDiningCommonsMenuItem {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ucsbmenuitems_seq")
+  @SequenceGenerator(name = "ucsbmenuitems_seq", sequenceName = "ucsbmenuitems_seq", allocationSize = 50)
   private long id;
   private String diningCommonsCode;
   private String name;  
   private String station;
+
+  @Version
+  @Column(columnDefinition = "bigint default 0")
+  private long version;
 }
\ No newline at end of file
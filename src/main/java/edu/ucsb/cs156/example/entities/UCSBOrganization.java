@@ -1,7 +1,9 @@
 package /*main.java.*/edu.ucsb.cs156.example.entities;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Version;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -19,6 +21,10 @@ public class UCSBOrganization {
 	private String orgTranslationShort;
 	private String orgTranslation;
 	private boolean inactive;
+
+	@Version
+	@Column(columnDefinition = "bigint default 0")
+	private long version;
 }
 	/*public void setCode(String orgCodeA){orgCode = orgCodeA;}
 	public void setTranslationShort(String ots){orgTranslationShort = ots;}
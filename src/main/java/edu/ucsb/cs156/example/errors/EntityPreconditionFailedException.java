@@ -0,0 +1,8 @@
+package edu.ucsb.cs156.example.errors;
+
+public class EntityPreconditionFailedException extends RuntimeException {
+  public EntityPreconditionFailedException(Class<?> entityType, Object id, String ifMatch) {
+    super("%s with id %s does not match If-Match %s"
+      .formatted(entityType.getSimpleName(), id.toString(), ifMatch));
+  }
+}
@@ -0,0 +1,8 @@
+package edu.ucsb.cs156.example.errors;
+
+public class EntityVersionConflictException extends RuntimeException {
+  public EntityVersionConflictException(Class<?> entityType, Object id, long version) {
+    super("%s with id %s has been changed since version %d"
+      .formatted(entityType.getSimpleName(), id.toString(), version));
+  }
+}
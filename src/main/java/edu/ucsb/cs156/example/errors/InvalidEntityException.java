@@ -0,0 +1,8 @@
+package edu.ucsb.cs156.example.errors;
+
+public class InvalidEntityException extends RuntimeException {
+  public InvalidEntityException(Class<?> entityType, String problem) {
+    super("%s is invalid: %s"
+      .formatted(entityType.getSimpleName(), problem));
+  }
+}
@@ -0,0 +1,34 @@
+package edu.ucsb.cs156.example.events;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Published by the help request endpoints after a row is created, updated
+ * (which includes marking it solved) or deleted.
+ *
+ * <code>helpRequest</code> is the row as written, or null for a delete.
+ */
+
+@Data
+@AllArgsConstructor
+public class HelpRequestChangedEvent {
+  public enum Change { CREATED, UPDATED, DELETED }
+
+  private Change change;
+  private long id;
+  private HelpRequest helpRequest;
+
+  public static HelpRequestChangedEvent created(HelpRequest helpRequest) {
+    return new HelpRequestChangedEvent(Change.CREATED, helpRequest.getId(), helpRequest);
+  }
+
+  public static HelpRequestChangedEvent updated(HelpRequest helpRequest) {
+    return new HelpRequestChangedEvent(Change.UPDATED, helpRequest.getId(), helpRequest);
+  }
+
+  public static HelpRequestChangedEvent deleted(long id) {
+    return new HelpRequestChangedEvent(Change.DELETED, id, null);
+  }
+}
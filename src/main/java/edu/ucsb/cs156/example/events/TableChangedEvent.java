@@ -0,0 +1,16 @@
+package edu.ucsb.cs156.example.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Published after rows of an entity's table are inserted, updated or deleted,
+ * including through bulk JPQL statements that JPA entity listeners never see,
+ * so that anything derived from the whole table can be refreshed.
+ */
+
+@Data
+@AllArgsConstructor
+public class TableChangedEvent {
+  private Class<?> entityType;
+}
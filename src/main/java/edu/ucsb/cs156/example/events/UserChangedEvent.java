@@ -0,0 +1,16 @@
+package edu.ucsb.cs156.example.events;
+
+import edu.ucsb.cs156.example.entities.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Published whenever a row of the users table is inserted, updated or deleted
+ * through JPA, so that anything caching user data can drop its copy.
+ */
+
+@Data
+@AllArgsConstructor
+public class UserChangedEvent {
+  private User user;
+}
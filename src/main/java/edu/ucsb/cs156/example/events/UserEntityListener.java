@@ -0,0 +1,31 @@
+package edu.ucsb.cs156.example.events;
+
+import edu.ucsb.cs156.example.entities.User;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * JPA entity listener for {@link User}; turns every write into a
+ * {@link UserChangedEvent}.
+ *
+ * Hibernate obtains this listener from the Spring bean factory, which is
+ * what makes the <code>@Autowired</code> field work.
+ */
+
+public class UserEntityListener {
+
+  @Autowired
+  private ApplicationEventPublisher publisher;
+
+  @PostPersist
+  @PostUpdate
+  @PostRemove
+  public void userChanged(User user) {
+    publisher.publishEvent(new UserChangedEvent(user));
+  }
+}
@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+/**
+ * Result for one row of a bulk create: the id it was saved under, or the
+ * reason it was rejected.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class BulkRowResult {
+  private int index;
+  private Object id;
+  private String error;
+
+  public static BulkRowResult of(int index) {
+    return new BulkRowResult(index, null, null);
+  }
+}
@@ -0,0 +1,28 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.util.List;
+
+/**
+ * One line of an import's NDJSON progress stream. The counters are running
+ * totals; <code>errors</code> only lists the rows rejected since the previous
+ * line. The last line has <code>done</code> set.
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class ImportProgress {
+  private long processed;
+  private long inserted;
+  private long updated;
+  private long rejected;
+  private boolean done;
+  private List<BulkRowResult> errors;
+}
@@ -0,0 +1,18 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A response body encoded once and served many times: the JSON bytes, the
+ * same bytes gzipped (or <code>null</code> when not worth keeping), and the
+ * table stamp they were built at.
+ */
+
+@Data
+@AllArgsConstructor
+public class JsonSnapshot {
+  private long tableStamp;
+  private byte[] json;
+  private byte[] gzip;
+}
@@ -2,11 +2,78 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Article;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 
 @Repository
+@Transactional(readOnly = true)
 public interface ArticleRepository extends CrudRepository<Article, Long> {
+  @Override
+  @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+  Iterable<Article> findAll();
+
   Iterable<Article> findAllByTitle(String title);
+  List<Article> findByIdGreaterThanOrderByIdAsc(long afterId, Pageable pageable);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  @Query("select a from article a")
+  Stream<Article> streamAll();
+
+  /** Deletes the row with a single statement; returns the number of rows deleted (0 or 1). */
+  @Modifying
+  @Transactional
+  @Query("delete from article a where a.id = :id")
+  int deleteRow(@Param("id") long id);
+
+  /**
+   * Overwrites the row with the same id (and, unless <code>version</code> is
+   * null, that version) with a single statement, bumping its version;
+   * returns the number of rows updated (0 or 1).
+   */
+  @Modifying
+  @Transactional
+  @Query("update article a set "
+      + "a.title = :#{#article.title}, "
+      + "a.url = :#{#article.url}, "
+      + "a.explanation = :#{#article.explanation}, "
+      + "a.email = :#{#article.email}, "
+      + "a.dateAdded = :#{#article.dateAdded}, "
+      + "a.version = a.version + 1 "
+      + "where a.id = :#{#article.id} and (:version is null or a.version = :version)")
+  int updateRow(@Param("article") Article article, @Param("version") Long version);
+
+  @Query("select a.version from article a where a.id = :id")
+  Optional<Long> findVersionById(@Param("id") long id);
+
+  /**
+   * {@link #updateRow}, returning the version it wrote, or empty when no row
+   * was updated. Without a <code>version</code> to check, the new one is read
+   * back in the same transaction, while the update still locks the row.
+   */
+  @Transactional
+  default Optional<Long> updateRowAndGetVersion(Article article, Long version) {
+    if (updateRow(article, version) == 0) {
+      return Optional.empty();
+    }
+    return version == null ? findVersionById(article.getId()) : Optional.of(version + 1);
+  }
 }
@@ -3,9 +3,104 @@ package edu.ucsb.cs156.example.repositories;
 import edu.ucsb.cs156.example.entities.HelpRequest;
 
 import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
+@Transactional(readOnly = true)
 public interface HelpRequestRepository extends CrudRepository<HelpRequest, Long> {
+  @Override
+  @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+  Iterable<HelpRequest> findAll();
+
+  Iterable<HelpRequest> findAllBySolved(boolean solved);
+  Iterable<HelpRequest> findAllByTeamId(String teamId);
+  Iterable<HelpRequest> findAllByTeamIdAndSolved(String teamId, boolean solved);
+  List<HelpRequest> findByIdGreaterThanOrderByIdAsc(long afterId, Pageable pageable);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  @Query("select h from helprequest h")
+  Stream<HelpRequest> streamAll();
+
+  /** Deletes the row with a single statement; returns the number of rows deleted (0 or 1). */
+  @Modifying
+  @Transactional
+  @Query("delete from helprequest h where h.id = :id")
+  int deleteRow(@Param("id") long id);
+
+  /**
+   * Records who claimed the row if it is still unsolved, unclaimed and at the
+   * given version; returns the number of rows updated (0 or 1).
+   */
+  @Modifying
+  @Transactional
+  @Query("update helprequest h set h.claimedBy = :claimedBy, h.claimedAt = :claimedAt, h.version = h.version + 1 "
+      + "where h.id = :id and h.version = :version and h.claimedBy is null and h.solved = false")
+  int markClaimed(@Param("id") long id, @Param("version") long version,
+      @Param("claimedBy") String claimedBy, @Param("claimedAt") LocalDateTime claimedAt);
+
+  /**
+   * Clears the claim on the row if it is claimed and still unsolved; returns
+   * the number of rows updated (0 or 1).
+   */
+  @Modifying
+  @Transactional
+  @Query("update helprequest h set h.claimedBy = null, h.claimedAt = null, h.version = h.version + 1 "
+      + "where h.id = :id and h.claimedBy is not null and h.solved = false")
+  int releaseClaim(@Param("id") long id);
+
+  /**
+   * Overwrites the row with the same id (and, unless <code>version</code> is
+   * null, that version) with a single statement, bumping its version;
+   * returns the number of rows updated (0 or 1).
+   */
+  @Modifying
+  @Transactional
+  @Query("update helprequest h set "
+      + "h.requesterEmail = :#{#helpRequest.requesterEmail}, "
+      + "h.teamId = :#{#helpRequest.teamId}, "
+      + "h.tableOrBreakoutRoom = :#{#helpRequest.tableOrBreakoutRoom}, "
+      + "h.requestTime = :#{#helpRequest.requestTime}, "
+      + "h.explanation = :#{#helpRequest.explanation}, "
+      + "h.solved = :#{#helpRequest.solved}, "
+      + "h.claimedBy = :#{#helpRequest.claimedBy}, "
+      + "h.claimedAt = :#{#helpRequest.claimedAt}, "
+      + "h.version = h.version + 1 "
+      + "where h.id = :#{#helpRequest.id} and (:version is null or h.version = :version)")
+  int updateRow(@Param("helpRequest") HelpRequest helpRequest, @Param("version") Long version);
+
+  @Query("select h.version from helprequest h where h.id = :id")
+  Optional<Long> findVersionById(@Param("id") long id);
+
+  /**
+   * {@link #updateRow}, returning the version it wrote, or empty when no row
+   * was updated. Without a <code>version</code> to check, the new one is read
+   * back in the same transaction, while the update still locks the row.
+   */
+  @Transactional
+  default Optional<Long> updateRowAndGetVersion(HelpRequest helpRequest, Long version) {
+    if (updateRow(helpRequest, version) == 0) {
+      return Optional.empty();
+    }
+    return version == null ? findVersionById(helpRequest.getId()) : Optional.of(version + 1);
+  }
 }
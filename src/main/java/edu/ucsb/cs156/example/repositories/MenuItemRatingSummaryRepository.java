@@ -0,0 +1,95 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.MenuItemRatingSummary;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+@Transactional(readOnly = true)
+public interface MenuItemRatingSummaryRepository extends CrudRepository<MenuItemRatingSummary, Long> {
+
+  @Query("select s from menuitemratingsummary s where s.reviewCount >= :minReviews "
+      + "order by (s.starTotal * 1.0 / s.reviewCount) desc, s.reviewCount desc, s.itemId asc")
+  List<MenuItemRatingSummary> findTopRated(@Param("minReviews") long minReviews, Pageable pageable);
+
+  /**
+   * Adds every counter of <code>delta</code> to the summary row for the same
+   * item in a single statement; returns 0 if that item has no summary row yet.
+   */
+  @Modifying
+  @Transactional
+  @Query("update menuitemratingsummary s set "
+      + "s.reviewCount = s.reviewCount + :#{#delta.reviewCount}, "
+      + "s.starTotal = s.starTotal + :#{#delta.starTotal}, "
+      + "s.stars1 = s.stars1 + :#{#delta.stars1}, "
+      + "s.stars2 = s.stars2 + :#{#delta.stars2}, "
+      + "s.stars3 = s.stars3 + :#{#delta.stars3}, "
+      + "s.stars4 = s.stars4 + :#{#delta.stars4}, "
+      + "s.stars5 = s.stars5 + :#{#delta.stars5} "
+      + "where s.itemId = :#{#delta.itemId}")
+  int addDelta(@Param("delta") MenuItemRatingSummary delta);
+
+  /**
+   * {@link #addDelta}, inserting <code>delta</code> as the summary row when the
+   * item has none yet, in one statement that concurrent first reviews of the
+   * same item can't both insert; PostgreSQL only.
+   */
+  @Modifying
+  @Transactional
+  @Query(nativeQuery = true, value = "insert into menuitemratingsummary "
+      + "(item_id, review_count, star_total, stars1, stars2, stars3, stars4, stars5) values ("
+      + ":#{#delta.itemId}, :#{#delta.reviewCount}, :#{#delta.starTotal}, :#{#delta.stars1}, "
+      + ":#{#delta.stars2}, :#{#delta.stars3}, :#{#delta.stars4}, :#{#delta.stars5}) "
+      + "on conflict (item_id) do update set "
+      + "review_count = menuitemratingsummary.review_count + excluded.review_count, "
+      + "star_total = menuitemratingsummary.star_total + excluded.star_total, "
+      + "stars1 = menuitemratingsummary.stars1 + excluded.stars1, "
+      + "stars2 = menuitemratingsummary.stars2 + excluded.stars2, "
+      + "stars3 = menuitemratingsummary.stars3 + excluded.stars3, "
+      + "stars4 = menuitemratingsummary.stars4 + excluded.stars4, "
+      + "stars5 = menuitemratingsummary.stars5 + excluded.stars5")
+  int upsertDeltaOnConflict(@Param("delta") MenuItemRatingSummary delta);
+
+  /** {@link #upsertDeltaOnConflict} as a standard MERGE, for H2. */
+  @Modifying
+  @Transactional
+  @Query(nativeQuery = true, value = "merge into menuitemratingsummary s using (select "
+      + "cast(:#{#delta.itemId} as bigint) item_id, cast(:#{#delta.reviewCount} as bigint) review_count, "
+      + "cast(:#{#delta.starTotal} as bigint) star_total, cast(:#{#delta.stars1} as bigint) stars1, "
+      + "cast(:#{#delta.stars2} as bigint) stars2, cast(:#{#delta.stars3} as bigint) stars3, "
+      + "cast(:#{#delta.stars4} as bigint) stars4, cast(:#{#delta.stars5} as bigint) stars5) d "
+      + "on s.item_id = d.item_id "
+      + "when matched then update set "
+      + "review_count = s.review_count + d.review_count, star_total = s.star_total + d.star_total, "
+      + "stars1 = s.stars1 + d.stars1, stars2 = s.stars2 + d.stars2, stars3 = s.stars3 + d.stars3, "
+      + "stars4 = s.stars4 + d.stars4, stars5 = s.stars5 + d.stars5 "
+      + "when not matched then insert "
+      + "(item_id, review_count, star_total, stars1, stars2, stars3, stars4, stars5) values "
+      + "(d.item_id, d.review_count, d.star_total, d.stars1, d.stars2, d.stars3, d.stars4, d.stars5)")
+  int upsertDeltaMerge(@Param("delta") MenuItemRatingSummary delta);
+
+  /**
+   * Inserts the summary of every reviewed item that has no summary row, computed
+   * from its reviews; returns the number of rows inserted.
+   */
+  @Modifying
+  @Transactional
+  @Query(nativeQuery = true, value = "insert into menuitemratingsummary "
+      + "(item_id, review_count, star_total, stars1, stars2, stars3, stars4, stars5) "
+      + "select r.item_id, count(*), sum(r.stars), "
+      + "sum(case when r.stars = 1 then 1 else 0 end), sum(case when r.stars = 2 then 1 else 0 end), "
+      + "sum(case when r.stars = 3 then 1 else 0 end), sum(case when r.stars = 4 then 1 else 0 end), "
+      + "sum(case when r.stars = 5 then 1 else 0 end) "
+      + "from menuitemreview r "
+      + "where not exists (select 1 from menuitemratingsummary s where s.item_id = r.item_id) "
+      + "group by r.item_id")
+  int insertMissingSummaries();
+}
@@ -2,11 +2,73 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.MenuItemReview;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 
 @Repository
+@Transactional(readOnly = true)
 public interface MenuItemReviewRepository extends CrudRepository<MenuItemReview, Long> {
+  @Override
+  @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+  Iterable<MenuItemReview> findAll();
+
+  Iterable<MenuItemReview> findAllByItemId(long itemId);
+  Iterable<MenuItemReview> findAllByReviewerEmail(String reviewerEmail);
+  Iterable<MenuItemReview> findAllByItemIdAndReviewerEmail(long itemId, String reviewerEmail);
+  List<MenuItemReview> findByIdGreaterThanOrderByIdAsc(long afterId, Pageable pageable);
+
+  /** Reads a review and locks its row until the end of the caller's (read-write) transaction. */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Transactional(propagation = Propagation.MANDATORY)
+  @Query("select r from menuitemreview r where r.id = :id")
+  Optional<MenuItemReview> findByIdForUpdate(@Param("id") long id);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  @Query("select r from menuitemreview r")
+  Stream<MenuItemReview> streamAll();
+
+  /** Deletes the row with a single statement; returns the number of rows deleted (0 or 1). */
+  @Modifying
+  @Transactional
+  @Query("delete from menuitemreview r where r.id = :id")
+  int deleteRow(@Param("id") long id);
 
-}
\ No newline at end of file
+  /**
+   * Overwrites the row with the same id (and, unless <code>version</code> is
+   * null, that version) with a single statement, bumping its version;
+   * returns the number of rows updated (0 or 1).
+   */
+  @Modifying
+  @Transactional
+  @Query("update menuitemreview r set "
+      + "r.itemId = :#{#review.itemId}, "
+      + "r.reviewerEmail = :#{#review.reviewerEmail}, "
+      + "r.stars = :#{#review.stars}, "
+      + "r.dateReviewed = :#{#review.dateReviewed}, "
+      + "r.comments = :#{#review.comments}, "
+      + "r.version = r.version + 1 "
+      + "where r.id = :#{#review.id} and (:version is null or r.version = :version)")
+  int updateRow(@Param("review") MenuItemReview review, @Param("version") Long version);
+}
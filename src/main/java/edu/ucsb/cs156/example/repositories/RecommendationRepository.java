@@ -3,11 +3,81 @@ package edu.ucsb.cs156.example.repositories;
 import edu.ucsb.cs156.example.entities.Recommendation;
 
 import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 
 @Repository
+@Transactional(readOnly = true)
 public interface RecommendationRepository extends CrudRepository<Recommendation, Long> {
+  @Override
+  @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+  Iterable<Recommendation> findAll();
+
+  Iterable<Recommendation> findAllByDone(boolean done);
+  Iterable<Recommendation> findAllByRequesterEmail(String requesterEmail);
+  Iterable<Recommendation> findAllByRequesterEmailAndDone(String requesterEmail, boolean done);
+  List<Recommendation> findByIdGreaterThanOrderByIdAsc(long afterId, Pageable pageable);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  @Query("select r from recommendation r")
+  Stream<Recommendation> streamAll();
+
+  /** Deletes the row with a single statement; returns the number of rows deleted (0 or 1). */
+  @Modifying
+  @Transactional
+  @Query("delete from recommendation r where r.id = :id")
+  int deleteRow(@Param("id") long id);
+
+  /**
+   * Overwrites the row with the same id (and, unless <code>version</code> is
+   * null, that version) with a single statement, bumping its version;
+   * returns the number of rows updated (0 or 1).
+   */
+  @Modifying
+  @Transactional
+  @Query("update recommendation r set "
+      + "r.requesterEmail = :#{#recommendation.requesterEmail}, "
+      + "r.professorEmail = :#{#recommendation.professorEmail}, "
+      + "r.explanation = :#{#recommendation.explanation}, "
+      + "r.dateRequested = :#{#recommendation.dateRequested}, "
+      + "r.dateNeeded = :#{#recommendation.dateNeeded}, "
+      + "r.done = :#{#recommendation.done}, "
+      + "r.version = r.version + 1 "
+      + "where r.id = :#{#recommendation.id} and (:version is null or r.version = :version)")
+  int updateRow(@Param("recommendation") Recommendation recommendation, @Param("version") Long version);
+
+  @Query("select r.version from recommendation r where r.id = :id")
+  Optional<Long> findVersionById(@Param("id") long id);
 
+  /**
+   * {@link #updateRow}, returning the version it wrote, or empty when no row
+   * was updated. Without a <code>version</code> to check, the new one is read
+   * back in the same transaction, while the update still locks the row.
+   */
+  @Transactional
+  default Optional<Long> updateRowAndGetVersion(Recommendation recommendation, Long version) {
+    if (updateRow(recommendation, version) == 0) {
+      return Optional.empty();
+    }
+    return version == null ? findVersionById(recommendation.getId()) : Optional.of(version + 1);
+  }
 }
@@ -2,11 +2,78 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 
 @Repository
+@Transactional(readOnly = true)
 public interface UCSBDateRepository extends CrudRepository<UCSBDate, Long> {
+  @Override
+  @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+  Iterable<UCSBDate> findAll();
+
   Iterable<UCSBDate> findAllByQuarterYYYYQ(String quarterYYYYQ);
-}
\ No newline at end of file
+  List<UCSBDate> findAllByQuarterYYYYQIn(Collection<String> quarters);
+  List<UCSBDate> findByIdGreaterThanOrderByIdAsc(long afterId, Pageable pageable);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  @Query("select d from ucsbdates d")
+  Stream<UCSBDate> streamAll();
+
+  /** Deletes the row with a single statement; returns the number of rows deleted (0 or 1). */
+  @Modifying
+  @Transactional
+  @Query("delete from ucsbdates d where d.id = :id")
+  int deleteRow(@Param("id") long id);
+
+  /**
+   * Overwrites the row with the same id (and, unless <code>version</code> is
+   * null, that version) with a single statement, bumping its version;
+   * returns the number of rows updated (0 or 1).
+   */
+  @Modifying
+  @Transactional
+  @Query("update ucsbdates d set "
+      + "d.quarterYYYYQ = :#{#ucsbDate.quarterYYYYQ}, "
+      + "d.name = :#{#ucsbDate.name}, "
+      + "d.localDateTime = :#{#ucsbDate.localDateTime}, "
+      + "d.version = d.version + 1 "
+      + "where d.id = :#{#ucsbDate.id} and (:version is null or d.version = :version)")
+  int updateRow(@Param("ucsbDate") UCSBDate ucsbDate, @Param("version") Long version);
+
+  @Query("select d.version from ucsbdates d where d.id = :id")
+  Optional<Long> findVersionById(@Param("id") long id);
+
+  /**
+   * {@link #updateRow}, returning the version it wrote, or empty when no row
+   * was updated. Without a <code>version</code> to check, the new one is read
+   * back in the same transaction, while the update still locks the row.
+   */
+  @Transactional
+  default Optional<Long> updateRowAndGetVersion(UCSBDate ucsbDate, Long version) {
+    if (updateRow(ucsbDate, version) == 0) {
+      return Optional.empty();
+    }
+    return version == null ? findVersionById(ucsbDate.getId()) : Optional.of(version + 1);
+  }
+}
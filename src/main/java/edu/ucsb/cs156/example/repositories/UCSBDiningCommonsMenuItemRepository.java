@@ -1,12 +1,85 @@
 package edu.ucsb.cs156.example.repositories;
 
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import edu.ucsb.cs156.example.config.CacheConfig;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 @Repository
+@Transactional(readOnly = true)
 public interface UCSBDiningCommonsMenuItemRepository extends CrudRepository<UCSBDiningCommonsMenuItem, Long> {
-           
+  /** Cached by id; see {@link CacheConfig}. */
+  @Override
+  @Cacheable(cacheNames = CacheConfig.UCSB_DINING_COMMONS_MENU_ITEMS, unless = "#result == null")
+  Optional<UCSBDiningCommonsMenuItem> findById(Long id);
+
+  @Override
+  @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+  Iterable<UCSBDiningCommonsMenuItem> findAll();
+
+  Iterable<UCSBDiningCommonsMenuItem> findAllByDiningCommonsCode(String diningCommonsCode);
+  List<UCSBDiningCommonsMenuItem> findByIdGreaterThanOrderByIdAsc(long afterId, Pageable pageable);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  @Query("select m from UCSBmenuitems m")
+  Stream<UCSBDiningCommonsMenuItem> streamAll();
+
+  @Query("select m.id from UCSBmenuitems m order by m.id")
+  List<Long> findAllIds();
+
+  /** Deletes the row with a single statement; returns the number of rows deleted (0 or 1). */
+  @Modifying
+  @Transactional
+  @Query("delete from UCSBmenuitems m where m.id = :id")
+  int deleteRow(@Param("id") long id);
+
+  /**
+   * Overwrites the row with the same id (and, unless <code>version</code> is
+   * null, that version) with a single statement, bumping its version;
+   * returns the number of rows updated (0 or 1).
+   */
+  @Modifying
+  @Transactional
+  @Query("update UCSBmenuitems m set "
+      + "m.name = :#{#menuitem.name}, "
+      + "m.diningCommonsCode = :#{#menuitem.diningCommonsCode}, "
+      + "m.station = :#{#menuitem.station}, "
+      + "m.version = m.version + 1 "
+      + "where m.id = :#{#menuitem.id} and (:version is null or m.version = :version)")
+  int updateRow(@Param("menuitem") UCSBDiningCommonsMenuItem menuitem, @Param("version") Long version);
+
+  @Query("select m.version from UCSBmenuitems m where m.id = :id")
+  Optional<Long> findVersionById(@Param("id") long id);
 
-    
+  /**
+   * {@link #updateRow}, returning the version it wrote, or empty when no row
+   * was updated. Without a <code>version</code> to check, the new one is read
+   * back in the same transaction, while the update still locks the row.
+   */
+  @Transactional
+  default Optional<Long> updateRowAndGetVersion(UCSBDiningCommonsMenuItem menuitem, Long version) {
+    if (updateRow(menuitem, version) == 0) {
+      return Optional.empty();
+    }
+    return version == null ? findVersionById(menuitem.getId()) : Optional.of(version + 1);
+  }
 }
@@ -1,13 +1,87 @@
 package edu.ucsb.cs156.example.repositories;
 
+import edu.ucsb.cs156.example.config.CacheConfig;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 
 import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 
 @Repository
+@Transactional(readOnly = true)
 public interface UCSBDiningCommonsRepository extends CrudRepository<UCSBDiningCommons, String> {
- 
-}
\ No newline at end of file
+  /** Cached by id; see {@link CacheConfig}. */
+  @Override
+  @Cacheable(cacheNames = CacheConfig.UCSB_DINING_COMMONS, unless = "#result == null")
+  Optional<UCSBDiningCommons> findById(String code);
+
+  @Override
+  @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+  Iterable<UCSBDiningCommons> findAll();
+
+  List<UCSBDiningCommons> findByCodeGreaterThanOrderByCodeAsc(String afterCode, Pageable pageable);
+
+  @QueryHints({
+      @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+      @QueryHint(name = HINT_READONLY, value = "true")
+  })
+  @Query("select c from ucsbdiningcommons c")
+  Stream<UCSBDiningCommons> streamAll();
+
+  /** Deletes the row with a single statement; returns the number of rows deleted (0 or 1). */
+  @Modifying
+  @Transactional
+  @Query("delete from ucsbdiningcommons c where c.code = :code")
+  int deleteRow(@Param("code") String code);
+
+  /**
+   * Overwrites the row with the same code (and, unless <code>version</code> is
+   * null, that version) with a single statement, bumping its version;
+   * returns the number of rows updated (0 or 1).
+   */
+  @Modifying
+  @Transactional
+  @Query("update ucsbdiningcommons c set "
+      + "c.name = :#{#commons.name}, "
+      + "c.hasSackMeal = :#{#commons.hasSackMeal}, "
+      + "c.hasTakeOutMeal = :#{#commons.hasTakeOutMeal}, "
+      + "c.hasDiningCam = :#{#commons.hasDiningCam}, "
+      + "c.latitude = :#{#commons.latitude}, "
+      + "c.longitude = :#{#commons.longitude}, "
+      + "c.version = c.version + 1 "
+      + "where c.code = :#{#commons.code} and (:version is null or c.version = :version)")
+  int updateRow(@Param("commons") UCSBDiningCommons commons, @Param("version") Long version);
+
+  @Query("select c.version from ucsbdiningcommons c where c.code = :code")
+  Optional<Long> findVersionById(@Param("code") String code);
+
+  /**
+   * {@link #updateRow}, returning the version it wrote, or empty when no row
+   * was updated. Without a <code>version</code> to check, the new one is read
+   * back in the same transaction, while the update still locks the row.
+   */
+  @Transactional
+  default Optional<Long> updateRowAndGetVersion(UCSBDiningCommons commons, Long version) {
+    if (updateRow(commons, version) == 0) {
+      return Optional.empty();
+    }
+    return version == null ? findVersionById(commons.getCode()) : Optional.of(version + 1);
+  }
+}
@@ -1,15 +1,87 @@
 //package main.java.edu.ucsb.cs156.example.repositories;
 package edu.ucsb.cs156.example.repositories;
 
+import edu.ucsb.cs156.example.config.CacheConfig;
 import /*main.java.*/edu.ucsb.cs156.example.entities.UCSBOrganization;
 
 import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 
 @Repository
+@Transactional(readOnly = true)
 public interface UCSBOrganizationRepository extends CrudRepository<UCSBOrganization, String> {
     //  Iterable<UCSBDate> findAllByQuarterYYYYQ(String quarterYYYYQ);//from date repository
     //Iterable<UCSBOrganization> findAllByID(String ID);
-}
\ No newline at end of file
+    /** Cached by id; see {@link CacheConfig}. */
+    @Override
+    @Cacheable(cacheNames = CacheConfig.UCSB_ORGANIZATIONS, unless = "#result == null")
+    Optional<UCSBOrganization> findById(String orgCode);
+
+    @Override
+    @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+    Iterable<UCSBOrganization> findAll();
+
+    List<UCSBOrganization> findByOrgCodeGreaterThanOrderByOrgCodeAsc(String afterOrgCode, Pageable pageable);
+
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("select o from ucsborganization o")
+    Stream<UCSBOrganization> streamAll();
+
+    /** Deletes the row with a single statement; returns the number of rows deleted (0 or 1). */
+    @Modifying
+    @Transactional
+    @Query("delete from ucsborganization o where o.orgCode = :orgCode")
+    int deleteRow(@Param("orgCode") String orgCode);
+
+    /**
+     * Overwrites the row with the same orgCode (and, unless <code>version</code> is
+     * null, that version) with a single statement, bumping its version;
+     * returns the number of rows updated (0 or 1).
+     */
+    @Modifying
+    @Transactional
+    @Query("update ucsborganization o set "
+        + "o.orgTranslationShort = :#{#org.orgTranslationShort}, "
+        + "o.orgTranslation = :#{#org.orgTranslation}, "
+        + "o.inactive = :#{#org.inactive}, "
+        + "o.version = o.version + 1 "
+        + "where o.orgCode = :#{#org.orgCode} and (:version is null or o.version = :version)")
+    int updateRow(@Param("org") UCSBOrganization org, @Param("version") Long version);
+
+    @Query("select o.version from ucsborganization o where o.orgCode = :orgCode")
+    Optional<Long> findVersionById(@Param("orgCode") String orgCode);
+
+    /**
+     * {@link #updateRow}, returning the version it wrote, or empty when no row
+     * was updated. Without a <code>version</code> to check, the new one is read
+     * back in the same transaction, while the update still locks the row.
+     */
+    @Transactional
+    default Optional<Long> updateRowAndGetVersion(UCSBOrganization org, Long version) {
+        if (updateRow(org, version) == 0) {
+            return Optional.empty();
+        }
+        return version == null ? findVersionById(org.getOrgCode()) : Optional.of(version + 1);
+    }
+}
@@ -0,0 +1,84 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.events.UserChangedEvent;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Decides whether an email address belongs to an admin: either it is listed
+ * in <code>app.admin.emails</code>, or the matching row in the users table
+ * has <code>admin</code> set.
+ *
+ * The database answer is cached per email (including "no such user") and
+ * dropped whenever that user row changes. A null email (for example from a
+ * login that did not share one) is never an admin.
+ */
+
+@Slf4j
+@Service("admin")
+public class AdminService {
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Value("${app.admin.emails}")
+  private String[] adminEmails;
+
+  @Value("${app.admin.cache.maximumSize:10000}")
+  private long cacheMaximumSize;
+
+  @Value("${app.admin.cache.expireAfterWriteSeconds:300}")
+  private long cacheExpireAfterWriteSeconds;
+
+  private Set<String> adminEmailSet;
+
+  private Cache<String, Boolean> adminFlagsByEmail;
+
+  @PostConstruct
+  void init() {
+    adminEmailSet = Set.copyOf(Arrays.asList(adminEmails));
+    adminFlagsByEmail = Caffeine.newBuilder()
+      .maximumSize(cacheMaximumSize)
+      .expireAfterWrite(cacheExpireAfterWriteSeconds, TimeUnit.SECONDS)
+      .build();
+  }
+
+  public boolean isAdminEmail(String email) {
+    // Set.copyOf's set throws on contains(null)
+    return email != null && adminEmailSet.contains(email);
+  }
+
+  public boolean isAdmin(String email) {
+    if (email == null) {
+      return false;
+    }
+    if (isAdminEmail(email)) {
+      return true;
+    }
+    return adminFlagsByEmail.get(email,
+        e -> userRepository.findByEmail(e).map(User::getAdmin).orElse(false));
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onUserChanged(UserChangedEvent event) {
+    String email = event.getUser().getEmail();
+    if (email != null) {
+      adminFlagsByEmail.invalidate(email);
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.events.TableChangedEvent;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.BulkRowResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Reads a request body that is either a JSON array or newline-delimited JSON
+ * (one object per line) and saves the rows with <code>saveAll</code>, one
+ * transaction per <code>app.bulk.batchSize</code> rows.
+ *
+ * Rows are parsed and validated one at a time, so only the current batch is
+ * held in memory. A row that fails validation is reported and skipped; a
+ * batch that fails to save is reported row by row and the rest of the body is
+ * still processed. Batches that were committed stay committed.
+ */
+
+@Slf4j
+@Service("bulkSave")
+public class BulkSaveService {
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private ObjectMapper mapper;
+
+  @Autowired
+  private ApplicationEventPublisher publisher;
+
+  @Value("${app.bulk.batchSize:500}")
+  private int batchSize;
+
+  /**
+   * @param validator returns a message describing what is wrong with a row,
+   *                  or <code>null</code> if it may be saved
+   * @param idOf      extracts the key a saved row was stored under
+   */
+  public <T> BulkResult saveAll(InputStream body, Class<T> type, Function<T, String> validator,
+      CrudRepository<T, ?> repository, Function<T, ?> idOf) throws IOException {
+    return saveAll(body, type, validator, repository, idOf, saved -> { });
+  }
+
+  /**
+   * @param afterSave called with each batch of saved rows, inside the
+   *                  batch's transaction
+   */
+  public <T> BulkResult saveAll(InputStream body, Class<T> type, Function<T, String> validator,
+      CrudRepository<T, ?> repository, Function<T, ?> idOf, Consumer<List<T>> afterSave) throws IOException {
+    List<BulkRowResult> results = new ArrayList<>();
+    try {
+      readAndSave(body, type, validator, repository, idOf, afterSave, results);
+    } finally {
+      // batches commit one by one, so announce the change once the last one is in
+      publisher.publishEvent(new TableChangedEvent(type));
+    }
+
+    int rejected = (int) results.stream().filter(r -> r.getError() != null).count();
+    log.info("bulk save of {}: {} saved, {} rejected", type.getSimpleName(), results.size() - rejected, rejected);
+    return new BulkResult(results.size() - rejected, rejected, results);
+  }
+
+  private <T> void readAndSave(InputStream body, Class<T> type, Function<T, String> validator,
+      CrudRepository<T, ?> repository, Function<T, ?> idOf, Consumer<List<T>> afterSave,
+      List<BulkRowResult> results) throws IOException {
+    List<T> batch = new ArrayList<>();
+    List<BulkRowResult> batchResults = new ArrayList<>();
+
+    try (MappingIterator<T> rows = mapper.readerFor(type).readValues(body)) {
+      while (true) {
+        BulkRowResult result = BulkRowResult.of(results.size());
+        T row;
+        try {
+          if (!rows.hasNextValue()) {
+            break;
+          }
+          row = rows.nextValue();
+        } catch (JsonProcessingException e) {
+          // the parser cannot resynchronise after malformed input, so stop here
+          result.setError("malformed JSON: " + e.getOriginalMessage());
+          results.add(result);
+          break;
+        }
+        results.add(result);
+
+        String error = validator.apply(row);
+        if (error != null) {
+          result.setError(error);
+          continue;
+        }
+        batch.add(row);
+        batchResults.add(result);
+        if (batch.size() >= batchSize) {
+          saveBatch(batch, batchResults, repository, idOf, afterSave);
+        }
+      }
+    }
+    if (!batch.isEmpty()) {
+      saveBatch(batch, batchResults, repository, idOf, afterSave);
+    }
+  }
+
+  private <T> void saveBatch(List<T> batch, List<BulkRowResult> batchResults,
+      CrudRepository<T, ?> repository, Function<T, ?> idOf, Consumer<List<T>> afterSave) {
+    try {
+      List<T> saved = new ArrayList<>(batch.size());
+      new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+        repository.saveAll(batch).forEach(saved::add);
+        afterSave.accept(saved);
+      });
+      for (int i = 0; i < saved.size(); i++) {
+        batchResults.get(i).setId(idOf.apply(saved.get(i)));
+      }
+    } catch (DataAccessException | TransactionException e) {
+      log.warn("bulk save batch of {} rows failed", batch.size(), e);
+      batchResults.forEach(r -> r.setError("save failed: " + e.getMostSpecificCause().getMessage()));
+    }
+    batch.clear();
+    batchResults.clear();
+  }
+}
@@ -1,14 +1,19 @@
 package edu.ucsb.cs156.example.services;
 
 import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.events.UserChangedEvent;
 import edu.ucsb.cs156.example.models.CurrentUser;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -19,26 +24,58 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 
 @Slf4j
 @Service("currentUser")
 public class CurrentUserServiceImpl extends CurrentUserService {
+  private static final String REQUEST_ATTRIBUTE = CurrentUserServiceImpl.class.getName() + ".user";
+
   @Autowired
   private UserRepository userRepository;
 
   @Autowired
   GrantedAuthoritiesService grantedAuthoritiesService;
 
-  @Value("${app.admin.emails}")
-  final private List<String> adminEmails = new ArrayList<String>();
+  @Autowired
+  AdminService adminService;
+
+  @Value("${app.currentUser.cache.maximumSize:10000}")
+  private long cacheMaximumSize;
+
+  @Value("${app.currentUser.cache.expireAfterWriteSeconds:300}")
+  private long cacheExpireAfterWriteSeconds;
+
+  // Users keyed by their OAuth "sub"; saves a findByEmail round trip per request.
+  // The cache holds its own copies, and hands out new ones, so that no request
+  // can change what another one sees.
+  private Cache<String, User> usersBySub;
+
+  @PostConstruct
+  void buildUserCache() {
+    usersBySub = Caffeine.newBuilder()
+      .maximumSize(cacheMaximumSize)
+      .expireAfterWrite(cacheExpireAfterWriteSeconds, TimeUnit.SECONDS)
+      .build();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onUserChanged(UserChangedEvent event) {
+    String googleSub = event.getUser().getGoogleSub();
+    if (googleSub != null) {
+      usersBySub.invalidate(googleSub);
+    }
+  }
 
   public CurrentUser getCurrentUser() {
     CurrentUser cu = CurrentUser.builder()
       .user(this.getUser())
       .roles(this.getRoles())
       .build();
-    log.info("getCurrentUser returns {}",cu);
+    log.debug("getCurrentUser returns {}",cu);
     return cu;
   }
 
@@ -56,12 +93,12 @@ public class CurrentUserServiceImpl extends CurrentUserService {
     String hostedDomain = oAuthUser.getAttribute("hd");
 
     java.util.Map<java.lang.String,java.lang.Object> attrs = oAuthUser.getAttributes();
-    log.info("attrs={}",attrs);
+    log.debug("attrs={}",attrs);
 
     Optional<User> ou = userRepository.findByEmail(email);
     if (ou.isPresent()) {
       User u = ou.get();
-      if (adminEmails.contains(email) && !u.getAdmin()) {
+      if (adminService.isAdminEmail(email) && !u.getAdmin()) {
         u.setAdmin(true);
         userRepository.save(u);
       }
@@ -78,7 +115,7 @@ public class CurrentUserServiceImpl extends CurrentUserService {
         .emailVerified(emailVerified)
         .locale(locale)
         .hostedDomain(hostedDomain)
-        .admin(adminEmails.contains(email))
+        .admin(adminService.isAdminEmail(email))
         .build();
     userRepository.save(u);
     return u;
@@ -89,11 +126,43 @@ public class CurrentUserServiceImpl extends CurrentUserService {
     Authentication authentication = securityContext.getAuthentication();
 
     if (authentication instanceof OAuth2AuthenticationToken) {
-      return getOAuth2AuthenticatedUser(securityContext, authentication);
+      return getCachedOAuth2AuthenticatedUser(securityContext, authentication);
     }
     return null;
   }
 
+  private User getCachedOAuth2AuthenticatedUser(SecurityContext securityContext, Authentication authentication) {
+    RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+    if (requestAttributes != null) {
+      User memoized = (User) requestAttributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+      if (memoized != null) {
+        return memoized;
+      }
+    }
+
+    OAuth2User oAuthUser = ((OAuth2AuthenticationToken) authentication).getPrincipal();
+    String googleSub = oAuthUser.getAttribute("sub");
+
+    // Not Cache.get(key, loader): the loader may save the user, and the
+    // resulting UserChangedEvent invalidates this same key.
+    // A token without a "sub" can't be told apart from another, so it isn't cached.
+    User cached = googleSub == null ? null : usersBySub.getIfPresent(googleSub);
+    User u;
+    if (cached != null) {
+      u = cached.toBuilder().build();
+    } else {
+      u = getOAuth2AuthenticatedUser(securityContext, authentication);
+      if (googleSub != null) {
+        usersBySub.put(googleSub, u.toBuilder().build());
+      }
+    }
+
+    if (requestAttributes != null) {
+      requestAttributes.setAttribute(REQUEST_ATTRIBUTE, u, RequestAttributes.SCOPE_REQUEST);
+    }
+    return u;
+  }
+
   public Collection<? extends GrantedAuthority> getRoles() {
    return grantedAuthoritiesService.getGrantedAuthorities();
   }
@@ -0,0 +1,221 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.events.HelpRequestChangedEvent;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * In-memory index of the help requests that are waiting for a TA (unsolved
+ * and unclaimed), oldest <code>requestTime</code> first, both overall and per
+ * team.
+ *
+ * It is loaded from the database once the application has started and kept
+ * current from {@link HelpRequestChangedEvent}s, so reads never touch the
+ * database. Reads are lock-free; writes to the index are serialized so that
+ * a row is always in all of its sets or in none of them.
+ *
+ * Claiming a request records who claimed it and when, and takes it out of
+ * the queue; <code>solved</code> is left for when it is resolved. Claims are
+ * checked against the row's version, so they stay correct when the row was
+ * changed behind this index's back (for example by another instance of the
+ * app). Releasing a claim puts the request back in the queue.
+ */
+
+@Slf4j
+@Service("helpRequestQueue")
+public class HelpRequestQueueService {
+
+  @Autowired
+  private HelpRequestRepository helpRequestRepository;
+
+  @Autowired
+  private ApplicationEventPublisher publisher;
+
+  private record Entry(LocalDateTime requestTime, long id) {}
+
+  private static final Comparator<Entry> OLDEST_FIRST = Comparator
+      .comparing(Entry::requestTime, Comparator.nullsLast(Comparator.naturalOrder()))
+      .thenComparingLong(Entry::id);
+
+  private final Map<Long, HelpRequest> unsolvedById = new ConcurrentHashMap<>();
+  private final NavigableSet<Entry> all = new ConcurrentSkipListSet<>(OLDEST_FIRST);
+  private final Map<String, NavigableSet<Entry>> byTeam = new ConcurrentHashMap<>();
+
+  @EventListener(ApplicationReadyEvent.class)
+  public synchronized void load() {
+    unsolvedById.clear();
+    all.clear();
+    byTeam.clear();
+    for (HelpRequest helpRequest : helpRequestRepository.findAllBySolved(false)) {
+      if (isWaiting(helpRequest)) {
+        add(helpRequest);
+      }
+    }
+    log.info("help request queue loaded with {} waiting requests", unsolvedById.size());
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public synchronized void onHelpRequestChanged(HelpRequestChangedEvent event) {
+    remove(event.getId());
+    if (event.getHelpRequest() != null) {
+      reindex(event.getHelpRequest());
+    }
+  }
+
+  /** Oldest waiting requests, of one team or (teamId null) of all teams. */
+  public List<HelpRequest> peek(String teamId, int limit) {
+    List<HelpRequest> oldest = new ArrayList<>(Math.min(limit, 64));
+    for (Entry entry : entries(teamId)) {
+      if (oldest.size() >= limit) {
+        break;
+      }
+      HelpRequest helpRequest = unsolvedById.get(entry.id());
+      // null when the row was removed after we reached it; skip it
+      if (helpRequest != null) {
+        oldest.add(helpRequest);
+      }
+    }
+    return oldest;
+  }
+
+  public Optional<HelpRequest> next(String teamId) {
+    return peek(teamId, 1).stream().findFirst();
+  }
+
+  /**
+   * Takes the oldest waiting request (of one team, or of all teams) and
+   * records <code>claimedBy</code> as the one helping with it. Two callers
+   * never get the same request: it leaves the index under the lock, and the
+   * database update only succeeds if the row is still unsolved, unclaimed
+   * and at the version the index has. If it is not, the row is re-read: a
+   * still waiting row goes back into the index with its current contents,
+   * and the oldest request is tried again. When the database fails, the
+   * request goes back into the index before the exception is rethrown, so
+   * that it isn't lost from the queue.
+   */
+  public Optional<HelpRequest> claim(String teamId, String claimedBy) {
+    while (true) {
+      Optional<HelpRequest> taken = take(teamId);
+      if (taken.isEmpty()) {
+        return taken;
+      }
+      HelpRequest helpRequest = taken.get();
+      boolean claimed;
+      LocalDateTime claimedAt;
+      try {
+        claimedAt = LocalDateTime.now();
+        claimed = helpRequestRepository.markClaimed(helpRequest.getId(), helpRequest.getVersion(),
+            claimedBy, claimedAt) == 1;
+        if (!claimed) {
+          helpRequestRepository.findById(helpRequest.getId())
+              .filter(HelpRequestQueueService::isWaiting)
+              .ifPresent(this::reindex);
+        }
+      } catch (RuntimeException e) {
+        putBack(helpRequest);
+        throw e;
+      }
+      if (claimed) {
+        helpRequest.setClaimedBy(claimedBy);
+        helpRequest.setClaimedAt(claimedAt);
+        helpRequest.setVersion(helpRequest.getVersion() + 1);
+        publisher.publishEvent(HelpRequestChangedEvent.updated(helpRequest));
+        return taken;
+      }
+    }
+  }
+
+  /**
+   * Clears the claim on a request that is claimed but not yet solved, which
+   * puts it back in the queue; returns the row as it is now, or empty if
+   * there is no row with that id.
+   */
+  public Optional<HelpRequest> release(long id) {
+    boolean released = helpRequestRepository.releaseClaim(id) == 1;
+    Optional<HelpRequest> current = helpRequestRepository.findById(id);
+    if (released) {
+      current.ifPresent(helpRequest -> publisher.publishEvent(HelpRequestChangedEvent.updated(helpRequest)));
+    }
+    return current;
+  }
+
+  private synchronized Optional<HelpRequest> take(String teamId) {
+    Entry first = entries(teamId).pollFirst();
+    if (first == null) {
+      return Optional.empty();
+    }
+    return Optional.of(remove(first.id()));
+  }
+
+  /** Re-adds a taken request, unless an event has indexed a newer copy of it since. */
+  private synchronized void putBack(HelpRequest helpRequest) {
+    if (!unsolvedById.containsKey(helpRequest.getId())) {
+      add(helpRequest);
+    }
+  }
+
+  public int size() {
+    return unsolvedById.size();
+  }
+
+  private synchronized void reindex(HelpRequest helpRequest) {
+    remove(helpRequest.getId());
+    if (isWaiting(helpRequest)) {
+      add(helpRequest);
+    }
+  }
+
+  private static boolean isWaiting(HelpRequest helpRequest) {
+    return !helpRequest.getSolved() && helpRequest.getClaimedBy() == null;
+  }
+
+  private NavigableSet<Entry> entries(String teamId) {
+    if (teamId == null) {
+      return all;
+    }
+    return byTeam.getOrDefault(teamId, new ConcurrentSkipListSet<>(OLDEST_FIRST));
+  }
+
+  private static String teamOf(HelpRequest helpRequest) {
+    return Objects.requireNonNullElse(helpRequest.getTeamId(), "");
+  }
+
+  private void add(HelpRequest helpRequest) {
+    Entry entry = new Entry(helpRequest.getRequestTime(), helpRequest.getId());
+    unsolvedById.put(helpRequest.getId(), helpRequest);
+    all.add(entry);
+    byTeam.computeIfAbsent(teamOf(helpRequest), team -> new ConcurrentSkipListSet<>(OLDEST_FIRST)).add(entry);
+  }
+
+  private HelpRequest remove(long id) {
+    HelpRequest helpRequest = unsolvedById.remove(id);
+    if (helpRequest != null) {
+      Entry entry = new Entry(helpRequest.getRequestTime(), id);
+      all.remove(entry);
+      NavigableSet<Entry> team = byTeam.get(teamOf(helpRequest));
+      if (team != null) {
+        team.remove(entry);
+      }
+    }
+    return helpRequest;
+  }
+}
@@ -0,0 +1,91 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.events.HelpRequestChangedEvent;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Pushes help requests to connected clients as Server-Sent Events.
+ *
+ * A new subscriber gets one <code>snapshot</code> event (the current rows,
+ * read once) followed by a <code>delta</code> event, a serialized
+ * {@link HelpRequestChangedEvent}, for every later write. The snapshot is
+ * sent while holding the emitter's lock, so no delta can overtake it;
+ * deltas carry whole rows, so one that is already part of the snapshot is
+ * harmless to apply again.
+ */
+
+@Slf4j
+@Service("helpRequestStream")
+public class HelpRequestStreamService {
+
+  @Autowired
+  private HelpRequestRepository helpRequestRepository;
+
+  @Autowired
+  private ObjectMapper mapper;
+
+  @Value("${app.helprequest.stream.timeoutMillis:1800000}")
+  private long timeoutMillis;
+
+  /** Connected clients, each with the team it is watching (the empty string for all teams). */
+  private final Map<SseEmitter, String> subscribers = new ConcurrentHashMap<>();
+
+  public SseEmitter subscribe(String teamId) throws IOException {
+    SseEmitter emitter = new SseEmitter(timeoutMillis);
+    emitter.onCompletion(() -> subscribers.remove(emitter));
+    emitter.onTimeout(() -> subscribers.remove(emitter));
+    emitter.onError(e -> subscribers.remove(emitter));
+
+    synchronized (emitter) {
+      subscribers.put(emitter, Objects.requireNonNullElse(teamId, ""));
+      Iterable<HelpRequest> snapshot = teamId == null
+          ? helpRequestRepository.findAll()
+          : helpRequestRepository.findAllByTeamId(teamId);
+      emitter.send(SseEmitter.event().name("snapshot").data(mapper.writeValueAsString(snapshot), MediaType.APPLICATION_JSON));
+    }
+    return emitter;
+  }
+
+  public int subscriberCount() {
+    return subscribers.size();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onHelpRequestChanged(HelpRequestChangedEvent event) throws JsonProcessingException {
+    if (subscribers.isEmpty()) {
+      return;
+    }
+    String json = mapper.writeValueAsString(event);
+    String teamId = event.getHelpRequest() == null ? null : event.getHelpRequest().getTeamId();
+    subscribers.forEach((emitter, watchedTeamId) -> {
+      // deletes don't say which team the row belonged to, so every client gets them
+      if (teamId != null && !watchedTeamId.isEmpty() && !watchedTeamId.equals(teamId)) {
+        return;
+      }
+      try {
+        emitter.send(SseEmitter.event().name("delta").data(json, MediaType.APPLICATION_JSON));
+      } catch (IOException | IllegalStateException e) {
+        log.debug("dropping help request subscriber: {}", e.toString());
+        subscribers.remove(emitter);
+        emitter.completeWithError(e);
+      }
+    });
+  }
+}
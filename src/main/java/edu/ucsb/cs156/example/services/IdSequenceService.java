@@ -0,0 +1,64 @@
+package edu.ucsb.cs156.example.services;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Moves every entity's id sequence past the ids already in its table, before
+ * the application writes anything.
+ *
+ * Ids used to come from IDENTITY columns. With <code>ddl-auto=update</code>,
+ * Hibernate creates the <code>*_seq</code> sequences that replaced them
+ * starting at 1, so on a database that already has rows the pooled-lo blocks
+ * would hand out ids that are taken. A sequence is only ever moved forward:
+ * one that is already past <code>max(id)</code> (another instance may be
+ * handing out ids from it) is left where it is.
+ */
+
+@Slf4j
+@Service("idSequences")
+public class IdSequenceService {
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @PostConstruct
+  public void moveSequencesPastExistingIds() {
+    SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+    Dialect dialect = sessionFactory.getJdbcServices().getDialect();
+    for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+      if (persister.getIdentifierGenerator() instanceof SequenceStyleGenerator generator
+          && persister instanceof AbstractEntityPersister entity) {
+        String sequence = generator.getDatabaseStructure().getPhysicalName().render();
+        moveSequencePastIds(dialect, sequence, entity.getTableName(), entity.getIdentifierColumnNames()[0]);
+      }
+    }
+  }
+
+  /** Returns the value the sequence was restarted with, or -1 when it was already past every id. */
+  long moveSequencePastIds(Dialect dialect, String sequence, String table, String idColumn) {
+    long next = jdbcTemplate.queryForObject(dialect.getSequenceNextValString(sequence), Long.class);
+    long maxId = jdbcTemplate.queryForObject("select coalesce(max(%s), 0) from %s".formatted(idColumn, table),
+        Long.class);
+    if (next > maxId) {
+      return -1;
+    }
+    jdbcTemplate.execute("alter sequence %s restart with %d".formatted(sequence, maxId + 1));
+    log.info("moved {} past the highest id in {}: it restarts at {}", sequence, table, maxId + 1);
+    return maxId + 1;
+  }
+}
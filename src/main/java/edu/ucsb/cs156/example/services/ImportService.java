@@ -0,0 +1,228 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import edu.ucsb.cs156.example.events.TableChangedEvent;
+import edu.ucsb.cs156.example.models.BulkRowResult;
+import edu.ucsb.cs156.example.models.ImportProgress;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Upserts the rows of an uploaded CSV (with a header row) or NDJSON / JSON
+ * array file, streaming an {@link ImportProgress} line back after every batch.
+ *
+ * The file is read through a <code>MappingIterator</code>, so only one batch
+ * (<code>app.import.batchSize</code> rows) is in memory at a time. Each batch
+ * runs in its own transaction: the rows that already exist are loaded with a
+ * single query and updated in place, the rest are persisted, and the
+ * persistence context is discarded when the transaction commits.
+ */
+
+@Slf4j
+@Service("import")
+public class ImportService {
+
+  @Autowired
+  private EntityManager entityManager;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private ObjectMapper mapper;
+
+  @Autowired
+  private ApplicationEventPublisher publisher;
+
+  @Value("${app.import.batchSize:1000}")
+  private int batchSize;
+
+  private final CsvMapper csvMapper = CsvMapper.builder()
+      .addModule(new JavaTimeModule())
+      .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+      .build();
+
+  /**
+   * @param validator    returns a message describing what is wrong with a row,
+   *                     or <code>null</code> if it may be imported
+   * @param keyOf        the key that decides whether a row already exists
+   * @param findExisting loads the existing rows for a batch of keys
+   * @param update       copies an incoming row onto the existing (managed) row
+   */
+  public <T, K> StreamingResponseBody importRows(MultipartFile file, Class<T> type,
+      Function<T, String> validator, Function<T, K> keyOf,
+      Function<Set<K>, Iterable<T>> findExisting, BiConsumer<T, T> update) {
+    return out -> {
+      Run<T, K> run = new Run<>(out, keyOf, findExisting, update);
+      try {
+        readRows(file, type, validator, run);
+      } finally {
+        // batches commit one by one, so announce the change once the last one is in
+        publisher.publishEvent(new TableChangedEvent(type));
+      }
+      log.info("import of {} from {}: {} inserted, {} updated, {} rejected", type.getSimpleName(),
+          file.getOriginalFilename(), run.progress.getInserted(), run.progress.getUpdated(), run.progress.getRejected());
+    };
+  }
+
+  private <T, K> void readRows(MultipartFile file, Class<T> type, Function<T, String> validator, Run<T, K> run)
+      throws IOException {
+    try (InputStream in = file.getInputStream();
+        MappingIterator<T> rows = readerFor(file, type).readValues(in)) {
+      long index = 0;
+      while (true) {
+        T row;
+        try {
+          if (!rows.hasNextValue()) {
+            break;
+          }
+          row = rows.nextValue();
+        } catch (JsonProcessingException e) {
+          // the parser cannot resynchronise after malformed input, so stop here
+          run.reject(index, "malformed input: " + e.getOriginalMessage());
+          break;
+        }
+
+        String error = validator.apply(row);
+        if (error != null) {
+          run.reject(index, error);
+        } else {
+          run.add(index, row);
+        }
+        index++;
+      }
+    }
+    run.finish();
+  }
+
+  private ObjectReader readerFor(MultipartFile file, Class<?> type) {
+    String filename = file.getOriginalFilename() == null ? "" : file.getOriginalFilename().toLowerCase();
+    if (filename.endsWith(".csv") || "text/csv".equals(file.getContentType())) {
+      return csvMapper.readerFor(type).with(CsvSchema.emptySchema().withHeader());
+    }
+    return mapper.readerFor(type);
+  }
+
+  /** State of one import: the pending batch and the running totals. */
+  private class Run<T, K> {
+    private final OutputStream out;
+    private final Function<T, K> keyOf;
+    private final Function<Set<K>, Iterable<T>> findExisting;
+    private final BiConsumer<T, T> update;
+
+    private final List<T> batch = new ArrayList<>();
+    private final List<Long> batchIndexes = new ArrayList<>();
+    private final ImportProgress progress = new ImportProgress(0, 0, 0, 0, false, new ArrayList<>());
+
+    Run(OutputStream out, Function<T, K> keyOf, Function<Set<K>, Iterable<T>> findExisting, BiConsumer<T, T> update) {
+      this.out = out;
+      this.keyOf = keyOf;
+      this.findExisting = findExisting;
+      this.update = update;
+    }
+
+    void reject(long index, String error) throws IOException {
+      progress.setProcessed(progress.getProcessed() + 1);
+      progress.setRejected(progress.getRejected() + 1);
+      progress.getErrors().add(new BulkRowResult((int) index, null, error));
+      if (progress.getErrors().size() >= batchSize) {
+        report();
+      }
+    }
+
+    void add(long index, T row) throws IOException {
+      batch.add(row);
+      batchIndexes.add(index);
+      if (batch.size() >= batchSize) {
+        flushBatch();
+        report();
+      }
+    }
+
+    void finish() throws IOException {
+      if (!batch.isEmpty()) {
+        flushBatch();
+      }
+      progress.setDone(true);
+      report();
+    }
+
+    private void flushBatch() throws IOException {
+      try {
+        long[] counts = new TransactionTemplate(transactionManager).execute(status -> upsert());
+        progress.setInserted(progress.getInserted() + counts[0]);
+        progress.setUpdated(progress.getUpdated() + counts[1]);
+        progress.setProcessed(progress.getProcessed() + batch.size());
+      } catch (DataAccessException | TransactionException e) {
+        log.warn("import batch of {} rows failed", batch.size(), e);
+        String error = "save failed: " + e.getMostSpecificCause().getMessage();
+        for (long index : batchIndexes) {
+          reject(index, error);
+        }
+      }
+      batch.clear();
+      batchIndexes.clear();
+    }
+
+    private long[] upsert() {
+      Set<K> keys = new LinkedHashSet<>();
+      batch.forEach(row -> keys.add(keyOf.apply(row)));
+      Map<K, T> existing = new HashMap<>();
+      findExisting.apply(keys).forEach(row -> existing.put(keyOf.apply(row), row));
+
+      long inserted = 0;
+      long updated = 0;
+      for (T row : batch) {
+        T current = existing.get(keyOf.apply(row));
+        if (current != null) {
+          update.accept(row, current);
+          updated++;
+        } else {
+          entityManager.persist(row);
+          existing.put(keyOf.apply(row), row);
+          inserted++;
+        }
+      }
+      return new long[] { inserted, updated };
+    }
+
+    private void report() throws IOException {
+      out.write(mapper.writeValueAsBytes(progress));
+      out.write('\n');
+      out.flush();
+      progress.getErrors().clear();
+    }
+  }
+}
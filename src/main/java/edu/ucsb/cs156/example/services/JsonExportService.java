@@ -0,0 +1,72 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Writes a whole table to the response as a JSON array, one row at a time.
+ *
+ * The rows come from a repository <code>Stream</code> that is opened inside a
+ * read-only transaction on the thread that writes the response; each entity
+ * is detached as soon as it has been written, so neither the persistence
+ * context nor the output buffer grows with the size of the table.
+ */
+
+@Slf4j
+@Service("jsonExport")
+public class JsonExportService {
+
+  @Autowired
+  private EntityManager entityManager;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private ObjectMapper mapper;
+
+  public <T> StreamingResponseBody exportJson(Supplier<Stream<T>> rows) {
+    return out -> {
+      TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+      transactionTemplate.setReadOnly(true);
+      transactionTemplate.executeWithoutResult(status -> {
+        try (Stream<T> stream = rows.get();
+            JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+          generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+          generator.writeStartArray();
+          generator.flush();
+
+          long count = 0;
+          Iterator<T> iterator = stream.iterator();
+          while (iterator.hasNext()) {
+            T row = iterator.next();
+            generator.writeObject(row);
+            entityManager.detach(row);
+            count++;
+          }
+
+          generator.writeEndArray();
+          log.debug("exported {} rows", count);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    };
+  }
+}
@@ -0,0 +1,81 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.models.JsonSnapshot;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps whole-table lists that are served far more often than they change as
+ * encoded JSON plus a gzipped copy, so that serving one is a copy of bytes
+ * rather than a serialization pass.
+ *
+ * A snapshot is tagged with the table stamp ({@link TableVersionService})
+ * that was read before its rows were loaded, and is rebuilt by the first
+ * request that sees a newer stamp. Requests for the same table that arrive
+ * during a rebuild wait for it rather than starting their own. A stamp of
+ * -1 (conditional GETs turned off) says the table may change without this
+ * instance hearing of it, so nothing is kept and every request encodes anew.
+ */
+
+@Slf4j
+@Service("jsonSnapshots")
+public class JsonSnapshotService {
+
+  @Autowired
+  private ObjectMapper mapper;
+
+  private final Map<Class<?>, JsonSnapshot> snapshots = new ConcurrentHashMap<>();
+
+  /** The snapshot of <code>entityType</code>'s list at <code>tableStamp</code> (or later). */
+  public JsonSnapshot snapshot(Class<?> entityType, long tableStamp, Supplier<?> loader) {
+    if (tableStamp < 0) {
+      return encode(tableStamp, loader.get());
+    }
+    JsonSnapshot current = snapshots.get(entityType);
+    if (current != null && current.getTableStamp() >= tableStamp) {
+      return current;
+    }
+    return snapshots.compute(entityType, (type, latest) -> {
+      if (latest != null && latest.getTableStamp() >= tableStamp) {
+        return latest;
+      }
+      JsonSnapshot rebuilt = encode(tableStamp, loader.get(), true);
+      log.info("rebuilt {} snapshot at stamp {}: {} bytes, {} gzipped", type.getSimpleName(), tableStamp,
+          rebuilt.getJson().length, rebuilt.getGzip().length);
+      return rebuilt;
+    });
+  }
+
+  /** A one-off encoding of <code>body</code>, for variants that are not worth keeping. */
+  public JsonSnapshot encode(long tableStamp, Object body) {
+    return encode(tableStamp, body, false);
+  }
+
+  private JsonSnapshot encode(long tableStamp, Object body, boolean gzip) {
+    try {
+      byte[] json = mapper.writeValueAsBytes(body);
+      if (!gzip) {
+        return new JsonSnapshot(tableStamp, json, null);
+      }
+      ByteArrayOutputStream gzipped = new ByteArrayOutputStream(json.length / 4 + 64);
+      try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+        out.write(json);
+      }
+      return new JsonSnapshot(tableStamp, json, gzipped.toByteArray());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.MenuItemRatingSummary;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.EntityPreconditionFailedException;
+import edu.ucsb.cs156.example.repositories.MenuItemRatingSummaryRepository;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Writes menu item reviews and, in the same transaction, adjusts the
+ * {@link MenuItemRatingSummary} of each item the write touches.
+ *
+ * Summaries are changed with a single relative statement (count + 1, total +
+ * stars, ...), so concurrent reviews of the same item don't overwrite each
+ * other. Adding a review is an upsert (ON CONFLICT on PostgreSQL, MERGE
+ * elsewhere), so that two first reviews of an item can't both insert its
+ * summary row; taking one away only ever updates an existing row. Items
+ * reviewed before summaries existed get theirs once the application starts.
+ */
+
+@Slf4j
+@Service("menuItemReviews")
+public class MenuItemReviewService {
+
+  @Autowired
+  private MenuItemReviewRepository menuItemReviewRepository;
+
+  @Autowired
+  private MenuItemRatingSummaryRepository menuItemRatingSummaryRepository;
+
+  @Value("${spring.datasource.url:}")
+  private String datasourceUrl;
+
+  /**
+   * Adds a summary for every item whose reviews were written before summaries
+   * were kept (or by a path that didn't keep them), so that later writes only
+   * ever adjust rows that already count every review.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void backfillSummaries() {
+    try {
+      int inserted = menuItemRatingSummaryRepository.insertMissingSummaries();
+      if (inserted > 0) {
+        log.info("added rating summaries for {} menu items", inserted);
+      }
+    } catch (DataIntegrityViolationException e) {
+      log.info("rating summaries were backfilled concurrently: {}", e.getMessage());
+    }
+  }
+
+  @Transactional
+  public MenuItemReview createReview(MenuItemReview review) {
+    MenuItemReview savedReview = menuItemReviewRepository.save(review);
+    apply(delta(savedReview.getItemId()).add(savedReview.getStars(), 1));
+    return savedReview;
+  }
+
+  /**
+   * Overwrites the review, provided it is still at <code>expectedVersion</code>
+   * (any version when that is null); returns it with its new version.
+   */
+  @Transactional
+  public MenuItemReview updateReview(long id, MenuItemReview incoming, Long expectedVersion) {
+    MenuItemReview review = menuItemReviewRepository.findByIdForUpdate(id)
+        .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
+    if (expectedVersion != null && expectedVersion != review.getVersion()) {
+      throw new EntityPreconditionFailedException(MenuItemReview.class, id, "\"%d\"".formatted(expectedVersion));
+    }
+    long oldItemId = review.getItemId();
+    int oldStars = review.getStars();
+
+    incoming.setId(id);
+    menuItemReviewRepository.updateRow(incoming, review.getVersion());
+    incoming.setVersion(review.getVersion() + 1);
+
+    if (oldItemId != incoming.getItemId() || oldStars != incoming.getStars()) {
+      apply(delta(oldItemId).add(oldStars, -1));
+      apply(delta(incoming.getItemId()).add(incoming.getStars(), 1));
+    }
+    return incoming;
+  }
+
+  @Transactional
+  public void deleteReview(long id) {
+    MenuItemReview review = menuItemReviewRepository.findByIdForUpdate(id)
+        .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
+
+    menuItemReviewRepository.deleteRow(id);
+    apply(delta(review.getItemId()).add(review.getStars(), -1));
+  }
+
+  /** Counts reviews that were saved by some other path, one UPDATE per item. */
+  @Transactional
+  public void recordReviews(List<MenuItemReview> reviews) {
+    Map<Long, Delta> deltas = new LinkedHashMap<>();
+    for (MenuItemReview review : reviews) {
+      deltas.computeIfAbsent(review.getItemId(), this::delta).add(review.getStars(), 1);
+    }
+    deltas.values().forEach(this::apply);
+  }
+
+  private Delta delta(long itemId) {
+    return new Delta(MenuItemRatingSummary.builder().itemId(itemId).build());
+  }
+
+  private void apply(Delta delta) {
+    if (delta.summary.getReviewCount() > 0) {
+      if (DatabaseDriver.fromJdbcUrl(datasourceUrl) == DatabaseDriver.POSTGRESQL) {
+        menuItemRatingSummaryRepository.upsertDeltaOnConflict(delta.summary);
+      } else {
+        menuItemRatingSummaryRepository.upsertDeltaMerge(delta.summary);
+      }
+    } else if (menuItemRatingSummaryRepository.addDelta(delta.summary) == 0) {
+      log.warn("menu item {} has no rating summary to take a review out of", delta.summary.getItemId());
+    }
+  }
+
+  /** Change to one item's summary, itself held as a summary of the changed reviews. */
+  private static class Delta {
+    private final MenuItemRatingSummary summary;
+
+    Delta(MenuItemRatingSummary summary) {
+      this.summary = summary;
+    }
+
+    Delta add(int stars, int sign) {
+      summary.setReviewCount(summary.getReviewCount() + sign);
+      summary.setStarTotal(summary.getStarTotal() + (long) sign * stars);
+      switch (stars) {
+        case 1 -> summary.setStars1(summary.getStars1() + sign);
+        case 2 -> summary.setStars2(summary.getStars2() + sign);
+        case 3 -> summary.setStars3(summary.getStars3() + sign);
+        case 4 -> summary.setStars4(summary.getStars4() + sign);
+        case 5 -> summary.setStars5(summary.getStars5() + sign);
+        default -> log.warn("review with {} stars is not counted in the histogram", stars);
+      }
+      return this;
+    }
+  }
+}
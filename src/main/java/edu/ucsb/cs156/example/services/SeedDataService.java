@@ -0,0 +1,202 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.events.TableChangedEvent;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Fills the database with synthetic users, menu items, menu item reviews and
+ * help requests, up to the volumes in <code>app.seed.*</code> (see
+ * application-seed.properties), for load and scale testing.
+ *
+ * Row <i>n</i> of a table is always the same (it only depends on
+ * <code>app.seed.randomSeed</code> and <i>n</i>), and a table that already
+ * holds <i>k</i> rows only gets rows <i>k</i> onwards, so seeding again is a
+ * no-op and raising a volume tops the table up. Rows are persisted in
+ * batches of <code>app.seed.batchSize</code>, one transaction per batch,
+ * and the persistence context is cleared after each batch. Ids come from
+ * pooled sequences (see {@link IdSequenceService}), so Hibernate sends the
+ * inserts as JDBC batches of <code>hibernate.jdbc.batch_size</code> rows,
+ * with one sequence call per block of ids.
+ */
+
+@Slf4j
+@Service("seedData")
+public class SeedDataService {
+
+  private static final String[] DINING_COMMONS = { "carrillo", "de-la-guerra", "ortega", "portola" };
+  private static final String[] STATIONS = { "Entrees", "Grill", "Salads", "Desserts", "Soups", "Vegan" };
+  private static final LocalDateTime START = LocalDateTime.parse("2022-01-03T08:00:00");
+
+  @Autowired
+  private EntityManager entityManager;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private ApplicationEventPublisher publisher;
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UCSBDiningCommonsMenuItemRepository menuItemRepository;
+
+  @Autowired
+  private MenuItemReviewRepository menuItemReviewRepository;
+
+  @Autowired
+  private HelpRequestRepository helpRequestRepository;
+
+  @Autowired
+  private MenuItemReviewService menuItemReviewService;
+
+  @Value("${app.seed.batchSize:1000}")
+  private int batchSize;
+
+  @Value("${app.seed.randomSeed:156}")
+  private long randomSeed;
+
+  @Value("${app.seed.users:0}")
+  private long users;
+
+  @Value("${app.seed.menuItems:0}")
+  private long menuItems;
+
+  @Value("${app.seed.menuItemReviews:0}")
+  private long menuItemReviews;
+
+  @Value("${app.seed.helpRequests:0}")
+  private long helpRequests;
+
+  public void seed() {
+    seedTable(User.class, userRepository, users, this::user, null);
+    seedTable(UCSBDiningCommonsMenuItem.class, menuItemRepository, menuItems, this::menuItem, null);
+    List<Long> itemIds = menuItemRepository.findAllIds();
+    seedTable(MenuItemReview.class, menuItemReviewRepository, menuItemReviews, n -> menuItemReview(n, itemIds),
+        menuItemReviewService::recordReviews);
+    seedTable(HelpRequest.class, helpRequestRepository, helpRequests, this::helpRequest, null);
+  }
+
+  /**
+   * Persists rows <code>repository.count()</code> to <code>target - 1</code>;
+   * returns how many that was.
+   *
+   * @param afterBatch called with each batch, in its transaction, once the rows are inserted (may be null)
+   */
+  <T> long seedTable(Class<T> type, CrudRepository<T, ?> repository, long target, LongFunction<T> row,
+      Consumer<List<T>> afterBatch) {
+    long existing = repository.count();
+    if (existing >= target) {
+      log.info("seed: {} already has {} rows", type.getSimpleName(), existing);
+      return 0;
+    }
+    log.info("seed: adding {} rows to {}", target - existing, type.getSimpleName());
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    try {
+      for (long first = existing; first < target; first += batchSize) {
+        long end = Math.min(first + batchSize, target);
+        long from = first;
+        transaction.executeWithoutResult(status -> {
+          List<T> batch = new ArrayList<>((int) (end - from));
+          for (long n = from; n < end; n++) {
+            T entity = row.apply(n);
+            entityManager.persist(entity);
+            batch.add(entity);
+          }
+          // detach the batch first, so that queries run by afterBatch don't dirty-check it
+          entityManager.flush();
+          entityManager.clear();
+          if (afterBatch != null) {
+            afterBatch.accept(batch);
+          }
+        });
+        if ((end / batchSize) % 100 == 0 || end == target) {
+          log.info("seed: {} has {} of {} rows", type.getSimpleName(), end, target);
+        }
+      }
+    } finally {
+      publisher.publishEvent(new TableChangedEvent(type));
+    }
+    return target - existing;
+  }
+
+  private SplittableRandom random(long n) {
+    return new SplittableRandom(randomSeed * 1_000_003 + n);
+  }
+
+  User user(long n) {
+    SplittableRandom random = random(n);
+    return User.builder()
+        .email("seed-user-%d@example.org".formatted(n))
+        .googleSub(String.valueOf(900_000_000_000_000_000L + n))
+        .pictureUrl("https://example.org/avatars/%d.png".formatted(n))
+        .fullName("Seed User %d".formatted(n))
+        .givenName("Seed")
+        .familyName("User %d".formatted(n))
+        .emailVerified(random.nextInt(10) != 0)
+        .locale("en")
+        .hostedDomain("example.org")
+        .admin(false)
+        .build();
+  }
+
+  UCSBDiningCommonsMenuItem menuItem(long n) {
+    SplittableRandom random = random(n);
+    return UCSBDiningCommonsMenuItem.builder()
+        .diningCommonsCode(DINING_COMMONS[random.nextInt(DINING_COMMONS.length)])
+        .name("Seed dish %d".formatted(n))
+        .station(STATIONS[random.nextInt(STATIONS.length)])
+        .build();
+  }
+
+  /** @param itemIds the menu items to review; ids 1 to 1000 when there are none */
+  MenuItemReview menuItemReview(long n, List<Long> itemIds) {
+    SplittableRandom random = random(n);
+    long itemId = itemIds.isEmpty() ? 1 + random.nextInt(1000) : itemIds.get(random.nextInt(itemIds.size()));
+    return MenuItemReview.builder()
+        .itemId(itemId)
+        .reviewerEmail("seed-user-%d@example.org".formatted(random.nextLong(Math.max(users, 1))))
+        .stars(1 + random.nextInt(5))
+        .dateReviewed(START.plusMinutes(random.nextInt(365 * 24 * 60)))
+        .comments("Seed review %d".formatted(n))
+        .build();
+  }
+
+  HelpRequest helpRequest(long n) {
+    SplittableRandom random = random(n);
+    return HelpRequest.builder()
+        .requesterEmail("seed-user-%d@example.org".formatted(random.nextLong(Math.max(users, 1))))
+        .teamId("s22-%dpm-%d".formatted(5 + random.nextInt(3), 1 + random.nextInt(4)))
+        .tableOrBreakoutRoom("table %d".formatted(1 + random.nextInt(12)))
+        .requestTime(START.plusMinutes(random.nextInt(365 * 24 * 60)))
+        .explanation("Seed help request %d".formatted(n))
+        .solved(random.nextInt(10) != 0)
+        .build();
+  }
+}
@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.services;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.stereotype.Service;
+
+/**
+ * Counts the SQL statements Hibernate prepares on each thread. It is
+ * registered as Hibernate's <code>StatementInspector</code> (see
+ * {@link edu.ucsb.cs156.example.config.MetricsConfig}) and leaves the SQL
+ * unchanged.
+ *
+ * The count only ever grows, so callers measure a piece of work by taking
+ * {@link #count()} before and after it; nested measurements don't disturb
+ * each other.
+ */
+
+@Service("sqlStatements")
+public class SqlStatementCounter implements StatementInspector {
+
+  private final ThreadLocal<long[]> statements = ThreadLocal.withInitial(() -> new long[1]);
+
+  @Override
+  public String inspect(String sql) {
+    statements.get()[0]++;
+    return sql;
+  }
+
+  /** Statements prepared so far on the calling thread. */
+  public long count() {
+    return statements.get()[0];
+  }
+}
@@ -0,0 +1,97 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.events.TableChangedEvent;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Keeps a version stamp and the time of the last write per entity table,
+ * both moved after every committed write ({@link TableChangedEvent}). A
+ * response built after reading stamp <code>s</code> reflects every write up
+ * to <code>s</code>, so a client holding <code>s</code> can be told "not
+ * modified" without a query.
+ *
+ * Stamps go up by one per write and only ever appear in ETags; the time of
+ * the last write, in whole seconds, is the <code>Last-Modified</code> date.
+ * Both are kept in memory: after a restart every table starts at the boot
+ * time, in microseconds for the stamp, which invalidates whatever clients
+ * were holding.
+ *
+ * Being in memory, a stamp only moves for writes made through this instance
+ * of the app. Conditional GETs are therefore only correct when there is a
+ * single instance: with two, a write through one would leave the other
+ * answering 304 (and serving its old snapshots) indefinitely. Set
+ * <code>app.conditionalGet.enabled</code> to false when running more than
+ * one; {@link #stamp} and {@link #lastModified} then return -1, and every
+ * GET goes to the database.
+ */
+
+@Service("tableVersions")
+public class TableVersionService {
+
+  @Value("${app.conditionalGet.enabled:true}")
+  private boolean enabled;
+
+  private final Clock clock;
+
+  private final long bootStamp;
+
+  private final long bootSecond;
+
+  private final Map<Class<?>, AtomicLong> stamps = new ConcurrentHashMap<>();
+
+  private final Map<Class<?>, Long> lastWrites = new ConcurrentHashMap<>();
+
+  public TableVersionService() {
+    this(Clock.systemUTC());
+  }
+
+  TableVersionService(Clock clock) {
+    this(clock, true);
+  }
+
+  TableVersionService(Clock clock, boolean enabled) {
+    this.clock = clock;
+    this.enabled = enabled;
+    this.bootStamp = ChronoUnit.MICROS.between(Instant.EPOCH, clock.instant());
+    this.bootSecond = clock.instant().getEpochSecond();
+  }
+
+  /** The table's stamp, or -1 when conditional GETs are turned off. */
+  public long stamp(Class<?> entityType) {
+    return enabled ? stampOf(entityType).get() : -1;
+  }
+
+  /**
+   * When the table was last written, in epoch milliseconds rounded down to
+   * the second, or -1 while that second is still going: a later write in the
+   * same second would not move it, so a client given it could miss that write.
+   * Also -1 when conditional GETs are turned off.
+   */
+  public long lastModified(Class<?> entityType) {
+    if (!enabled) {
+      return -1;
+    }
+    long lastWrite = lastWrites.getOrDefault(entityType, bootSecond);
+    return lastWrite < clock.instant().getEpochSecond() ? lastWrite * 1000 : -1;
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onTableChanged(TableChangedEvent event) {
+    lastWrites.merge(event.getEntityType(), clock.instant().getEpochSecond(), Math::max);
+    stampOf(event.getEntityType()).incrementAndGet();
+  }
+
+  private AtomicLong stampOf(Class<?> entityType) {
+    return stamps.computeIfAbsent(entityType, type -> new AtomicLong(bootStamp));
+  }
+}
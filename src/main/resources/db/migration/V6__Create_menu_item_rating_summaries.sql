@@ -0,0 +1,26 @@
+-- Per-item review totals (MenuItemRatingSummary), backfilled from the existing reviews
+
+CREATE TABLE IF NOT EXISTS menuitemratingsummary (
+  item_id BIGINT NOT NULL PRIMARY KEY,
+  review_count BIGINT NOT NULL,
+  star_total BIGINT NOT NULL,
+  stars1 BIGINT NOT NULL,
+  stars2 BIGINT NOT NULL,
+  stars3 BIGINT NOT NULL,
+  stars4 BIGINT NOT NULL,
+  stars5 BIGINT NOT NULL
+);
+
+DELETE FROM menuitemratingsummary;
+
+INSERT INTO menuitemratingsummary (item_id, review_count, star_total, stars1, stars2, stars3, stars4, stars5)
+SELECT item_id,
+       COUNT(*),
+       SUM(stars),
+       SUM(CASE WHEN stars = 1 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN stars = 2 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN stars = 3 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN stars = 4 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN stars = 5 THEN 1 ELSE 0 END)
+FROM menuitemreview
+GROUP BY item_id;
@@ -0,0 +1,12 @@
+-- Indexes for the columns used by login and the filtered /all endpoints (same names as the entities' @Table indexes)
+
+CREATE INDEX IF NOT EXISTS idx_users_email ON users (email);
+CREATE INDEX IF NOT EXISTS idx_ucsbdates_quarteryyyyq ON ucsbdates (quarteryyyyq);
+CREATE INDEX IF NOT EXISTS idx_article_title ON article (title);
+CREATE INDEX IF NOT EXISTS idx_menuitemreview_item_id ON menuitemreview (item_id);
+CREATE INDEX IF NOT EXISTS idx_menuitemreview_reviewer_email ON menuitemreview (reviewer_email);
+CREATE INDEX IF NOT EXISTS idx_helprequest_solved ON helprequest (solved);
+CREATE INDEX IF NOT EXISTS idx_helprequest_team_id ON helprequest (team_id);
+CREATE INDEX IF NOT EXISTS idx_ucsbmenuitems_dining_commons_code ON ucsbmenuitems (dining_commons_code);
+CREATE INDEX IF NOT EXISTS idx_recommendation_done ON recommendation (done);
+CREATE INDEX IF NOT EXISTS idx_recommendation_requester_email ON recommendation (requester_email);
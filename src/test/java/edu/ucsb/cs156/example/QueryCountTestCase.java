@@ -0,0 +1,151 @@
+package edu.ucsb.cs156.example;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.EntityType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.test.autoconfigure.filter.TypeExcludeFilters;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.events.TableChangedEvent;
+
+/**
+ * Base class for tests that check how much database work an endpoint does,
+ * so that an N+1 query or an extra round trip fails the build.
+ *
+ * Unlike {@link ControllerTestCase}, the whole application runs, against an
+ * in-memory H2 database, with Hibernate statistics turned on. Each test
+ * starts with empty tables and caches. Make requests with
+ * {@link #perform(RequestBuilder, QueryBudget)}, which fails when the
+ * request issues more SQL statements, or loads more entities, than its
+ * budget allows.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TypeExcludeFilters(QueryCountTestCase.ExcludeTestComponents.class)
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:querycounts;DB_CLOSE_DELAY=-1",
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+public abstract class QueryCountTestCase {
+
+  /** Most SQL statements a request may issue, and most entities it may load (roughly, rows fetched). */
+  public record QueryBudget(long statements, long entitiesLoaded) {
+    public static QueryBudget atMost(long statements, long entitiesLoaded) {
+      return new QueryBudget(statements, entitiesLoaded);
+    }
+  }
+
+  /** Keeps the mock current user service (which replaces the real one in {@link ControllerTestCase}) out. */
+  public static class ExcludeTestComponents extends TypeExcludeFilter {
+    @Override
+    public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory) throws IOException {
+      return metadataReader.getClassMetadata().getClassName().startsWith("edu.ucsb.cs156.example.testconfig.");
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj != null && obj.getClass() == getClass();
+    }
+
+    @Override
+    public int hashCode() {
+      return getClass().hashCode();
+    }
+  }
+
+  @Autowired
+  public MockMvc mockMvc;
+
+  @Autowired
+  public ObjectMapper mapper;
+
+  @Autowired
+  public EntityManager entityManager;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private ApplicationEventPublisher publisher;
+
+  @BeforeEach
+  public void startWithEmptyTables() {
+    new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+      for (EntityType<?> entity : entityManager.getMetamodel().getEntities()) {
+        entityManager.createQuery("delete from " + entity.getName()).executeUpdate();
+      }
+    });
+    // empties the entity caches and moves every table stamp, invalidating /all snapshots
+    for (EntityType<?> entity : entityManager.getMetamodel().getEntities()) {
+      publisher.publishEvent(new TableChangedEvent(entity.getJavaType()));
+    }
+  }
+
+  /** Saves rows the way a test would set them up, in one transaction that is not counted. */
+  @SafeVarargs
+  protected final <T> void persist(T... rows) {
+    new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+      for (T row : rows) {
+        entityManager.persist(row);
+      }
+    });
+  }
+
+  protected Statistics statistics() {
+    return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+  }
+
+  /**
+   * Performs the request (waiting for a streamed or other asynchronous body)
+   * and checks it against the budget.
+   */
+  protected ResultActions perform(RequestBuilder request, QueryBudget budget) throws Exception {
+    Statistics statistics = statistics();
+    long statements = statistics.getPrepareStatementCount();
+    long entitiesLoaded = statistics.getEntityLoadCount();
+
+    ResultActions result = mockMvc.perform(request);
+    MvcResult mvcResult = result.andReturn();
+    if (mvcResult.getRequest().isAsyncStarted()) {
+      mvcResult.getAsyncResult();
+    }
+
+    statements = statistics.getPrepareStatementCount() - statements;
+    entitiesLoaded = statistics.getEntityLoadCount() - entitiesLoaded;
+    String actual = "%d statements and %d entities loaded".formatted(statements, entitiesLoaded);
+    assertTrue(statements <= budget.statements(),
+        "expected at most %d statements, but got %s".formatted(budget.statements(), actual));
+    assertTrue(entitiesLoaded <= budget.entitiesLoaded(),
+        "expected at most %d entities loaded, but got %s".formatted(budget.entitiesLoaded(), actual));
+    return result;
+  }
+}
@@ -0,0 +1,117 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.events.TableChangedEvent;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = { CacheConfig.class, CacheConfigTests.RepositoryConfig.class })
+@TestPropertySource(properties = "app.entityCache.maximumSize=2")
+class CacheConfigTests {
+
+  static final UCSBOrganizationRepository database = mock(UCSBOrganizationRepository.class);
+
+  /** A plain bean rather than a @MockBean, so that it gets the caching proxy like the real repository. */
+  @Configuration
+  static class RepositoryConfig {
+    @Bean
+    UCSBOrganizationRepository ucsbOrganizationRepository() {
+      return database;
+    }
+  }
+
+  @Autowired
+  UCSBOrganizationRepository repository;
+
+  @Autowired
+  CacheManager cacheManager;
+
+  @Autowired
+  ApplicationEventPublisher publisher;
+
+  UCSBOrganization osli = UCSBOrganization.builder().orgCode("OSLI").orgTranslation("Student Life").build();
+
+  @BeforeEach
+  void startCold() {
+    cacheManager.getCache(CacheConfig.UCSB_ORGANIZATIONS).clear();
+    reset(database);
+    when(database.findById(eq("OSLI"))).thenReturn(Optional.of(osli));
+    when(database.findById(eq("NONE"))).thenReturn(Optional.empty());
+  }
+
+  private CacheStats stats() {
+    return ((CaffeineCache) cacheManager.getCache(CacheConfig.UCSB_ORGANIZATIONS)).getNativeCache().stats();
+  }
+
+  @Test
+  void test_findById_is_read_through() {
+    CacheStats before = stats();
+
+    assertEquals(Optional.of(osli), repository.findById("OSLI"));
+    assertEquals(Optional.of(osli), repository.findById("OSLI"));
+
+    verify(database, times(1)).findById("OSLI");
+    CacheStats delta = stats().minus(before);
+    assertEquals(1, delta.hitCount());
+    assertEquals(1, delta.missCount());
+  }
+
+  @Test
+  void test_missing_ids_are_not_cached() {
+    assertEquals(Optional.empty(), repository.findById("NONE"));
+    assertEquals(Optional.empty(), repository.findById("NONE"));
+
+    verify(database, times(2)).findById("NONE");
+  }
+
+  @Test
+  void test_write_to_the_table_empties_its_cache() {
+    repository.findById("OSLI");
+    publisher.publishEvent(new TableChangedEvent(UCSBDiningCommons.class));
+    repository.findById("OSLI");
+    publisher.publishEvent(new TableChangedEvent(UCSBOrganization.class));
+    repository.findById("OSLI");
+
+    verify(database, times(2)).findById("OSLI");
+  }
+
+  @Test
+  void test_cache_is_bounded() {
+    for (int i = 0; i < 10; i++) {
+      String orgCode = "ORG" + i;
+      when(database.findById(eq(orgCode))).thenReturn(Optional.of(UCSBOrganization.builder().orgCode(orgCode).build()));
+      repository.findById(orgCode);
+    }
+
+    CaffeineCache cache = (CaffeineCache) cacheManager.getCache(CacheConfig.UCSB_ORGANIZATIONS);
+    cache.getNativeCache().cleanUp();
+    assertTrue(cache.getNativeCache().estimatedSize() <= 2);
+  }
+}
@@ -0,0 +1,87 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.filter.TypeExcludeFilters;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import edu.ucsb.cs156.example.QueryCountTestCase;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+@ActiveProfiles("test")
+@TypeExcludeFilters(QueryCountTestCase.ExcludeTestComponents.class)
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:securityconfig;DB_CLOSE_DELAY=-1",
+    "app.prometheus.username=scraper",
+    "app.prometheus.password=scrape-secret"
+})
+public class SecurityConfigTests {
+
+  @Autowired
+  MockMvc mockMvc;
+
+  @Test
+  public void prometheus_can_scrape_with_basic_auth() throws Exception {
+    MvcResult response = mockMvc.perform(get("/actuator/prometheus").with(httpBasic("scraper", "scrape-secret")))
+        .andExpect(status().isOk()).andReturn();
+
+    assertTrue(response.getResponse().getContentAsString().contains("http_server_requests_seconds"));
+    assertTrue(response.getResponse().getHeader("Set-Cookie") == null);
+  }
+
+  @Test
+  public void prometheus_needs_the_right_password() throws Exception {
+    mockMvc.perform(get("/actuator/prometheus"))
+        .andExpect(status().isUnauthorized());
+    mockMvc.perform(get("/actuator/prometheus").with(httpBasic("scraper", "wrong")))
+        .andExpect(status().isUnauthorized());
+  }
+
+  @Test
+  public void the_scrape_user_cannot_reach_other_actuator_endpoints() throws Exception {
+    mockMvc.perform(get("/actuator/metrics").with(httpBasic("scraper", "scrape-secret")))
+        .andExpect(status().isForbidden());
+    mockMvc.perform(get("/actuator/mappings").with(httpBasic("scraper", "scrape-secret")))
+        .andExpect(status().isForbidden());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void other_actuator_endpoints_need_an_admin() throws Exception {
+    mockMvc.perform(get("/actuator/metrics"))
+        .andExpect(status().isForbidden());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admins_can_reach_other_actuator_endpoints() throws Exception {
+    mockMvc.perform(get("/actuator/metrics"))
+        .andExpect(status().isOk());
+  }
+
+  @Nested
+  @TestPropertySource(properties = "app.prometheus.password=")
+  class WithoutAPassword {
+
+    @Test
+    public void nobody_can_scrape() throws Exception {
+      mockMvc.perform(get("/actuator/prometheus").with(httpBasic("scraper", "")))
+          .andExpect(status().isUnauthorized());
+    }
+  }
+}
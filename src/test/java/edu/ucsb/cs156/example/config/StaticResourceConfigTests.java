@@ -0,0 +1,50 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MvcResult;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.controllers.CSRFController;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+
+@WebMvcTest(controllers = CSRFController.class)
+public class StaticResourceConfigTests extends ControllerTestCase {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Test
+  public void hashed_bundles_are_immutable_and_precompressed() throws Exception {
+    MvcResult brotli = mockMvc.perform(get("/static/js/main.test.js").header("Accept-Encoding", "gzip, deflate, br"))
+        .andExpect(status().isOk()).andReturn();
+    MvcResult gzip = mockMvc.perform(get("/static/js/main.test.js").header("Accept-Encoding", "gzip"))
+        .andExpect(status().isOk()).andReturn();
+    MvcResult identity = mockMvc.perform(get("/static/js/main.test.js"))
+        .andExpect(status().isOk()).andReturn();
+
+    assertEquals("br", brotli.getResponse().getHeader("Content-Encoding"));
+    assertEquals("brotli-encoded main bundle\n", brotli.getResponse().getContentAsString());
+    assertEquals("gzip", gzip.getResponse().getHeader("Content-Encoding"));
+    assertEquals("gzip-encoded main bundle\n", gzip.getResponse().getContentAsString());
+    assertEquals(null, identity.getResponse().getHeader("Content-Encoding"));
+    assertEquals("console.log(\"main bundle\");\n", identity.getResponse().getContentAsString());
+    assertEquals("max-age=31536000, public, immutable", identity.getResponse().getHeader("Cache-Control"));
+    assertEquals("Accept-Encoding", gzip.getResponse().getHeader("Vary"));
+  }
+
+  @Test
+  public void index_is_precompressed_but_always_revalidated() throws Exception {
+    MvcResult gzip = mockMvc.perform(get("/index.html").header("Accept-Encoding", "gzip"))
+        .andExpect(status().isOk()).andReturn();
+
+    assertEquals("gzip", gzip.getResponse().getHeader("Content-Encoding"));
+    assertEquals("gzip-encoded index\n", gzip.getResponse().getContentAsString());
+    assertEquals("no-cache", gzip.getResponse().getHeader("Cache-Control"));
+  }
+}
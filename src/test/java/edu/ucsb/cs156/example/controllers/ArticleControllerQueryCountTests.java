@@ -0,0 +1,92 @@
+package edu.ucsb.cs156.example.controllers;
+
+import static edu.ucsb.cs156.example.QueryCountTestCase.QueryBudget.atMost;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import edu.ucsb.cs156.example.QueryCountTestCase;
+import edu.ucsb.cs156.example.entities.Article;
+
+public class ArticleControllerQueryCountTests extends QueryCountTestCase {
+
+  private static Article article(String title) {
+    return Article.builder()
+        .title(title)
+        .url("https://example.org/" + title)
+        .explanation("worth reading")
+        .email("cgaucho@ucsb.edu")
+        .dateAdded(LocalDateTime.parse("2022-01-03T00:00:00"))
+        .build();
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void all_is_one_query() throws Exception {
+    persist(article("a"), article("b"), article("c"));
+
+    perform(get("/api/Article/all"), atMost(1, 3)).andExpect(status().isOk());
+    perform(get("/api/Article/all?title=b"), atMost(1, 1)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void page_is_one_query_for_at_most_one_row_more_than_the_limit() throws Exception {
+    persist(article("a"), article("b"), article("c"), article("d"));
+
+    perform(get("/api/Article/page?limit=2"), atMost(1, 3)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void get_by_id_is_one_query() throws Exception {
+    Article article = article("a");
+    persist(article);
+
+    perform(get("/api/Article?id=" + article.getId()), atMost(1, 1)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void writes_are_single_statements() throws Exception {
+    Article article = article("a");
+    persist(article);
+
+    perform(post("/api/Article/post?title=b&url=https://example.org/b&explanation=e&email=cgaucho@ucsb.edu"
+        + "&dateAdded=2022-01-03T00:00:00").with(csrf()), atMost(2, 0))
+        .andExpect(status().isOk()); // the insert, and now and then the next block of ids
+    perform(put("/api/Article?id=" + article.getId()).with(csrf())
+        .header(HttpHeaders.IF_MATCH, "\"0\"")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(article("renamed"))), atMost(1, 0))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+    perform(delete("/api/Article?id=" + article.getId()).with(csrf()), atMost(1, 0)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void put_without_if_match_reads_back_the_version_it_wrote() throws Exception {
+    Article article = article("a");
+    persist(article);
+
+    perform(put("/api/Article?id=" + article.getId()).with(csrf())
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(article("renamed"))), atMost(2, 0))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+        .andExpect(jsonPath("$.version").value(1)); // the update, then its version, read while the row is still locked
+  }
+}
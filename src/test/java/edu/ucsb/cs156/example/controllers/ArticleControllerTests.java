@@ -24,16 +24,24 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
+import org.springframework.data.domain.PageRequest;
+import java.util.List;
+import edu.ucsb.cs156.example.services.JsonExportService;
+import org.springframework.transaction.PlatformTransactionManager;
+import javax.persistence.EntityManager;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.never;
 
 @WebMvcTest(controllers = ArticleController.class)
-@Import(TestConfig.class)
+@Import({ TestConfig.class, JsonExportService.class })
 public class ArticleControllerTests extends ControllerTestCase {
 
         @MockBean
@@ -42,6 +50,12 @@ public class ArticleControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        EntityManager entityManager;
+
+        @MockBean
+        PlatformTransactionManager transactionManager;
+
         // Authorization tests for /api/Article/admin/all
 
         @Test
@@ -207,17 +221,7 @@ public class ArticleControllerTests extends ControllerTestCase {
         public void admin_can_delete_a_article() throws Exception {
                 // arrange
 
-                LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
-
-                Article article1 = Article.builder()
-                                .title("firstDayOfClasses")
-                                .url("20222")
-                                .explanation("explanation")
-                                .email("email")
-                                .dateAdded(ldt1)
-                                .build();
-
-                when(articleRepository.findById(eq(15L))).thenReturn(Optional.of(article1));
+                when(articleRepository.deleteRow(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -226,8 +230,7 @@ public class ArticleControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(articleRepository, times(1)).findById(15L);
-                verify(articleRepository, times(1)).delete(any());
+                verify(articleRepository, times(1)).deleteRow(15L);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Article with id 15 deleted", json.get("message"));
@@ -239,7 +242,7 @@ public class ArticleControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(articleRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(articleRepository.deleteRow(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -248,7 +251,7 @@ public class ArticleControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(articleRepository, times(1)).findById(15L);
+                verify(articleRepository, times(1)).deleteRow(15L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Article with id 15 not found", json.get("message"));
         }
@@ -258,18 +261,10 @@ public class ArticleControllerTests extends ControllerTestCase {
         public void admin_can_edit_an_existing_article() throws Exception {
                 // arrange
 
-                LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
                 LocalDateTime ldt2 = LocalDateTime.parse("2023-01-03T00:00:00");
 
-                Article articleOrig = Article.builder()
-                                .title("first")
-                                .url("www.url2.com")
-                                .explanation("explanation1")
-                                .email("st@ucsb.edu")
-                                .dateAdded(ldt1)
-                                .build();
-
                 Article articleEdited = Article.builder()
+                                .id(67L)
                                 .title("second")
                                 .url("www.url1.com")
                                 .explanation("explanation2")
@@ -279,7 +274,7 @@ public class ArticleControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(articleEdited);
 
-                when(articleRepository.findById(eq(67L))).thenReturn(Optional.of(articleOrig));
+                when(articleRepository.updateRowAndGetVersion(eq(articleEdited), isNull())).thenReturn(Optional.of(1L));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -291,10 +286,12 @@ public class ArticleControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(articleRepository, times(1)).findById(67L);
-                verify(articleRepository, times(1)).save(articleEdited); // should be saved with correct user
+                // the update wrote version 1, and the response says so
+                articleEdited.setVersion(1L);
+                verify(articleRepository, times(1)).updateRowAndGetVersion(articleEdited, null);
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                assertEquals(mapper.writeValueAsString(articleEdited), responseString);
+                assertEquals("\"1\"", response.getResponse().getHeader("ETag"));
         }
 
         @WithMockUser(roles = { "ADMIN", "USER" })
@@ -314,7 +311,7 @@ public class ArticleControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(editedArticle);
 
-                when(articleRepository.findById(eq(67L))).thenReturn(Optional.empty());
+                when(articleRepository.updateRowAndGetVersion(any(), any())).thenReturn(Optional.empty());
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -326,9 +323,138 @@ public class ArticleControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(articleRepository, times(1)).findById(67L);
+                verify(articleRepository, times(1)).updateRowAndGetVersion(any(), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Article with id 67 not found", json.get("message"));
 
         }
+
+        // Tests for keyset pagination (/api/Article/page)
+
+        @Test
+        public void logged_out_users_cannot_get_page() throws Exception {
+                mockMvc.perform(get("/api/Article/page"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_first_page_and_next_cursor() throws Exception {
+
+                // arrange
+
+                Article row1 = Article.builder().id(1L).build();
+                Article row2 = Article.builder().id(2L).build();
+                Article row3 = Article.builder().id(3L).build();
+
+                when(articleRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 3))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(row1, row2, row3)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/Article/page?limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(articleRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 3)));
+                String expectedJson = mapper.writeValueAsString(Map.of("content", Arrays.asList(row1, row2), "next", 2L));
+                assertEquals(mapper.readTree(expectedJson), mapper.readTree(response.getResponse().getContentAsString()));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_last_page_without_next_cursor() throws Exception {
+
+                // arrange
+
+                Article row3 = Article.builder().id(3L).build();
+
+                when(articleRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), eq(PageRequest.of(0, 3))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(row3)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/Article/page?afterId=2&limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(1, ((List<?>) json.get("content")).size());
+                assertEquals(null, json.get("next"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_page_limit_is_capped() throws Exception {
+
+                // act
+                mockMvc.perform(get("/api/Article/page?limit=100000"))
+                                .andExpect(status().isOk());
+
+                // assert
+
+                verify(articleRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT + 1)));
+        }
+
+        // Tests for streaming export (/api/Article/export)
+
+        @Test
+        public void logged_out_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/Article/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/Article/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_export_all_rows_as_a_json_array() throws Exception {
+
+                // arrange
+
+                Article row1 = Article.builder().id(1L).build();
+                Article row2 = Article.builder().id(2L).build();
+
+                when(articleRepository.streamAll()).thenReturn(Stream.of(row1, row2));
+
+                // act
+                MvcResult asyncResult = mockMvc.perform(get("/api/Article/export"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(asyncResult))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Disposition", "attachment; filename=\"article.json\""))
+                                .andReturn();
+
+                // assert
+
+                verify(articleRepository, times(1)).streamAll();
+                verify(entityManager, times(1)).detach(row1);
+                verify(entityManager, times(1)).detach(row2);
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(row1, row2));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_filter_articles_by_title() throws Exception {
+
+                // arrange
+                Article article = Article.builder().title("Using testing-playground").url("https://www.youtube.com/watch?v=8OjPwHnGbGQ").explanation("Helpful").email("phtcon@ucsb.edu").build();
+                when(articleRepository.findAllByTitle(eq("Using testing-playground"))).thenReturn(List.of(article));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/Article/all").param("title", "Using testing-playground"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(articleRepository, never()).findAll();
+                assertEquals(mapper.writeValueAsString(List.of(article)), response.getResponse().getContentAsString());
+        }
 }
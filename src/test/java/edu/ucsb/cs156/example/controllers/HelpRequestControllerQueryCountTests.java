@@ -0,0 +1,145 @@
+package edu.ucsb.cs156.example.controllers;
+
+import static edu.ucsb.cs156.example.QueryCountTestCase.QueryBudget.atMost;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.oauth2Login;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import edu.ucsb.cs156.example.QueryCountTestCase;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.services.HelpRequestQueueService;
+
+public class HelpRequestControllerQueryCountTests extends QueryCountTestCase {
+
+  @Autowired
+  HelpRequestQueueService helpRequestQueueService;
+
+  private static HelpRequest helpRequest(String teamId, boolean solved) {
+    return HelpRequest.builder()
+        .requesterEmail("cgaucho@ucsb.edu")
+        .teamId(teamId)
+        .tableOrBreakoutRoom("7")
+        .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+        .explanation("merge conflict")
+        .solved(solved)
+        .build();
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void all_is_one_query() throws Exception {
+    persist(helpRequest("s22-5pm-3", false), helpRequest("s22-5pm-3", true), helpRequest("s22-6pm-4", false));
+
+    perform(get("/api/helprequest/all"), atMost(1, 3)).andExpect(status().isOk());
+    perform(get("/api/helprequest/all?teamId=s22-5pm-3&solved=false"), atMost(1, 1)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void page_is_one_query_for_at_most_one_row_more_than_the_limit() throws Exception {
+    persist(helpRequest("a", false), helpRequest("a", false), helpRequest("a", false), helpRequest("a", false));
+
+    perform(get("/api/helprequest/page?limit=2"), atMost(1, 3)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void get_by_id_is_one_query() throws Exception {
+    HelpRequest helpRequest = helpRequest("s22-5pm-3", false);
+    persist(helpRequest);
+
+    perform(get("/api/helprequest?id=" + helpRequest.getId()), atMost(1, 1)).andExpect(status().isOk());
+  }
+
+  private static RequestPostProcessor signedInTa() {
+    return oauth2Login()
+        .attributes(attributes -> {
+          attributes.put("sub", "ta-sub");
+          attributes.put("email", "ta@ucsb.edu");
+          attributes.put("email_verified", true);
+        })
+        .authorities(new SimpleGrantedAuthority("ROLE_ADMIN"), new SimpleGrantedAuthority("ROLE_USER"));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void the_queue_is_read_from_memory_and_a_claim_is_one_update() throws Exception {
+    persist(helpRequest("s22-5pm-3", false), helpRequest("s22-6pm-4", false), helpRequest("s22-6pm-4", true));
+    helpRequestQueueService.load();
+    // signs the TA in, so that the claim finds them in the current user cache
+    mockMvc.perform(get("/api/currentUser").with(signedInTa())).andExpect(status().isOk());
+
+    perform(get("/api/helprequest/queue"), atMost(0, 0)).andExpect(status().isOk());
+    perform(get("/api/helprequest/queue/next?teamId=s22-6pm-4"), atMost(0, 0)).andExpect(status().isOk());
+    perform(post("/api/helprequest/queue/claim?teamId=s22-6pm-4").with(signedInTa()).with(csrf()), atMost(1, 0))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.claimedBy").value("ta@ucsb.edu"))
+        .andExpect(jsonPath("$.solved").value(false));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void a_release_is_one_update_and_a_read_back() throws Exception {
+    HelpRequest claimed = helpRequest("s22-5pm-3", false);
+    claimed.setClaimedBy("ta@ucsb.edu");
+    claimed.setClaimedAt(LocalDateTime.parse("2022-01-03T00:05:00"));
+    persist(claimed);
+    helpRequestQueueService.load();
+
+    perform(post("/api/helprequest/queue/release?id=" + claimed.getId()).with(csrf()), atMost(2, 1))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.claimedBy").doesNotExist());
+    perform(get("/api/helprequest/queue/next"), atMost(0, 0))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.id").value(claimed.getId()));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void writes_are_single_statements() throws Exception {
+    HelpRequest helpRequest = helpRequest("s22-5pm-3", false);
+    persist(helpRequest);
+
+    perform(post("/api/helprequest/post?requesterEmail=cgaucho@ucsb.edu&teamId=s22-5pm-3&tableOrBreakoutRoom=7"
+        + "&requestTime=2022-04-20T17:35:00&explanation=help&solved=false").with(csrf()), atMost(2, 0))
+        .andExpect(status().isOk()); // the insert, and now and then the next block of ids
+    HelpRequest edit = helpRequest("s22-5pm-3", true);
+    edit.setVersion(0L);
+    perform(put("/api/helprequest?id=" + helpRequest.getId()).with(csrf())
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(edit)), atMost(1, 0))
+        .andExpect(status().isOk())
+        .andExpect(header().string("ETag", "\"1\""));
+    perform(delete("/api/helprequest?id=" + helpRequest.getId()).with(csrf()), atMost(1, 0))
+        .andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void put_without_a_version_overwrites_and_reads_back_the_version_it_wrote() throws Exception {
+    HelpRequest helpRequest = helpRequest("s22-5pm-3", false);
+    persist(helpRequest);
+
+    perform(put("/api/helprequest?id=" + helpRequest.getId()).with(csrf())
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(helpRequest("s22-5pm-3", true))), atMost(2, 0))
+        .andExpect(status().isOk()) // the update, then the version it wrote
+        .andExpect(header().string("ETag", "\"1\""))
+        .andExpect(jsonPath("$.version").value(1));
+  }
+}
@@ -25,16 +25,30 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
+import org.springframework.data.domain.PageRequest;
+import java.util.List;
+import edu.ucsb.cs156.example.services.JsonExportService;
+import org.springframework.transaction.PlatformTransactionManager;
+import javax.persistence.EntityManager;
+import java.util.stream.Stream;
+import edu.ucsb.cs156.example.services.HelpRequestStreamService;
+import org.springframework.beans.factory.annotation.Autowired;
+import edu.ucsb.cs156.example.services.HelpRequestQueueService;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.never;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @WebMvcTest(controllers = HelpRequestController.class)
-@Import(TestConfig.class)
+@Import({ TestConfig.class, JsonExportService.class, HelpRequestStreamService.class, HelpRequestQueueService.class })
 public class HelpRequestControllerTests extends ControllerTestCase{
     
     @MockBean
@@ -43,6 +57,12 @@ public class HelpRequestControllerTests extends ControllerTestCase{
     @MockBean
     UserRepository userRepository;
 
+    @MockBean
+    EntityManager entityManager;
+
+    @MockBean
+    PlatformTransactionManager transactionManager;
+
     // Authorization tests for /api/helprequest/admin/all
 
     @Test
@@ -96,6 +116,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                 .requestTime(ldt)
                 .explanation("bugs-in-controller")
                 .solved(false)
+                .version(0L)
                 .build();
 
             when(helpRequestRepository.findById(eq(7L))).thenReturn(Optional.of(helpRequest));
@@ -211,18 +232,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
     public void admin_can_delete_a_helprequest() throws Exception {
         // arrange
 
-        LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
-
-        HelpRequest helpRequest1 = HelpRequest.builder()
-            .requesterEmail("myly@ucsb.edu")
-            .teamId("s22-6pm-3")
-            .tableOrBreakoutRoom("table")
-            .requestTime(ldt1)
-            .explanation("errors")
-            .solved(true)
-            .build();
-
-        when(helpRequestRepository.findById(eq(15L))).thenReturn(Optional.of(helpRequest1));
+        when(helpRequestRepository.deleteRow(eq(15L))).thenReturn(1);
 
         // act
         MvcResult response = mockMvc.perform(
@@ -231,8 +241,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                         .andExpect(status().isOk()).andReturn();
 
         // assert
-        verify(helpRequestRepository, times(1)).findById(15L);
-        verify(helpRequestRepository, times(1)).delete(any());
+        verify(helpRequestRepository, times(1)).deleteRow(15L);
 
         Map<String, Object> json = responseToJson(response);
         assertEquals("HelpRequest with id 15 deleted", json.get("message"));
@@ -244,7 +253,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                     throws Exception {
         // arrange
 
-        when(helpRequestRepository.findById(eq(15L))).thenReturn(Optional.empty());
+        when(helpRequestRepository.deleteRow(eq(15L))).thenReturn(0);
 
         // act
         MvcResult response = mockMvc.perform(
@@ -253,7 +262,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                         .andExpect(status().isNotFound()).andReturn();
 
         // assert
-        verify(helpRequestRepository, times(1)).findById(15L);
+        verify(helpRequestRepository, times(1)).deleteRow(15L);
         Map<String, Object> json = responseToJson(response);
         assertEquals("HelpRequest with id 15 not found", json.get("message"));
     }
@@ -263,30 +272,22 @@ public class HelpRequestControllerTests extends ControllerTestCase{
     public void admin_can_edit_an_existing_helprequest() throws Exception {
         // arrange
 
-        LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
         LocalDateTime ldt2 = LocalDateTime.parse("2023-01-03T00:00:00");
 
-        HelpRequest helpRequestOrig = HelpRequest.builder()
-            .requesterEmail("cgaucho@ucsb.edu")
-            .teamId("s22-6pm-3")
-            .tableOrBreakoutRoom("table")
-            .requestTime(ldt1)
-            .explanation("bugs-in-controller")
-            .solved(false)
-            .build();
-
         HelpRequest helpRequestEdited = HelpRequest.builder()
+            .id(67L)
             .requesterEmail("myly@ucsb.edu")
             .teamId("s22-6pm-31")
             .tableOrBreakoutRoom("breakoutroom")
             .requestTime(ldt2)
             .explanation("errors")
             .solved(true)
+            .version(3L)
             .build();   
 
         String requestBody = mapper.writeValueAsString(helpRequestEdited);
 
-        when(helpRequestRepository.findById(eq(67L))).thenReturn(Optional.of(helpRequestOrig));
+        when(helpRequestRepository.updateRowAndGetVersion(eq(helpRequestEdited), eq(3L))).thenReturn(Optional.of(4L));
 
         // act
         MvcResult response = mockMvc.perform(
@@ -298,10 +299,46 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                         .andExpect(status().isOk()).andReturn();
 
         // assert
-        verify(helpRequestRepository, times(1)).findById(67L);
-        verify(helpRequestRepository, times(1)).save(helpRequestEdited); // should be saved with correct user
+        // the update bumped the version, and the response says so
+        helpRequestEdited.setVersion(4L);
+        verify(helpRequestRepository, times(1)).updateRowAndGetVersion(helpRequestEdited, 3L);
         String responseString = response.getResponse().getContentAsString();
-        assertEquals(requestBody, responseString);
+        assertEquals(mapper.writeValueAsString(helpRequestEdited), responseString);
+        assertEquals("\"4\"", response.getResponse().getHeader("ETag"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_edit_a_helprequest_without_saying_which_version() throws Exception {
+        // arrange
+
+        HelpRequest helpRequestEdited = HelpRequest.builder()
+            .id(67L)
+            .requesterEmail("myly@ucsb.edu")
+            .teamId("s22-6pm-31")
+            .tableOrBreakoutRoom("breakoutroom")
+            .requestTime(LocalDateTime.parse("2023-01-03T00:00:00"))
+            .explanation("errors")
+            .solved(true)
+            .build();
+
+        when(helpRequestRepository.updateRowAndGetVersion(eq(helpRequestEdited), isNull())).thenReturn(Optional.of(8L));
+
+        // act
+        MvcResult response = mockMvc.perform(
+                        put("/api/helprequest?id=67")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .characterEncoding("utf-8")
+                                        .content(mapper.writeValueAsString(helpRequestEdited))
+                                        .with(csrf()))
+                        .andExpect(status().isOk()).andReturn();
+
+        // assert
+        // whatever version the row was at, it was overwritten, and the response has the version that wrote
+        helpRequestEdited.setVersion(8L);
+        verify(helpRequestRepository, times(1)).updateRowAndGetVersion(helpRequestEdited, null);
+        assertEquals(mapper.writeValueAsString(helpRequestEdited), response.getResponse().getContentAsString());
+        assertEquals("\"8\"", response.getResponse().getHeader("ETag"));
     }
 
     @WithMockUser(roles = { "ADMIN", "USER" })
@@ -322,7 +359,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
 
         String requestBody = mapper.writeValueAsString(ucsbEditedDate);
 
-        when(helpRequestRepository.findById(eq(67L))).thenReturn(Optional.empty());
+        when(helpRequestRepository.updateRowAndGetVersion(any(), any())).thenReturn(Optional.empty());
 
         // act
         MvcResult response = mockMvc.perform(
@@ -334,9 +371,407 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                         .andExpect(status().isNotFound()).andReturn();
 
         // assert
-        verify(helpRequestRepository, times(1)).findById(67L);
+        verify(helpRequestRepository, times(1)).updateRowAndGetVersion(any(), any());
         Map<String, Object> json = responseToJson(response);
         assertEquals("HelpRequest with id 67 not found", json.get("message"));
 
     }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_cannot_edit_helprequest_with_a_stale_version() throws Exception {
+        // arrange
+
+        HelpRequest staleEdit = HelpRequest.builder()
+            .requesterEmail("myly@ucsb.edu")
+            .teamId("s22-6pm-3")
+            .tableOrBreakoutRoom("table")
+            .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+            .explanation("errors")
+            .solved(true)
+            .version(2L)
+            .build();
+
+        when(helpRequestRepository.updateRowAndGetVersion(any(), eq(2L))).thenReturn(Optional.empty());
+        when(helpRequestRepository.existsById(eq(67L))).thenReturn(true);
+
+        // act
+        MvcResult response = mockMvc.perform(
+                        put("/api/helprequest?id=67")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .characterEncoding("utf-8")
+                                        .content(mapper.writeValueAsString(staleEdit))
+                                        .with(csrf()))
+                        .andExpect(status().isConflict()).andReturn();
+
+        // assert
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("EntityVersionConflictException", json.get("type"));
+        assertEquals("HelpRequest with id 67 has been changed since version 2", json.get("message"));
+    }
+
+    // Tests for keyset pagination (/api/helprequest/page)
+
+    @Test
+    public void logged_out_users_cannot_get_page() throws Exception {
+        mockMvc.perform(get("/api/helprequest/page"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_first_page_and_next_cursor() throws Exception {
+
+        // arrange
+
+        HelpRequest row1 = HelpRequest.builder().id(1L).build();
+        HelpRequest row2 = HelpRequest.builder().id(2L).build();
+        HelpRequest row3 = HelpRequest.builder().id(3L).build();
+
+        when(helpRequestRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 3))))
+                .thenReturn(new ArrayList<>(Arrays.asList(row1, row2, row3)));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequest/page?limit=2"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        verify(helpRequestRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 3)));
+        String expectedJson = mapper.writeValueAsString(Map.of("content", Arrays.asList(row1, row2), "next", 2L));
+        assertEquals(mapper.readTree(expectedJson), mapper.readTree(response.getResponse().getContentAsString()));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_gets_last_page_without_next_cursor() throws Exception {
+
+        // arrange
+
+        HelpRequest row3 = HelpRequest.builder().id(3L).build();
+
+        when(helpRequestRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), eq(PageRequest.of(0, 3))))
+                .thenReturn(new ArrayList<>(Arrays.asList(row3)));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/helprequest/page?afterId=2&limit=2"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+
+        Map<String, Object> json = responseToJson(response);
+        assertEquals(1, ((List<?>) json.get("content")).size());
+        assertEquals(null, json.get("next"));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_page_limit_is_capped() throws Exception {
+
+        // act
+        mockMvc.perform(get("/api/helprequest/page?limit=100000"))
+                .andExpect(status().isOk());
+
+        // assert
+
+        verify(helpRequestRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT + 1)));
+    }
+
+    // Tests for streaming export (/api/helprequest/export)
+
+    @Test
+    public void logged_out_users_cannot_export() throws Exception {
+        mockMvc.perform(get("/api/helprequest/export"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_export() throws Exception {
+        mockMvc.perform(get("/api/helprequest/export"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_export_all_rows_as_a_json_array() throws Exception {
+
+        // arrange
+
+        HelpRequest row1 = HelpRequest.builder().id(1L).build();
+        HelpRequest row2 = HelpRequest.builder().id(2L).build();
+
+        when(helpRequestRepository.streamAll()).thenReturn(Stream.of(row1, row2));
+
+        // act
+        MvcResult asyncResult = mockMvc.perform(get("/api/helprequest/export"))
+                .andExpect(request().asyncStarted()).andReturn();
+        MvcResult response = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"helprequest.json\""))
+                .andReturn();
+
+        // assert
+
+        verify(helpRequestRepository, times(1)).streamAll();
+        verify(entityManager, times(1)).detach(row1);
+        verify(entityManager, times(1)).detach(row2);
+        String expectedJson = mapper.writeValueAsString(Arrays.asList(row1, row2));
+        String responseString = response.getResponse().getContentAsString();
+        assertEquals(expectedJson, responseString);
+    }
+
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_filter_helprequests_by_team_and_solved() throws Exception {
+
+        // arrange
+        HelpRequest open = HelpRequest.builder().requesterEmail("cgaucho@ucsb.edu").teamId("s22-6pm-3").solved(false).build();
+        HelpRequest solved = HelpRequest.builder().requesterEmail("ldelplaya@ucsb.edu").teamId("s22-6pm-3").solved(true).build();
+        when(helpRequestRepository.findAllByTeamIdAndSolved(eq("s22-6pm-3"), eq(false))).thenReturn(List.of(open));
+        when(helpRequestRepository.findAllByTeamId(eq("s22-6pm-3"))).thenReturn(List.of(open, solved));
+        when(helpRequestRepository.findAllBySolved(eq(true))).thenReturn(List.of(solved));
+
+        // act
+        MvcResult both = mockMvc.perform(get("/api/helprequest/all?teamId=s22-6pm-3&solved=false"))
+                .andExpect(status().isOk()).andReturn();
+        MvcResult byTeam = mockMvc.perform(get("/api/helprequest/all?teamId=s22-6pm-3"))
+                .andExpect(status().isOk()).andReturn();
+        MvcResult bySolved = mockMvc.perform(get("/api/helprequest/all?solved=true"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(helpRequestRepository, never()).findAll();
+        assertEquals(mapper.writeValueAsString(List.of(open)), both.getResponse().getContentAsString());
+        assertEquals(mapper.writeValueAsString(List.of(open, solved)), byTeam.getResponse().getContentAsString());
+        assertEquals(mapper.writeValueAsString(List.of(solved)), bySolved.getResponse().getContentAsString());
+    }
+
+
+    // Tests for the Server-Sent Events stream
+
+    @Autowired
+    HelpRequestStreamService helpRequestStreamService;
+
+    @Test
+    public void logged_out_users_cannot_stream() throws Exception {
+        mockMvc.perform(get("/api/helprequest/stream"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void stream_sends_a_snapshot_then_a_delta_per_write() throws Exception {
+
+        // arrange
+        HelpRequest waiting = HelpRequest.builder().id(1L).requesterEmail("cgaucho@ucsb.edu").teamId("s22-6pm-3")
+                .tableOrBreakoutRoom("7").requestTime(LocalDateTime.parse("2022-01-03T00:00:00")).explanation("npm install fails").build();
+        HelpRequest solved = HelpRequest.builder().id(1L).requesterEmail("cgaucho@ucsb.edu").teamId("s22-6pm-3")
+                .tableOrBreakoutRoom("7").requestTime(LocalDateTime.parse("2022-01-03T00:00:00")).explanation("npm install fails").solved(true).build();
+        when(helpRequestRepository.findAll()).thenReturn(List.of(waiting));
+        when(helpRequestRepository.updateRowAndGetVersion(eq(solved), isNull())).thenReturn(Optional.of(1L));
+        when(helpRequestRepository.deleteRow(eq(1L))).thenReturn(1);
+
+        // act
+        MvcResult stream = mockMvc.perform(get("/api/helprequest/stream"))
+                .andExpect(request().asyncStarted()).andReturn();
+        mockMvc.perform(put("/api/helprequest?id=1").with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(solved)))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/helprequest?id=1").with(csrf()))
+                .andExpect(status().isOk());
+
+        // assert
+        solved.setVersion(1L);
+        verify(helpRequestRepository, times(1)).findAll();
+        assertEquals(
+                "event:snapshot\ndata:" + mapper.writeValueAsString(List.of(waiting)) + "\n\n"
+                + "event:delta\ndata:{\"change\":\"UPDATED\",\"id\":1,\"helpRequest\":" + mapper.writeValueAsString(solved) + "}\n\n"
+                + "event:delta\ndata:{\"change\":\"DELETED\",\"id\":1,\"helpRequest\":null}\n\n",
+                stream.getResponse().getContentAsString());
+        stream.getRequest().getAsyncContext().complete();
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void stream_for_a_team_only_gets_that_teams_rows() throws Exception {
+
+        // arrange
+        HelpRequest otherTeam = HelpRequest.builder().id(2L).requesterEmail("ldelplaya@ucsb.edu").teamId("s22-5pm-1")
+                .tableOrBreakoutRoom("2").requestTime(LocalDateTime.parse("2022-01-03T00:00:00")).explanation("merge conflict").build();
+        HelpRequest sameTeam = HelpRequest.builder().id(3L).requesterEmail("cgaucho@ucsb.edu").teamId("s22-6pm-3")
+                .tableOrBreakoutRoom("7").requestTime(LocalDateTime.parse("2022-01-03T00:00:00")).explanation("npm install fails").build();
+        when(helpRequestRepository.findAllByTeamId(eq("s22-6pm-3"))).thenReturn(List.of());
+        when(helpRequestRepository.updateRowAndGetVersion(any(), any())).thenReturn(Optional.of(1L));
+
+        // act
+        MvcResult stream = mockMvc.perform(get("/api/helprequest/stream?teamId=s22-6pm-3"))
+                .andExpect(request().asyncStarted()).andReturn();
+        for (HelpRequest helpRequest : List.of(otherTeam, sameTeam)) {
+            mockMvc.perform(put("/api/helprequest?id=" + helpRequest.getId()).with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(mapper.writeValueAsString(helpRequest)))
+                    .andExpect(status().isOk());
+        }
+
+        // assert
+        verify(helpRequestRepository, never()).findAll();
+        String events = stream.getResponse().getContentAsString();
+        assertTrue(events.startsWith("event:snapshot\ndata:[]\n\n"));
+        assertTrue(events.contains("\"id\":3"));
+        assertFalse(events.contains("\"id\":2"));
+        stream.getRequest().getAsyncContext().complete();
+    }
+
+
+    // Tests for the in-memory queue of unsolved requests
+
+    @Autowired
+    HelpRequestQueueService helpRequestQueueService;
+
+    @Test
+    public void logged_out_users_cannot_use_the_queue() throws Exception {
+        mockMvc.perform(get("/api/helprequest/queue"))
+                .andExpect(status().is(403));
+        mockMvc.perform(get("/api/helprequest/queue/next"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_claim() throws Exception {
+        mockMvc.perform(post("/api/helprequest/queue/claim").with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void queue_serves_oldest_unsolved_requests_without_a_query() throws Exception {
+
+        // arrange
+        HelpRequest older = HelpRequest.builder().id(1L).requesterEmail("cgaucho@ucsb.edu").teamId("s22-6pm-3")
+                .tableOrBreakoutRoom("7").requestTime(LocalDateTime.parse("2022-01-03T10:00:00")).explanation("npm install fails").build();
+        HelpRequest newer = HelpRequest.builder().id(2L).requesterEmail("ldelplaya@ucsb.edu").teamId("s22-6pm-3")
+                .tableOrBreakoutRoom("7").requestTime(LocalDateTime.parse("2022-01-03T10:05:00")).explanation("merge conflict").build();
+        when(helpRequestRepository.findAllBySolved(eq(false))).thenReturn(List.of(newer));
+        helpRequestQueueService.load();
+        when(helpRequestRepository.save(any())).thenReturn(older);
+
+        // act
+        mockMvc.perform(post("/api/helprequest/post?requesterEmail=cgaucho@ucsb.edu&teamId=s22-6pm-3&tableOrBreakoutRoom=7&requestTime=2022-01-03T10:00:00&explanation=npm install fails&solved=false")
+                .with(csrf()))
+                .andExpect(status().isOk());
+        MvcResult peek = mockMvc.perform(get("/api/helprequest/queue?teamId=s22-6pm-3"))
+                .andExpect(status().isOk()).andReturn();
+        MvcResult next = mockMvc.perform(get("/api/helprequest/queue/next?teamId=s22-6pm-3"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(helpRequestRepository, times(1)).findAllBySolved(false);
+        verify(helpRequestRepository, never()).findAllByTeamId(any());
+        assertEquals(mapper.writeValueAsString(List.of(older, newer)), peek.getResponse().getContentAsString());
+        assertEquals(mapper.writeValueAsString(older), next.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_claim_the_oldest_request() throws Exception {
+
+        // arrange
+        HelpRequest waiting = HelpRequest.builder().id(1L).requesterEmail("cgaucho@ucsb.edu").teamId("s22-6pm-3")
+                .tableOrBreakoutRoom("7").requestTime(LocalDateTime.parse("2022-01-03T10:00:00")).explanation("npm install fails").version(0L).build();
+        when(helpRequestRepository.findAllBySolved(eq(false))).thenReturn(List.of(waiting));
+        helpRequestQueueService.load();
+        when(helpRequestRepository.markClaimed(eq(1L), anyLong(), any(), any())).thenReturn(1);
+
+        // act
+        MvcResult claimed = mockMvc.perform(post("/api/helprequest/queue/claim?teamId=s22-6pm-3").with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+        mockMvc.perform(post("/api/helprequest/queue/claim?teamId=s22-6pm-3").with(csrf()))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/api/helprequest/queue/next"))
+                .andExpect(status().isNoContent());
+
+        // assert
+        verify(helpRequestRepository, times(1)).markClaimed(eq(1L), eq(0L), eq("user@example.org"), any());
+        Map<String, Object> json = responseToJson(claimed);
+        assertEquals(1, json.get("id"));
+        assertEquals("user@example.org", json.get("claimedBy"));
+        assertEquals(false, json.get("solved"));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_release() throws Exception {
+        mockMvc.perform(post("/api/helprequest/queue/release?id=1").with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_release_a_claim_putting_the_request_back_in_the_queue() throws Exception {
+
+        // arrange
+        when(helpRequestRepository.findAllBySolved(eq(false))).thenReturn(List.of());
+        helpRequestQueueService.load();
+        HelpRequest released = HelpRequest.builder().id(1L).requesterEmail("cgaucho@ucsb.edu").teamId("s22-6pm-3")
+                .tableOrBreakoutRoom("7").requestTime(LocalDateTime.parse("2022-01-03T10:00:00")).explanation("npm install fails").version(2L).build();
+        when(helpRequestRepository.releaseClaim(eq(1L))).thenReturn(1);
+        when(helpRequestRepository.findById(eq(1L))).thenReturn(Optional.of(released));
+
+        // act
+        MvcResult response = mockMvc.perform(post("/api/helprequest/queue/release?id=1").with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+        MvcResult next = mockMvc.perform(get("/api/helprequest/queue/next"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(helpRequestRepository, times(1)).releaseClaim(1L);
+        assertEquals(mapper.writeValueAsString(released), response.getResponse().getContentAsString());
+        assertEquals(mapper.writeValueAsString(released), next.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_cannot_release_a_request_that_does_not_exist() throws Exception {
+
+        // arrange
+        when(helpRequestRepository.releaseClaim(eq(7L))).thenReturn(0);
+        when(helpRequestRepository.findById(eq(7L))).thenReturn(Optional.empty());
+
+        // act
+        MvcResult response = mockMvc.perform(post("/api/helprequest/queue/release?id=7").with(csrf()))
+                .andExpect(status().isNotFound()).andReturn();
+
+        // assert
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("HelpRequest with id 7 not found", json.get("message"));
+    }
+
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void if_match_overrides_the_version_in_the_body() throws Exception {
+
+        // arrange
+        HelpRequest edit = HelpRequest.builder().id(67L).requesterEmail("myly@ucsb.edu").teamId("s22-6pm-3")
+                .tableOrBreakoutRoom("table").requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .explanation("errors").solved(true).version(0L).build();
+        when(helpRequestRepository.updateRowAndGetVersion(any(), eq(5L))).thenReturn(Optional.empty());
+        when(helpRequestRepository.existsById(eq(67L))).thenReturn(true);
+
+        // act
+        mockMvc.perform(
+                put("/api/helprequest?id=67")
+                        .header("If-Match", "\"5\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(edit))
+                        .with(csrf()))
+                .andExpect(status().isPreconditionFailed());
+
+        // assert
+        verify(helpRequestRepository, times(1)).updateRowAndGetVersion(edit, 5L);
+    }
 }
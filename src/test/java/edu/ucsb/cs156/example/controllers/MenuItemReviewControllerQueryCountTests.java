@@ -0,0 +1,133 @@
+package edu.ucsb.cs156.example.controllers;
+
+import static edu.ucsb.cs156.example.QueryCountTestCase.QueryBudget.atMost;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import edu.ucsb.cs156.example.QueryCountTestCase;
+import edu.ucsb.cs156.example.entities.MenuItemRatingSummary;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.repositories.MenuItemRatingSummaryRepository;
+import edu.ucsb.cs156.example.services.MenuItemReviewService;
+
+public class MenuItemReviewControllerQueryCountTests extends QueryCountTestCase {
+
+  @Autowired
+  MenuItemRatingSummaryRepository menuItemRatingSummaryRepository;
+
+  @Autowired
+  MenuItemReviewService menuItemReviewService;
+
+  private static MenuItemReview review(long itemId, int stars) {
+    return MenuItemReview.builder()
+        .itemId(itemId)
+        .reviewerEmail("cgaucho@ucsb.edu")
+        .stars(stars)
+        .dateReviewed(LocalDateTime.parse("2022-01-03T00:00:00"))
+        .comments("ok")
+        .build();
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void all_is_one_query() throws Exception {
+    persist(review(1, 5), review(1, 3), review(2, 4));
+
+    perform(get("/api/MenuItemReview/all"), atMost(1, 3)).andExpect(status().isOk());
+    perform(get("/api/MenuItemReview/all?itemId=1"), atMost(1, 2)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void page_is_one_query_for_at_most_one_row_more_than_the_limit() throws Exception {
+    persist(review(1, 5), review(1, 4), review(1, 3), review(1, 2));
+
+    perform(get("/api/MenuItemReview/page?limit=2"), atMost(1, 3)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void get_by_id_is_one_query() throws Exception {
+    MenuItemReview review = review(1, 5);
+    persist(review);
+
+    perform(get("/api/MenuItemReview?id=" + review.getId()), atMost(1, 1)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void ratings_are_one_query_whatever_the_number_of_reviews() throws Exception {
+    // each review is the insert and one upsert of the summary (and now and then the next block of ids)
+    perform(post("/api/MenuItemReview/post?itemId=1&reviewerEmail=a@ucsb.edu&stars=5"
+        + "&dateReviewed=2022-01-03T00:00:00&comments=ok").with(csrf()), atMost(3, 0))
+        .andExpect(status().isOk());
+    perform(post("/api/MenuItemReview/post?itemId=1&reviewerEmail=b@ucsb.edu&stars=3"
+        + "&dateReviewed=2022-01-03T00:00:00&comments=ok").with(csrf()), atMost(3, 0))
+        .andExpect(status().isOk());
+
+    perform(get("/api/MenuItemReview/ratings?itemId=1"), atMost(1, 1)).andExpect(status().isOk());
+    perform(get("/api/MenuItemReview/ratings/top"), atMost(1, 1)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void writes_keep_the_rating_summary_in_step_without_rereading_reviews() throws Exception {
+    perform(post("/api/MenuItemReview/post?itemId=1&reviewerEmail=a@ucsb.edu&stars=5"
+        + "&dateReviewed=2022-01-03T00:00:00&comments=ok").with(csrf()), atMost(3, 0))
+        .andExpect(status().isOk());
+    long id = mapper.readValue(perform(get("/api/MenuItemReview/all?itemId=1"), atMost(1, 1))
+        .andReturn().getResponse().getContentAsString(), MenuItemReview[].class)[0].getId();
+
+    perform(put("/api/MenuItemReview?id=" + id).with(csrf())
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(review(1, 2))), atMost(4, 1))
+        .andExpect(status().isOk()); // the locking read, the update, and the old and new stars' summary updates
+    perform(delete("/api/MenuItemReview?id=" + id).with(csrf()), atMost(3, 1)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void reviews_written_without_a_summary_are_backfilled_and_never_counted_below_zero() throws Exception {
+    MenuItemReview unsummarized = review(1, 4);
+    persist(unsummarized, review(1, 2), review(2, 5));
+    perform(delete("/api/MenuItemReview?id=" + unsummarized.getId()).with(csrf()), atMost(3, 1))
+        .andExpect(status().isOk());
+    // the delete had no summary to take its review out of, and didn't make a negative one
+    assertNull(menuItemRatingSummaryRepository.findById(1L).orElse(null));
+
+    menuItemReviewService.backfillSummaries();
+
+    assertEquals(MenuItemRatingSummary.builder().itemId(1L).reviewCount(1).starTotal(2).stars2(1).build(),
+        menuItemRatingSummaryRepository.findById(1L).orElseThrow());
+    assertEquals(MenuItemRatingSummary.builder().itemId(2L).reviewCount(1).starTotal(5).stars5(1).build(),
+        menuItemRatingSummaryRepository.findById(2L).orElseThrow());
+    menuItemReviewService.backfillSummaries();
+    assertEquals(2, menuItemRatingSummaryRepository.count());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void the_first_and_later_reviews_of_an_item_add_up_in_its_summary() throws Exception {
+    for (int stars : new int[] { 5, 3, 3 }) {
+      perform(post("/api/MenuItemReview/post?itemId=1&reviewerEmail=a@ucsb.edu&stars=" + stars
+          + "&dateReviewed=2022-01-03T00:00:00&comments=ok").with(csrf()), atMost(3, 0))
+          .andExpect(status().isOk());
+    }
+
+    assertEquals(MenuItemRatingSummary.builder().itemId(1L).reviewCount(3).starTotal(11).stars3(2).stars5(1).build(),
+        menuItemRatingSummaryRepository.findById(1L).orElseThrow());
+  }
+}
@@ -30,19 +30,43 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.ArgumentMatchers.anyLong;
 
 import java.time.LocalDateTime;
+import org.springframework.data.domain.PageRequest;
+import java.util.List;
+import edu.ucsb.cs156.example.services.JsonExportService;
+import org.springframework.transaction.PlatformTransactionManager;
+import javax.persistence.EntityManager;
+import java.util.stream.Stream;
+import edu.ucsb.cs156.example.services.BulkSaveService;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.BulkRowResult;
+import edu.ucsb.cs156.example.entities.MenuItemRatingSummary;
+import edu.ucsb.cs156.example.repositories.MenuItemRatingSummaryRepository;
+import edu.ucsb.cs156.example.services.MenuItemReviewService;
 
 @WebMvcTest(controllers = MenuItemReviewController.class)
-@Import(TestConfig.class)
+@Import({ TestConfig.class, JsonExportService.class, BulkSaveService.class, MenuItemReviewService.class })
 public class MenuItemReviewControllerTests extends ControllerTestCase {
 
         @MockBean
         MenuItemReviewRepository menuItemReviewRepository;
 
+        @MockBean
+        MenuItemRatingSummaryRepository menuItemRatingSummaryRepository;
+
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        EntityManager entityManager;
+
+        @MockBean
+        PlatformTransactionManager transactionManager;
+
         // Authorization tests for /api/MenuItemReview/admin/all
 
         @Test
@@ -200,11 +224,33 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(menuItemReviewRepository, times(1)).save(pizzaReview1);
+                MenuItemRatingSummary firstReviewOfItem1 = MenuItemRatingSummary.builder()
+                                .itemId(1L).reviewCount(1).starTotal(2).stars2(1).build();
+                verify(menuItemRatingSummaryRepository, times(1)).upsertDeltaMerge(firstReviewOfItem1);
                 String expectedJson = mapper.writeValueAsString(pizzaReview1);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_cannot_post_a_review_with_stars_out_of_range() throws Exception {
+                for (int stars : new int[] { 0, 7, -3 }) {
+                        // act
+                        MvcResult response = mockMvc.perform(
+                                        post("/api/MenuItemReview/post?itemId=1&reviewerEmail=yl@ucsb.edu&stars=" + stars
+                                                        + "&dateReviewed=2022-04-28T14:35:00&comments=pizzaReview1")
+                                                        .with(csrf()))
+                                        .andExpect(status().isBadRequest()).andReturn();
+
+                        // assert
+                        Map<String, Object> json = responseToJson(response);
+                        assertEquals("MenuItemReview is invalid: stars must be between 1 and 5", json.get("message"));
+                }
+                verify(menuItemReviewRepository, never()).save(any());
+                verify(menuItemRatingSummaryRepository, never()).upsertDeltaMerge(any());
+        }
+
         /* Tests Successful DEL */
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
@@ -220,7 +266,9 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                                 .comments("pizzaReview1")
                                 .build();
 
-                when(menuItemReviewRepository.findById(eq(1L))).thenReturn(Optional.of(pizzaReview1));
+                when(menuItemReviewRepository.findByIdForUpdate(eq(1L))).thenReturn(Optional.of(pizzaReview1));
+                when(menuItemReviewRepository.deleteRow(eq(1L))).thenReturn(1);
+                when(menuItemRatingSummaryRepository.addDelta(any())).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -229,8 +277,10 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(menuItemReviewRepository, times(1)).findById(1L);
-                verify(menuItemReviewRepository, times(1)).delete(any());
+                verify(menuItemReviewRepository, times(1)).deleteRow(1L);
+                verify(menuItemRatingSummaryRepository, times(1)).addDelta(MenuItemRatingSummary.builder()
+                                .itemId(1L).reviewCount(-1).starTotal(-2).stars2(-1).build());
+                verify(menuItemRatingSummaryRepository, never()).save(any());
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("MenuItemReview with id 1 deleted", json.get("message"));
@@ -243,7 +293,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(menuItemReviewRepository.findById(eq(1L))).thenReturn(Optional.empty());
+                when(menuItemReviewRepository.findByIdForUpdate(eq(1L))).thenReturn(Optional.empty());
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -252,7 +302,9 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(menuItemReviewRepository, times(1)).findById(1L);
+                verify(menuItemReviewRepository, times(1)).findByIdForUpdate(1L);
+                verify(menuItemReviewRepository, never()).deleteRow(anyLong());
+                verify(menuItemRatingSummaryRepository, never()).addDelta(any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("MenuItemReview with id 1 not found", json.get("message"));
         }
@@ -264,16 +316,19 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                 // arrange
 
                 LocalDateTime ldt = LocalDateTime.parse("2022-04-28T14:35:00");
-                LocalDateTime newLdt = LocalDateTime.parse("2022-04-28T14:35:01");
-                MenuItemReview pizzaReview1Orig = MenuItemReview.builder()
+                MenuItemReview pizzaReview1 = MenuItemReview.builder()
+                                .id(1L)
                                 .itemId(1)
                                 .reviewerEmail("yl@ucsb.edu")
                                 .stars(2)
                                 .dateReviewed(ldt)
                                 .comments("pizzaReview1")
+                                .version(4L)
                                 .build();
 
+                LocalDateTime newLdt = LocalDateTime.parse("2022-04-28T14:35:01");
                 MenuItemReview pizzaReview1Edited = MenuItemReview.builder()
+                                .id(1L)
                                 .itemId(2)
                                 .reviewerEmail("ml@ucsb.edu")
                                 .stars(5)
@@ -283,7 +338,9 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(pizzaReview1Edited);
 
-                when(menuItemReviewRepository.findById(eq(1L))).thenReturn(Optional.of(pizzaReview1Orig));
+                when(menuItemReviewRepository.findByIdForUpdate(eq(1L))).thenReturn(Optional.of(pizzaReview1));
+                when(menuItemReviewRepository.updateRow(eq(pizzaReview1Edited), eq(4L))).thenReturn(1);
+                when(menuItemRatingSummaryRepository.addDelta(any())).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -295,10 +352,68 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(menuItemReviewRepository, times(1)).findById(1L);
-                verify(menuItemReviewRepository, times(1)).save(pizzaReview1Edited); // should be saved with updated info
+                // the update bumped the version, and the response says so
+                pizzaReview1Edited.setVersion(5L);
+                verify(menuItemReviewRepository, times(1)).updateRow(pizzaReview1Edited, 4L);
+                // the review moved from item 1 (2 stars) to item 2 (5 stars)
+                verify(menuItemRatingSummaryRepository, times(1)).addDelta(MenuItemRatingSummary.builder()
+                                .itemId(1L).reviewCount(-1).starTotal(-2).stars2(-1).build());
+                verify(menuItemRatingSummaryRepository, times(1)).upsertDeltaMerge(MenuItemRatingSummary.builder()
+                                .itemId(2L).reviewCount(1).starTotal(5).stars5(1).build());
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                assertEquals(mapper.writeValueAsString(pizzaReview1Edited), responseString);
+                assertEquals("\"5\"", response.getResponse().getHeader("ETag"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_review_that_changed_since_if_match() throws Exception {
+                // arrange
+
+                MenuItemReview current = MenuItemReview.builder()
+                                .id(1L).itemId(1).reviewerEmail("yl@ucsb.edu").stars(2).comments("pizzaReview1").version(4L).build();
+                MenuItemReview edit = MenuItemReview.builder()
+                                .id(1L).itemId(1).reviewerEmail("yl@ucsb.edu").stars(3)
+                                .dateReviewed(LocalDateTime.parse("2022-04-28T14:35:00")).comments("pizzaReview1").build();
+                when(menuItemReviewRepository.findByIdForUpdate(eq(1L))).thenReturn(Optional.of(current));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/MenuItemReview?id=1")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content(mapper.writeValueAsString(edit))
+                                                .with(csrf()))
+                                .andExpect(status().isPreconditionFailed()).andReturn();
+
+                // assert
+                verify(menuItemReviewRepository, never()).updateRow(any(), any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("MenuItemReview with id 1 does not match If-Match \"3\"", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_review_to_stars_out_of_range() throws Exception {
+                // arrange
+
+                MenuItemReview edit = MenuItemReview.builder()
+                                .itemId(1).reviewerEmail("yl@ucsb.edu").stars(0)
+                                .dateReviewed(LocalDateTime.parse("2022-04-28T14:35:00")).comments("pizzaReview1").build();
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/MenuItemReview?id=1")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content(mapper.writeValueAsString(edit))
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(menuItemReviewRepository, never()).findByIdForUpdate(anyLong());
+                verify(menuItemReviewRepository, never()).updateRow(any(), any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("MenuItemReview is invalid: stars must be between 1 and 5", json.get("message"));
         }
 
         /* Tests PUT where throws error cuz trying to edit a nonexisting review */
@@ -318,7 +433,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(pizzaReview1Edited);
 
-                when(menuItemReviewRepository.findById(eq(1L))).thenReturn(Optional.empty());
+                when(menuItemReviewRepository.findByIdForUpdate(eq(1L))).thenReturn(Optional.empty());
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -330,9 +445,333 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(menuItemReviewRepository, times(1)).findById(1L);
+                verify(menuItemReviewRepository, times(1)).findByIdForUpdate(1L);
+                verify(menuItemReviewRepository, never()).updateRow(any(), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("MenuItemReview with id 1 not found", json.get("message"));
 
         }
+
+        // Tests for keyset pagination (/api/MenuItemReview/page)
+
+        @Test
+        public void logged_out_users_cannot_get_page() throws Exception {
+                mockMvc.perform(get("/api/MenuItemReview/page"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_first_page_and_next_cursor() throws Exception {
+
+                // arrange
+
+                MenuItemReview row1 = MenuItemReview.builder().id(1L).build();
+                MenuItemReview row2 = MenuItemReview.builder().id(2L).build();
+                MenuItemReview row3 = MenuItemReview.builder().id(3L).build();
+
+                when(menuItemReviewRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 3))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(row1, row2, row3)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/MenuItemReview/page?limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(menuItemReviewRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 3)));
+                String expectedJson = mapper.writeValueAsString(Map.of("content", Arrays.asList(row1, row2), "next", 2L));
+                assertEquals(mapper.readTree(expectedJson), mapper.readTree(response.getResponse().getContentAsString()));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_last_page_without_next_cursor() throws Exception {
+
+                // arrange
+
+                MenuItemReview row3 = MenuItemReview.builder().id(3L).build();
+
+                when(menuItemReviewRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), eq(PageRequest.of(0, 3))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(row3)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/MenuItemReview/page?afterId=2&limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(1, ((List<?>) json.get("content")).size());
+                assertEquals(null, json.get("next"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_page_limit_is_capped() throws Exception {
+
+                // act
+                mockMvc.perform(get("/api/MenuItemReview/page?limit=100000"))
+                                .andExpect(status().isOk());
+
+                // assert
+
+                verify(menuItemReviewRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT + 1)));
+        }
+
+        // Tests for streaming export (/api/MenuItemReview/export)
+
+        @Test
+        public void logged_out_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/MenuItemReview/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/MenuItemReview/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_export_all_rows_as_a_json_array() throws Exception {
+
+                // arrange
+
+                MenuItemReview row1 = MenuItemReview.builder().id(1L).build();
+                MenuItemReview row2 = MenuItemReview.builder().id(2L).build();
+
+                when(menuItemReviewRepository.streamAll()).thenReturn(Stream.of(row1, row2));
+
+                // act
+                MvcResult asyncResult = mockMvc.perform(get("/api/MenuItemReview/export"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(asyncResult))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Disposition", "attachment; filename=\"menuitemreview.json\""))
+                                .andReturn();
+
+                // assert
+
+                verify(menuItemReviewRepository, times(1)).streamAll();
+                verify(entityManager, times(1)).detach(row1);
+                verify(entityManager, times(1)).detach(row2);
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(row1, row2));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+
+        // Tests for bulk create (/api/MenuItemReview/bulk)
+
+        @Test
+        public void logged_out_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/MenuItemReview/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content("[]"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/MenuItemReview/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content("[]"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_post_bulk_json_array_and_invalid_rows_are_rejected() throws Exception {
+
+                // arrange
+
+                LocalDateTime ldt = LocalDateTime.parse("2022-01-03T00:00:00");
+                MenuItemReview good1 = MenuItemReview.builder().itemId(1L).reviewerEmail("a@ucsb.edu").stars(5).dateReviewed(ldt).comments("yum").build();
+                MenuItemReview badStars = MenuItemReview.builder().itemId(1L).reviewerEmail("b@ucsb.edu").stars(6).dateReviewed(ldt).comments("wow").build();
+                MenuItemReview noEmail = MenuItemReview.builder().itemId(2L).stars(3).dateReviewed(ldt).build();
+                MenuItemReview good2 = MenuItemReview.builder().id(99L).itemId(2L).reviewerEmail("c@ucsb.edu").stars(1).dateReviewed(ldt).comments("meh").build();
+
+                List<MenuItemReview> saved = new ArrayList<>();
+                when(menuItemReviewRepository.saveAll(anyList())).thenAnswer(invocation -> {
+                        List<MenuItemReview> batch = new ArrayList<>(invocation.getArgument(0));
+                        long id = 10;
+                        for (MenuItemReview review : batch) {
+                                assertEquals(0L, review.getId()); // ids in the request are ignored
+                                review.setId(id++);
+                        }
+                        saved.addAll(batch);
+                        return batch;
+                });
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/MenuItemReview/bulk").with(csrf())
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content(mapper.writeValueAsString(List.of(good1, badStars, noEmail, good2))))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(menuItemReviewRepository, times(1)).saveAll(anyList());
+                assertEquals(2, saved.size());
+                assertEquals("a@ucsb.edu", saved.get(0).getReviewerEmail());
+                assertEquals("c@ucsb.edu", saved.get(1).getReviewerEmail());
+                String expectedJson = mapper.writeValueAsString(new BulkResult(2, 2, List.of(
+                                new BulkRowResult(0, 10L, null),
+                                new BulkRowResult(1, null, "stars must be between 1 and 5"),
+                                new BulkRowResult(2, null, "reviewerEmail is required"),
+                                new BulkRowResult(3, 11L, null))));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_post_bulk_ndjson() throws Exception {
+
+                // arrange
+
+                when(menuItemReviewRepository.saveAll(anyList())).thenAnswer(invocation -> new ArrayList<>(invocation.getArgument(0)));
+                String ndjson = "{\"itemId\":1,\"reviewerEmail\":\"a@ucsb.edu\",\"stars\":4,\"dateReviewed\":\"2022-01-03T00:00:00\"}\n"
+                                + "{\"itemId\":0,\"reviewerEmail\":\"b@ucsb.edu\",\"stars\":4,\"dateReviewed\":\"2022-01-03T00:00:00\"}\n"
+                                + "{\"itemId\":2,\"reviewerEmail\":\"c@ucsb.edu\",\"stars\":2}\n";
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/MenuItemReview/bulk").with(csrf())
+                                                .contentType(MediaType.APPLICATION_NDJSON)
+                                                .content(ndjson))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                String expectedJson = mapper.writeValueAsString(new BulkResult(1, 2, List.of(
+                                new BulkRowResult(0, 0L, null),
+                                new BulkRowResult(1, null, "itemId is required"),
+                                new BulkRowResult(2, null, "dateReviewed is required"))));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+
+        // Tests for rating summaries (/api/MenuItemReview/ratings)
+
+        @Test
+        public void logged_out_users_cannot_get_ratings() throws Exception {
+                mockMvc.perform(get("/api/MenuItemReview/ratings?itemId=1"))
+                                .andExpect(status().is(403));
+                mockMvc.perform(get("/api/MenuItemReview/ratings/top"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_ratings_of_an_item() throws Exception {
+
+                // arrange
+
+                MenuItemRatingSummary summary = MenuItemRatingSummary.builder()
+                                .itemId(1L).reviewCount(3).starTotal(10).stars2(1).stars4(2).build();
+                when(menuItemRatingSummaryRepository.findById(eq(1L))).thenReturn(Optional.of(summary));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/MenuItemReview/ratings?itemId=1"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(3, json.get("reviewCount"));
+                assertEquals(10.0 / 3, json.get("averageStars"));
+                assertEquals(mapper.writeValueAsString(summary), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_empty_ratings_for_an_item_without_reviews() throws Exception {
+
+                // arrange
+
+                when(menuItemRatingSummaryRepository.findById(eq(7L))).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/MenuItemReview/ratings?itemId=7"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(7, json.get("itemId"));
+                assertEquals(0, json.get("reviewCount"));
+                assertEquals(null, json.get("averageStars"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_top_rated_items() throws Exception {
+
+                // arrange
+
+                MenuItemRatingSummary best = MenuItemRatingSummary.builder().itemId(2L).reviewCount(1).starTotal(5).stars5(1).build();
+                MenuItemRatingSummary next = MenuItemRatingSummary.builder().itemId(1L).reviewCount(2).starTotal(7).stars3(1).stars4(1).build();
+                when(menuItemRatingSummaryRepository.findTopRated(eq(1L), eq(PageRequest.of(0, 2)))).thenReturn(List.of(best, next));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/MenuItemReview/ratings/top?limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(menuItemRatingSummaryRepository, times(1)).findTopRated(eq(1L), eq(PageRequest.of(0, 2)));
+                assertEquals(mapper.writeValueAsString(List.of(best, next)), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void bulk_post_counts_the_saved_reviews_in_the_rating_summaries() throws Exception {
+
+                // arrange
+
+                when(menuItemReviewRepository.saveAll(anyList())).thenAnswer(invocation -> new ArrayList<>(invocation.getArgument(0)));
+                String ndjson = "{\"itemId\":1,\"reviewerEmail\":\"a@ucsb.edu\",\"stars\":4,\"dateReviewed\":\"2022-01-03T00:00:00\"}\n"
+                                + "{\"itemId\":1,\"reviewerEmail\":\"b@ucsb.edu\",\"stars\":2,\"dateReviewed\":\"2022-01-03T00:00:00\"}\n"
+                                + "{\"itemId\":3,\"reviewerEmail\":\"c@ucsb.edu\",\"stars\":5,\"dateReviewed\":\"2022-01-03T00:00:00\"}\n";
+
+                // act
+                mockMvc.perform(
+                                post("/api/MenuItemReview/bulk").with(csrf())
+                                                .contentType(MediaType.APPLICATION_NDJSON)
+                                                .content(ndjson))
+                                .andExpect(status().isOk());
+
+                // assert
+                verify(menuItemRatingSummaryRepository, times(1)).upsertDeltaMerge(MenuItemRatingSummary.builder()
+                                .itemId(1L).reviewCount(2).starTotal(6).stars2(1).stars4(1).build());
+                verify(menuItemRatingSummaryRepository, times(1)).upsertDeltaMerge(MenuItemRatingSummary.builder()
+                                .itemId(3L).reviewCount(1).starTotal(5).stars5(1).build());
+        }
+
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_filter_reviews_by_item_and_reviewer() throws Exception {
+
+                // arrange
+                MenuItemReview mine = MenuItemReview.builder().id(1L).itemId(1).reviewerEmail("yl@ucsb.edu").stars(2).build();
+                MenuItemReview theirs = MenuItemReview.builder().id(2L).itemId(1).reviewerEmail("cgaucho@ucsb.edu").stars(4).build();
+                when(menuItemReviewRepository.findAllByItemIdAndReviewerEmail(eq(1L), eq("yl@ucsb.edu"))).thenReturn(List.of(mine));
+                when(menuItemReviewRepository.findAllByItemId(eq(1L))).thenReturn(List.of(mine, theirs));
+                when(menuItemReviewRepository.findAllByReviewerEmail(eq("cgaucho@ucsb.edu"))).thenReturn(List.of(theirs));
+
+                // act
+                MvcResult both = mockMvc.perform(get("/api/MenuItemReview/all?itemId=1&reviewerEmail=yl@ucsb.edu"))
+                                .andExpect(status().isOk()).andReturn();
+                MvcResult byItem = mockMvc.perform(get("/api/MenuItemReview/all?itemId=1"))
+                                .andExpect(status().isOk()).andReturn();
+                MvcResult byReviewer = mockMvc.perform(get("/api/MenuItemReview/all?reviewerEmail=cgaucho@ucsb.edu"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(menuItemReviewRepository, never()).findAll();
+                assertEquals(mapper.writeValueAsString(List.of(mine)), both.getResponse().getContentAsString());
+                assertEquals(mapper.writeValueAsString(List.of(mine, theirs)), byItem.getResponse().getContentAsString());
+                assertEquals(mapper.writeValueAsString(List.of(theirs)), byReviewer.getResponse().getContentAsString());
+        }
 }
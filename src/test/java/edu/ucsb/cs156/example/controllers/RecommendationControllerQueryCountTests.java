@@ -0,0 +1,98 @@
+package edu.ucsb.cs156.example.controllers;
+
+import static edu.ucsb.cs156.example.QueryCountTestCase.QueryBudget.atMost;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import edu.ucsb.cs156.example.QueryCountTestCase;
+import edu.ucsb.cs156.example.entities.Recommendation;
+
+public class RecommendationControllerQueryCountTests extends QueryCountTestCase {
+
+  private static Recommendation recommendation(String requesterEmail, boolean done) {
+    return Recommendation.builder()
+        .requesterEmail(requesterEmail)
+        .professorEmail("phtcon@ucsb.edu")
+        .explanation("grad school")
+        .dateRequested(LocalDateTime.parse("2022-01-03T00:00:00"))
+        .dateNeeded(LocalDateTime.parse("2022-02-03T00:00:00"))
+        .done(done)
+        .build();
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void all_is_one_query() throws Exception {
+    persist(recommendation("a@ucsb.edu", false), recommendation("a@ucsb.edu", true),
+        recommendation("b@ucsb.edu", false));
+
+    perform(get("/api/Recommendation/all"), atMost(1, 3)).andExpect(status().isOk());
+    perform(get("/api/Recommendation/all?requesterEmail=a@ucsb.edu&done=false"), atMost(1, 1))
+        .andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void page_is_one_query_for_at_most_one_row_more_than_the_limit() throws Exception {
+    persist(recommendation("a@ucsb.edu", false), recommendation("b@ucsb.edu", false),
+        recommendation("c@ucsb.edu", false), recommendation("d@ucsb.edu", false));
+
+    perform(get("/api/Recommendation/page?limit=2"), atMost(1, 3)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void get_by_id_is_one_query() throws Exception {
+    Recommendation recommendation = recommendation("a@ucsb.edu", false);
+    persist(recommendation);
+
+    perform(get("/api/Recommendation?id=" + recommendation.getId()), atMost(1, 1)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void writes_are_single_statements() throws Exception {
+    Recommendation recommendation = recommendation("a@ucsb.edu", false);
+    persist(recommendation);
+
+    perform(post("/api/Recommendation/post?requesterEmail=b@ucsb.edu&professorEmail=phtcon@ucsb.edu"
+        + "&explanation=e&dateRequested=2022-01-03T00:00:00&dateNeeded=2022-02-03T00:00:00&done=false")
+        .with(csrf()), atMost(2, 0))
+        .andExpect(status().isOk()); // the insert, and now and then the next block of ids
+    perform(put("/api/Recommendation?id=" + recommendation.getId()).with(csrf())
+        .header(HttpHeaders.IF_MATCH, "\"0\"")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(recommendation("a@ucsb.edu", true))), atMost(1, 0))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+    perform(delete("/api/Recommendation?id=" + recommendation.getId()).with(csrf()), atMost(1, 0))
+        .andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void put_without_if_match_reads_back_the_version_it_wrote() throws Exception {
+    Recommendation recommendation = recommendation("a@ucsb.edu", false);
+    persist(recommendation);
+
+    perform(put("/api/Recommendation?id=" + recommendation.getId()).with(csrf())
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(recommendation("a@ucsb.edu", true))), atMost(2, 0))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+        .andExpect(jsonPath("$.version").value(1)); // the update, then its version, read while the row is still locked
+  }
+}
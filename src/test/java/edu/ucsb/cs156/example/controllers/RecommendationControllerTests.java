@@ -24,16 +24,24 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import java.time.LocalDateTime;
 
 import java.util.Optional;
+import org.springframework.data.domain.PageRequest;
+import java.util.List;
+import edu.ucsb.cs156.example.services.JsonExportService;
+import org.springframework.transaction.PlatformTransactionManager;
+import javax.persistence.EntityManager;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.never;
 
 @WebMvcTest(controllers = RecommendationController.class)
-@Import(TestConfig.class)
+@Import({ TestConfig.class, JsonExportService.class })
 public class RecommendationControllerTests extends ControllerTestCase {
 
         @MockBean
@@ -42,6 +50,12 @@ public class RecommendationControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        EntityManager entityManager;
+
+        @MockBean
+        PlatformTransactionManager transactionManager;
+
         // Authorization tests for /api/recommendation/admin/all
 
         @Test
@@ -216,19 +230,7 @@ public class RecommendationControllerTests extends ControllerTestCase {
         public void admin_can_delete_a_recommendation() throws Exception {
                 // arrange
 
-                LocalDateTime dateRequested = LocalDateTime.parse("2022-04-20T00:00:00");
-                LocalDateTime dateNeeded = LocalDateTime.parse("2022-05-01T00:00:00");
-
-                Recommendation recommendation = Recommendation.builder()
-                    .requesterEmail("cgaucho@ucsb.edu")
-                    .professorEmail("phtcon@ucsb.edu")
-                    .explanation("BS/MS program")
-                    .dateRequested(dateRequested)
-                    .dateNeeded(dateNeeded)
-                    .done(true)
-                    .build();
-
-                when(recommendationRepository.findById(eq(15L))).thenReturn(Optional.of(recommendation));
+                when(recommendationRepository.deleteRow(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -237,8 +239,7 @@ public class RecommendationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(recommendationRepository, times(1)).findById(15L);
-                verify(recommendationRepository, times(1)).delete(any());
+                verify(recommendationRepository, times(1)).deleteRow(15L);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Recommendation with id 15 deleted", json.get("message"));
@@ -250,7 +251,7 @@ public class RecommendationControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(recommendationRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(recommendationRepository.deleteRow(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -259,7 +260,7 @@ public class RecommendationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(recommendationRepository, times(1)).findById(15L);
+                verify(recommendationRepository, times(1)).deleteRow(15L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Recommendation with id 15 not found", json.get("message"));
         }
@@ -274,17 +275,9 @@ public class RecommendationControllerTests extends ControllerTestCase {
                 LocalDateTime dateRequested2 = LocalDateTime.parse("2023-04-20T00:00:00");
                 LocalDateTime dateNeeded2 = LocalDateTime.parse("2023-05-01T00:00:00");
 
-                Recommendation recommendationOrig = Recommendation.builder()
-                    .requesterEmail("cgaucho@ucsb.edu")
-                    .professorEmail("phtcon@ucsb.edu")
-                    .explanation("BS/MS program")
-                    .dateRequested(dateRequested)
-                    .dateNeeded(dateNeeded)
-                    .done(false)
-                    .build();
-
 
                 Recommendation recommendationEdited = Recommendation.builder()
+                    .id(67L)
                     .requesterEmail("jgaucho@ucsb.edu")
                     .professorEmail("phtrichertcon@ucsb.edu")
                     .explanation("PhD CS Stanford")
@@ -295,7 +288,7 @@ public class RecommendationControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(recommendationEdited);
 
-                when(recommendationRepository.findById(eq(67L))).thenReturn(Optional.of(recommendationOrig));
+                when(recommendationRepository.updateRowAndGetVersion(eq(recommendationEdited), isNull())).thenReturn(Optional.of(1L));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -307,10 +300,12 @@ public class RecommendationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(recommendationRepository, times(1)).findById(67L);
-                verify(recommendationRepository, times(1)).save(recommendationEdited); // should be saved with correct user
+                // the update wrote version 1, and the response says so
+                recommendationEdited.setVersion(1L);
+                verify(recommendationRepository, times(1)).updateRowAndGetVersion(recommendationEdited, null);
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                assertEquals(mapper.writeValueAsString(recommendationEdited), responseString);
+                assertEquals("\"1\"", response.getResponse().getHeader("ETag"));
         }
 
         @WithMockUser(roles = { "ADMIN", "USER" })
@@ -332,7 +327,7 @@ public class RecommendationControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(recommendationEdited);
 
-                when(recommendationRepository.findById(eq(67L))).thenReturn(Optional.empty());
+                when(recommendationRepository.updateRowAndGetVersion(any(), any())).thenReturn(Optional.empty());
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -344,9 +339,147 @@ public class RecommendationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(recommendationRepository, times(1)).findById(67L);
+                verify(recommendationRepository, times(1)).updateRowAndGetVersion(any(), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Recommendation with id 67 not found", json.get("message"));
 
         }
+
+        // Tests for keyset pagination (/api/Recommendation/page)
+
+        @Test
+        public void logged_out_users_cannot_get_page() throws Exception {
+                mockMvc.perform(get("/api/Recommendation/page"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_first_page_and_next_cursor() throws Exception {
+
+                // arrange
+
+                Recommendation row1 = Recommendation.builder().id(1L).build();
+                Recommendation row2 = Recommendation.builder().id(2L).build();
+                Recommendation row3 = Recommendation.builder().id(3L).build();
+
+                when(recommendationRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 3))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(row1, row2, row3)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/Recommendation/page?limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(recommendationRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 3)));
+                String expectedJson = mapper.writeValueAsString(Map.of("content", Arrays.asList(row1, row2), "next", 2L));
+                assertEquals(mapper.readTree(expectedJson), mapper.readTree(response.getResponse().getContentAsString()));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_last_page_without_next_cursor() throws Exception {
+
+                // arrange
+
+                Recommendation row3 = Recommendation.builder().id(3L).build();
+
+                when(recommendationRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), eq(PageRequest.of(0, 3))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(row3)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/Recommendation/page?afterId=2&limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(1, ((List<?>) json.get("content")).size());
+                assertEquals(null, json.get("next"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_page_limit_is_capped() throws Exception {
+
+                // act
+                mockMvc.perform(get("/api/Recommendation/page?limit=100000"))
+                                .andExpect(status().isOk());
+
+                // assert
+
+                verify(recommendationRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT + 1)));
+        }
+
+        // Tests for streaming export (/api/Recommendation/export)
+
+        @Test
+        public void logged_out_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/Recommendation/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/Recommendation/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_export_all_rows_as_a_json_array() throws Exception {
+
+                // arrange
+
+                Recommendation row1 = Recommendation.builder().id(1L).build();
+                Recommendation row2 = Recommendation.builder().id(2L).build();
+
+                when(recommendationRepository.streamAll()).thenReturn(Stream.of(row1, row2));
+
+                // act
+                MvcResult asyncResult = mockMvc.perform(get("/api/Recommendation/export"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(asyncResult))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Disposition", "attachment; filename=\"recommendation.json\""))
+                                .andReturn();
+
+                // assert
+
+                verify(recommendationRepository, times(1)).streamAll();
+                verify(entityManager, times(1)).detach(row1);
+                verify(entityManager, times(1)).detach(row2);
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(row1, row2));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_filter_recommendations_by_requester_and_done() throws Exception {
+
+                // arrange
+                Recommendation pending = Recommendation.builder().requesterEmail("cgaucho@ucsb.edu").professorEmail("phtcon@ucsb.edu").done(false).build();
+                Recommendation done = Recommendation.builder().requesterEmail("cgaucho@ucsb.edu").professorEmail("richert@ucsb.edu").done(true).build();
+                when(recommendationRepository.findAllByRequesterEmailAndDone(eq("cgaucho@ucsb.edu"), eq(false))).thenReturn(List.of(pending));
+                when(recommendationRepository.findAllByRequesterEmail(eq("cgaucho@ucsb.edu"))).thenReturn(List.of(pending, done));
+                when(recommendationRepository.findAllByDone(eq(true))).thenReturn(List.of(done));
+
+                // act
+                MvcResult both = mockMvc.perform(get("/api/Recommendation/all?requesterEmail=cgaucho@ucsb.edu&done=false"))
+                                .andExpect(status().isOk()).andReturn();
+                MvcResult byRequester = mockMvc.perform(get("/api/Recommendation/all?requesterEmail=cgaucho@ucsb.edu"))
+                                .andExpect(status().isOk()).andReturn();
+                MvcResult byDone = mockMvc.perform(get("/api/Recommendation/all?done=true"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(recommendationRepository, never()).findAll();
+                assertEquals(mapper.writeValueAsString(List.of(pending)), both.getResponse().getContentAsString());
+                assertEquals(mapper.writeValueAsString(List.of(pending, done)), byRequester.getResponse().getContentAsString());
+                assertEquals(mapper.writeValueAsString(List.of(done)), byDone.getResponse().getContentAsString());
+        }
 }
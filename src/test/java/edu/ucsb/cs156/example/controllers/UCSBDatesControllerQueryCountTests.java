@@ -0,0 +1,94 @@
+package edu.ucsb.cs156.example.controllers;
+
+import static edu.ucsb.cs156.example.QueryCountTestCase.QueryBudget.atMost;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import edu.ucsb.cs156.example.QueryCountTestCase;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+
+public class UCSBDatesControllerQueryCountTests extends QueryCountTestCase {
+
+  private static UCSBDate ucsbDate(String quarterYYYYQ, String name) {
+    return UCSBDate.builder()
+        .quarterYYYYQ(quarterYYYYQ)
+        .name(name)
+        .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+        .build();
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void all_is_one_query_and_then_served_from_the_snapshot() throws Exception {
+    persist(ucsbDate("20221", "a"), ucsbDate("20221", "b"), ucsbDate("20222", "c"));
+
+    perform(get("/api/ucsbdates/all"), atMost(1, 3)).andExpect(status().isOk());
+    perform(get("/api/ucsbdates/all"), atMost(0, 0)).andExpect(status().isOk());
+    perform(get("/api/ucsbdates/all?quarterYYYYQ=20221"), atMost(1, 2)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void page_is_one_query_for_at_most_one_row_more_than_the_limit() throws Exception {
+    persist(ucsbDate("20221", "a"), ucsbDate("20221", "b"), ucsbDate("20221", "c"), ucsbDate("20221", "d"));
+
+    perform(get("/api/ucsbdates/page?limit=2"), atMost(1, 3)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void get_by_id_is_one_query_and_revalidation_is_none() throws Exception {
+    UCSBDate date = ucsbDate("20221", "a");
+    persist(date);
+
+    String etag = perform(get("/api/ucsbdates?id=" + date.getId()), atMost(1, 1))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    perform(get("/api/ucsbdates?id=" + date.getId()).header(HttpHeaders.IF_NONE_MATCH, etag), atMost(0, 0))
+        .andExpect(status().isNotModified());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void writes_are_single_statements() throws Exception {
+    UCSBDate date = ucsbDate("20221", "a");
+    persist(date);
+
+    perform(post("/api/ucsbdates/post?quarterYYYYQ=20222&name=b&localDateTime=2022-04-01T00:00:00").with(csrf()),
+        atMost(2, 0)).andExpect(status().isOk()); // the insert, and now and then the next block of ids
+    perform(put("/api/ucsbdates?id=" + date.getId()).with(csrf())
+        .header(HttpHeaders.IF_MATCH, "\"0\"")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(ucsbDate("20221", "renamed"))), atMost(1, 0))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+    perform(delete("/api/ucsbdates?id=" + date.getId()).with(csrf()), atMost(1, 0)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void put_without_if_match_reads_back_the_version_it_wrote() throws Exception {
+    UCSBDate date = ucsbDate("20221", "a");
+    persist(date);
+
+    perform(put("/api/ucsbdates?id=" + date.getId()).with(csrf())
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(ucsbDate("20221", "renamed"))), atMost(2, 0))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+        .andExpect(jsonPath("$.version").value(1)); // the update, then its version, read while the row is still locked
+  }
+}
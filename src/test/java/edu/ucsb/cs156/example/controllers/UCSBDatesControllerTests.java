@@ -9,39 +9,82 @@ import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import edu.ucsb.cs156.example.events.TableChangedEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 
 import java.time.LocalDateTime;
 
 import java.util.Optional;
+import org.springframework.data.domain.PageRequest;
+import java.util.List;
+import edu.ucsb.cs156.example.services.JsonExportService;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import edu.ucsb.cs156.example.services.JsonSnapshotService;
+import org.springframework.transaction.PlatformTransactionManager;
+import javax.persistence.EntityManager;
+import java.util.stream.Stream;
+import edu.ucsb.cs156.example.services.ImportService;
+import edu.ucsb.cs156.example.models.BulkRowResult;
+import edu.ucsb.cs156.example.models.ImportProgress;
+import org.springframework.mock.web.MockMultipartFile;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.never;
 
 @WebMvcTest(controllers = UCSBDatesController.class)
-@Import(TestConfig.class)
+@Import({ TestConfig.class, JsonExportService.class, ImportService.class, TableVersionService.class, JsonSnapshotService.class })
 public class UCSBDatesControllerTests extends ControllerTestCase {
 
         @MockBean
         UCSBDateRepository ucsbDateRepository;
 
+        @Autowired
+        TableVersionService tableVersions;
+
+        @Autowired
+        ApplicationEventPublisher publisher;
+
+        @BeforeEach
+        void startWithAFreshTableStamp() {
+                // the /all snapshot is shared by every test in this class, so make each one rebuild it
+                publisher.publishEvent(new TableChangedEvent(UCSBDate.class));
+        }
+
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        EntityManager entityManager;
+
+        @MockBean
+        PlatformTransactionManager transactionManager;
+
         // Authorization tests for /api/ucsbdates/admin/all
 
         @Test
@@ -199,15 +242,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
         public void admin_can_delete_a_date() throws Exception {
                 // arrange
 
-                LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
-
-                UCSBDate ucsbDate1 = UCSBDate.builder()
-                                .name("firstDayOfClasses")
-                                .quarterYYYYQ("20222")
-                                .localDateTime(ldt1)
-                                .build();
-
-                when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.of(ucsbDate1));
+                when(ucsbDateRepository.deleteRow(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -216,8 +251,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(15L);
-                verify(ucsbDateRepository, times(1)).delete(any());
+                verify(ucsbDateRepository, times(1)).deleteRow(15L);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 15 deleted", json.get("message"));
@@ -229,7 +263,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(ucsbDateRepository.deleteRow(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -238,7 +272,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(15L);
+                verify(ucsbDateRepository, times(1)).deleteRow(15L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 15 not found", json.get("message"));
         }
@@ -248,16 +282,10 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
         public void admin_can_edit_an_existing_ucsbdate() throws Exception {
                 // arrange
 
-                LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
                 LocalDateTime ldt2 = LocalDateTime.parse("2023-01-03T00:00:00");
 
-                UCSBDate ucsbDateOrig = UCSBDate.builder()
-                                .name("firstDayOfClasses")
-                                .quarterYYYYQ("20222")
-                                .localDateTime(ldt1)
-                                .build();
-
                 UCSBDate ucsbDateEdited = UCSBDate.builder()
+                                .id(67L)
                                 .name("firstDayOfFestivus")
                                 .quarterYYYYQ("20232")
                                 .localDateTime(ldt2)
@@ -265,7 +293,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(ucsbDateEdited);
 
-                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(ucsbDateOrig));
+                when(ucsbDateRepository.updateRowAndGetVersion(eq(ucsbDateEdited), isNull())).thenReturn(Optional.of(1L));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -277,10 +305,12 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(67L);
-                verify(ucsbDateRepository, times(1)).save(ucsbDateEdited); // should be saved with correct user
+                // the update wrote version 1, and the response says so
+                ucsbDateEdited.setVersion(1L);
+                verify(ucsbDateRepository, times(1)).updateRowAndGetVersion(ucsbDateEdited, null);
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                assertEquals(mapper.writeValueAsString(ucsbDateEdited), responseString);
+                assertEquals("\"1\"", response.getResponse().getHeader("ETag"));
         }
 
         @WithMockUser(roles = { "ADMIN", "USER" })
@@ -298,7 +328,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(ucsbEditedDate);
 
-                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.empty());
+                when(ucsbDateRepository.updateRowAndGetVersion(any(), any())).thenReturn(Optional.empty());
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -310,9 +340,358 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(67L);
+                verify(ucsbDateRepository, times(1)).updateRowAndGetVersion(any(), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 67 not found", json.get("message"));
 
         }
+
+        // Tests for keyset pagination (/api/ucsbdates/page)
+
+        @Test
+        public void logged_out_users_cannot_get_page() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/page"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_first_page_and_next_cursor() throws Exception {
+
+                // arrange
+
+                UCSBDate row1 = UCSBDate.builder().id(1L).build();
+                UCSBDate row2 = UCSBDate.builder().id(2L).build();
+                UCSBDate row3 = UCSBDate.builder().id(3L).build();
+
+                when(ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 3))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(row1, row2, row3)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/page?limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 3)));
+                String expectedJson = mapper.writeValueAsString(Map.of("content", Arrays.asList(row1, row2), "next", 2L));
+                assertEquals(mapper.readTree(expectedJson), mapper.readTree(response.getResponse().getContentAsString()));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_last_page_without_next_cursor() throws Exception {
+
+                // arrange
+
+                UCSBDate row3 = UCSBDate.builder().id(3L).build();
+
+                when(ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), eq(PageRequest.of(0, 3))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(row3)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/page?afterId=2&limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(1, ((List<?>) json.get("content")).size());
+                assertEquals(null, json.get("next"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_page_limit_is_capped() throws Exception {
+
+                // act
+                mockMvc.perform(get("/api/ucsbdates/page?limit=100000"))
+                                .andExpect(status().isOk());
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT + 1)));
+        }
+
+        // Tests for streaming export (/api/ucsbdates/export)
+
+        @Test
+        public void logged_out_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_export_all_rows_as_a_json_array() throws Exception {
+
+                // arrange
+
+                UCSBDate row1 = UCSBDate.builder().id(1L).build();
+                UCSBDate row2 = UCSBDate.builder().id(2L).build();
+
+                when(ucsbDateRepository.streamAll()).thenReturn(Stream.of(row1, row2));
+
+                // act
+                MvcResult asyncResult = mockMvc.perform(get("/api/ucsbdates/export"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(asyncResult))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Disposition", "attachment; filename=\"ucsbdates.json\""))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDateRepository, times(1)).streamAll();
+                verify(entityManager, times(1)).detach(row1);
+                verify(entityManager, times(1)).detach(row2);
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(row1, row2));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+
+        // Tests for import (/api/ucsbdates/import)
+
+        private MockMultipartFile datesCsv = new MockMultipartFile("file", "dates.csv", "text/csv",
+                        ("quarterYYYYQ,name,localDateTime\n"
+                                        + "20222,noon on January 2,2022-01-02T12:00:00\n"
+                                        + "20221,firstDayOfClasses,2022-01-03T00:00:00\n"
+                                        + ",no quarter,2022-01-04T00:00:00\n").getBytes());
+
+        @Test
+        public void logged_out_users_cannot_import() throws Exception {
+                mockMvc.perform(multipart("/api/ucsbdates/import").file(datesCsv).with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_import() throws Exception {
+                mockMvc.perform(multipart("/api/ucsbdates/import").file(datesCsv).with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_import_csv_and_existing_dates_are_updated() throws Exception {
+
+                // arrange
+
+                UCSBDate existing = UCSBDate.builder()
+                                .id(5L)
+                                .quarterYYYYQ("20221")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2021-12-31T00:00:00"))
+                                .build();
+
+                when(ucsbDateRepository.findAllByQuarterYYYYQIn(anyCollection())).thenReturn(List.of(existing));
+
+                // act
+                MvcResult asyncResult = mockMvc.perform(multipart("/api/ucsbdates/import").file(datesCsv).with(csrf()))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(asyncResult))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                UCSBDate inserted = UCSBDate.builder()
+                                .quarterYYYYQ("20222")
+                                .name("noon on January 2")
+                                .localDateTime(LocalDateTime.parse("2022-01-02T12:00:00"))
+                                .build();
+                verify(entityManager, times(1)).persist(inserted);
+                assertEquals(LocalDateTime.parse("2022-01-03T00:00:00"), existing.getLocalDateTime());
+                String expectedJson = mapper.writeValueAsString(new ImportProgress(3, 1, 1, 1, true,
+                                List.of(new BulkRowResult(2, null, "quarterYYYYQ is required")))) + "\n";
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_filter_dates_by_quarter() throws Exception {
+
+                // arrange
+                UCSBDate date = UCSBDate.builder().quarterYYYYQ("20222").name("firstDayOfClasses").localDateTime(LocalDateTime.parse("2022-04-03T00:00:00")).build();
+                when(ucsbDateRepository.findAllByQuarterYYYYQ(eq("20222"))).thenReturn(List.of(date));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all?quarterYYYYQ=20222"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, never()).findAll();
+                assertEquals(mapper.writeValueAsString(List.of(date)), response.getResponse().getContentAsString());
+        }
+
+
+        // Tests for ETags (GET by id) and If-Match (PUT)
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_is_not_modified_until_the_table_changes() throws Exception {
+
+                // arrange
+                UCSBDate ucsbDate = UCSBDate.builder().id(7L).quarterYYYYQ("20222").name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-04-03T00:00:00")).version(3L).build();
+                when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.of(ucsbDate));
+                when(ucsbDateRepository.deleteRow(eq(8L))).thenReturn(1);
+                long stamp = tableVersions.stamp(UCSBDate.class);
+                long lastModified = settledLastModified();
+
+                // act
+                MvcResult fresh = mockMvc.perform(get("/api/ucsbdates?id=7"))
+                                .andExpect(status().isOk()).andReturn();
+                String etag = fresh.getResponse().getHeader("ETag");
+                MvcResult unchanged = mockMvc.perform(get("/api/ucsbdates?id=7").header("If-None-Match", etag))
+                                .andExpect(status().isNotModified()).andReturn();
+                mockMvc.perform(delete("/api/ucsbdates?id=8").with(csrf()).with(user("admin").roles("ADMIN", "USER")))
+                                .andExpect(status().isOk());
+                mockMvc.perform(get("/api/ucsbdates?id=7").header("If-None-Match", etag))
+                                .andExpect(status().isOk());
+
+                // assert
+                assertEquals("\"3.%d\"".formatted(stamp), etag);
+                assertEquals("no-cache, private", fresh.getResponse().getHeader("Cache-Control"));
+                assertEquals(lastModified, fresh.getResponse().getDateHeader("Last-Modified"));
+                assertEquals(mapper.writeValueAsString(ucsbDate), fresh.getResponse().getContentAsString());
+                assertEquals(etag, unchanged.getResponse().getHeader("ETag"));
+                assertEquals("", unchanged.getResponse().getContentAsString());
+                verify(ucsbDateRepository, times(2)).findById(7L);
+                assertTrue(tableVersions.stamp(UCSBDate.class) > stamp);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_dates_honor_if_modified_since_without_a_query() throws Exception {
+
+                // arrange
+                long lastModified = settledLastModified();
+                HttpHeaders since = new HttpHeaders();
+                since.setIfModifiedSince(lastModified);
+
+                // act
+                MvcResult unchanged = mockMvc.perform(get("/api/ucsbdates/all?quarterYYYYQ=20222").headers(since))
+                                .andExpect(status().isNotModified()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, never()).findAllByQuarterYYYYQ(any());
+                assertEquals(lastModified, unchanged.getResponse().getDateHeader("Last-Modified"));
+        }
+
+        /** The dates table's Last-Modified, waiting out the second of its last write if need be. */
+        private long settledLastModified() throws InterruptedException {
+                long lastModified;
+                while ((lastModified = tableVersions.lastModified(UCSBDate.class)) < 0) {
+                        Thread.sleep(50);
+                }
+                return lastModified;
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_a_date_with_a_current_if_match() throws Exception {
+
+                // arrange
+                UCSBDate edited = UCSBDate.builder().id(7L).quarterYYYYQ("20222").name("lastDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-06-03T00:00:00")).build();
+                when(ucsbDateRepository.updateRowAndGetVersion(eq(edited), eq(3L))).thenReturn(Optional.of(4L));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdates?id=7")
+                                                .header("If-Match", "W/\"3.1650000000\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                edited.setVersion(4L);
+                verify(ucsbDateRepository, times(1)).updateRowAndGetVersion(edited, 3L);
+                assertEquals("\"4\"", response.getResponse().getHeader("ETag"));
+                assertEquals(mapper.writeValueAsString(edited), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_edit_a_date_that_changed_since_if_match() throws Exception {
+
+                // arrange
+                UCSBDate edited = UCSBDate.builder().id(7L).quarterYYYYQ("20222").name("lastDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-06-03T00:00:00")).build();
+                when(ucsbDateRepository.updateRowAndGetVersion(any(), eq(2L))).thenReturn(Optional.empty());
+                when(ucsbDateRepository.existsById(eq(7L))).thenReturn(true);
+
+                // act
+                MvcResult stale = mockMvc.perform(
+                                put("/api/ucsbdates?id=7")
+                                                .header("If-Match", "\"2\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isPreconditionFailed()).andReturn();
+                mockMvc.perform(
+                                put("/api/ucsbdates?id=7")
+                                                .header("If-Match", "\"not-one-of-ours\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .content(mapper.writeValueAsString(edited))
+                                                .with(csrf()))
+                                .andExpect(status().isPreconditionFailed());
+
+                // assert
+                verify(ucsbDateRepository, times(1)).updateRowAndGetVersion(any(), any());
+                Map<String, Object> json = responseToJson(stale);
+                assertEquals("EntityPreconditionFailedException", json.get("type"));
+                assertEquals("UCSBDate with id 7 does not match If-Match \"2\"", json.get("message"));
+        }
+
+        @Nested
+        @TestPropertySource(properties = "app.conditionalGet.enabled=false")
+        class WithConditionalGetTurnedOff {
+
+                // from this class's own context; the outer class's fields belong to the one with it turned on
+                @Autowired
+                MockMvc mockMvc;
+
+                @Autowired
+                UCSBDateRepository ucsbDateRepository;
+
+                @WithMockUser(roles = { "USER" })
+                @Test
+                public void every_get_reads_the_database() throws Exception {
+
+                        // arrange
+                        UCSBDate ucsbDate = UCSBDate.builder().id(7L).quarterYYYYQ("20222").name("firstDayOfClasses")
+                                        .localDateTime(LocalDateTime.parse("2022-04-03T00:00:00")).version(3L).build();
+                        when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.of(ucsbDate));
+                        when(ucsbDateRepository.findAll()).thenReturn(List.of(ucsbDate));
+                        HttpHeaders since = new HttpHeaders();
+                        since.setIfModifiedSince(System.currentTimeMillis());
+
+                        // act
+                        MvcResult byId = mockMvc.perform(get("/api/ucsbdates?id=7").header("If-None-Match", "\"3.-1\""))
+                                        .andExpect(status().isOk()).andReturn();
+                        mockMvc.perform(get("/api/ucsbdates/all").headers(since))
+                                        .andExpect(status().isOk());
+                        MvcResult all = mockMvc.perform(get("/api/ucsbdates/all").headers(since))
+                                        .andExpect(status().isOk()).andReturn();
+
+                        // assert
+                        assertEquals("\"3\"", byId.getResponse().getHeader("ETag"));
+                        assertEquals(null, byId.getResponse().getHeader("Last-Modified"));
+                        assertEquals(null, all.getResponse().getHeader("ETag"));
+                        assertEquals(mapper.writeValueAsString(List.of(ucsbDate)), all.getResponse().getContentAsString());
+                        verify(ucsbDateRepository, times(2)).findAll();
+                }
+        }
 }
@@ -0,0 +1,91 @@
+package edu.ucsb.cs156.example.controllers;
+
+import static edu.ucsb.cs156.example.QueryCountTestCase.QueryBudget.atMost;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import edu.ucsb.cs156.example.QueryCountTestCase;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+
+public class UCSBDiningCommonsControllerQueryCountTests extends QueryCountTestCase {
+
+  private static UCSBDiningCommons commons(String code) {
+    return UCSBDiningCommons.builder()
+        .code(code)
+        .name(code)
+        .hasSackMeal(false)
+        .hasTakeOutMeal(false)
+        .hasDiningCam(true)
+        .latitude(34.41)
+        .longitude(-119.85)
+        .build();
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void all_is_one_query_and_then_served_from_the_snapshot() throws Exception {
+    persist(commons("carrillo"), commons("ortega"), commons("portola"));
+
+    perform(get("/api/ucsbdiningcommons/all"), atMost(1, 3)).andExpect(status().isOk());
+    perform(get("/api/ucsbdiningcommons/all"), atMost(0, 0)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void page_is_one_query_for_at_most_one_row_more_than_the_limit() throws Exception {
+    persist(commons("a"), commons("b"), commons("c"), commons("d"));
+
+    perform(get("/api/ucsbdiningcommons/page?limit=2"), atMost(1, 3)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void get_by_id_is_one_query_and_then_served_from_the_cache() throws Exception {
+    persist(commons("ortega"));
+
+    perform(get("/api/ucsbdiningcommons?code=ortega"), atMost(1, 1)).andExpect(status().isOk());
+    perform(get("/api/ucsbdiningcommons?code=ortega"), atMost(0, 0)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void writes_are_single_statements() throws Exception {
+    persist(commons("ortega"));
+
+    // save() of an assigned id checks whether the row exists first
+    perform(post("/api/ucsbdiningcommons/post?code=portola&name=Portola&hasSackMeal=true&hasTakeOutMeal=true"
+        + "&hasDiningCam=true&latitude=34.41&longitude=-119.86").with(csrf()), atMost(2, 0))
+        .andExpect(status().isOk());
+    perform(put("/api/ucsbdiningcommons?code=ortega").with(csrf())
+        .header(HttpHeaders.IF_MATCH, "\"0\"")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(commons("ortega"))), atMost(1, 0))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+    perform(delete("/api/ucsbdiningcommons?code=ortega").with(csrf()), atMost(1, 0)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void put_without_if_match_reads_back_the_version_it_wrote() throws Exception {
+    persist(commons("ortega"));
+
+    perform(put("/api/ucsbdiningcommons?code=ortega").with(csrf())
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(commons("ortega"))), atMost(2, 0))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+        .andExpect(jsonPath("$.version").value(1)); // the update, then its version, read while the row is still locked
+  }
+}
@@ -10,6 +10,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import edu.ucsb.cs156.example.events.TableChangedEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.junit.jupiter.api.BeforeEach;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
@@ -22,24 +25,54 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 
 import java.util.Optional;
+import org.springframework.data.domain.PageRequest;
+import java.util.List;
+import edu.ucsb.cs156.example.services.JsonExportService;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import edu.ucsb.cs156.example.services.JsonSnapshotService;
+import org.springframework.transaction.PlatformTransactionManager;
+import javax.persistence.EntityManager;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Autowired;
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @WebMvcTest(controllers = UCSBDiningCommonsController.class)
-@Import(TestConfig.class)
+@Import({ TestConfig.class, JsonExportService.class, TableVersionService.class, JsonSnapshotService.class })
 public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
         @MockBean
         UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
 
+        @Autowired
+        TableVersionService tableVersions;
+
+        @Autowired
+        ApplicationEventPublisher publisher;
+
+        @BeforeEach
+        void startWithAFreshTableStamp() {
+                // the /all snapshot is shared by every test in this class, so make each one rebuild it
+                publisher.publishEvent(new TableChangedEvent(UCSBDiningCommons.class));
+        }
+
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        EntityManager entityManager;
+
+        @MockBean
+        PlatformTransactionManager transactionManager;
+
         // Authorization tests for /api/ucsbdiningcommons/admin/all
 
         @Test
@@ -217,7 +250,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .longitude(-119.867427)
                                 .build();
 
-                when(ucsbDiningCommonsRepository.findById(eq("portola"))).thenReturn(Optional.of(portola));
+                when(ucsbDiningCommonsRepository.deleteRow(eq("portola"))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -226,8 +259,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("portola");
-                verify(ucsbDiningCommonsRepository, times(1)).delete(any());
+                verify(ucsbDiningCommonsRepository, times(1)).deleteRow("portola");
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id portola deleted", json.get("message"));
@@ -239,7 +271,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbDiningCommonsRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsRepository.deleteRow(eq("munger-hall"))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -248,7 +280,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("munger-hall");
+                verify(ucsbDiningCommonsRepository, times(1)).deleteRow("munger-hall");
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
         }
@@ -258,16 +290,6 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
         public void admin_can_edit_an_existing_commons() throws Exception {
                 // arrange
 
-                UCSBDiningCommons carrilloOrig = UCSBDiningCommons.builder()
-                                .name("Carrillo")
-                                .code("carrillo")
-                                .hasSackMeal(false)
-                                .hasTakeOutMeal(false)
-                                .hasDiningCam(true)
-                                .latitude(34.409953)
-                                .longitude(-119.85277)
-                                .build();
-
                 UCSBDiningCommons carrilloEdited = UCSBDiningCommons.builder()
                                 .name("Carrillo Dining Hall")
                                 .code("carrillo")
@@ -280,7 +302,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(carrilloEdited);
 
-                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(carrilloOrig));
+                when(ucsbDiningCommonsRepository.updateRowAndGetVersion(eq(carrilloEdited), isNull())).thenReturn(Optional.of(1L));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -292,10 +314,12 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("carrillo");
-                verify(ucsbDiningCommonsRepository, times(1)).save(carrilloEdited); // should be saved with updated info
+                // the update wrote version 1, and the response says so
+                carrilloEdited.setVersion(1L);
+                verify(ucsbDiningCommonsRepository, times(1)).updateRowAndGetVersion(carrilloEdited, null);
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                assertEquals(mapper.writeValueAsString(carrilloEdited), responseString);
+                assertEquals("\"1\"", response.getResponse().getHeader("ETag"));
         }
 
         @WithMockUser(roles = { "ADMIN", "USER" })
@@ -315,7 +339,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(editedCommons);
 
-                when(ucsbDiningCommonsRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsRepository.updateRowAndGetVersion(any(), any())).thenReturn(Optional.empty());
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -327,9 +351,172 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("munger-hall");
+                verify(ucsbDiningCommonsRepository, times(1)).updateRowAndGetVersion(any(), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
 
         }
+
+        // Tests for keyset pagination (/api/ucsbdiningcommons/page)
+
+        @Test
+        public void logged_out_users_cannot_get_page() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/page"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_first_page_and_next_cursor() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons row1 = UCSBDiningCommons.builder().code("a").build();
+                UCSBDiningCommons row2 = UCSBDiningCommons.builder().code("b").build();
+                UCSBDiningCommons row3 = UCSBDiningCommons.builder().code("c").build();
+
+                when(ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(eq(""), eq(PageRequest.of(0, 3))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(row1, row2, row3)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/page?limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).findByCodeGreaterThanOrderByCodeAsc(eq(""), eq(PageRequest.of(0, 3)));
+                String expectedJson = mapper.writeValueAsString(Map.of("content", Arrays.asList(row1, row2), "next", "b"));
+                assertEquals(mapper.readTree(expectedJson), mapper.readTree(response.getResponse().getContentAsString()));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_last_page_without_next_cursor() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons row3 = UCSBDiningCommons.builder().code("c").build();
+
+                when(ucsbDiningCommonsRepository.findByCodeGreaterThanOrderByCodeAsc(eq("b"), eq(PageRequest.of(0, 3))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(row3)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/page?afterId=b&limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(1, ((List<?>) json.get("content")).size());
+                assertEquals(null, json.get("next"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_page_limit_is_capped() throws Exception {
+
+                // act
+                mockMvc.perform(get("/api/ucsbdiningcommons/page?limit=100000"))
+                                .andExpect(status().isOk());
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).findByCodeGreaterThanOrderByCodeAsc(eq(""), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT + 1)));
+        }
+
+        // Tests for streaming export (/api/ucsbdiningcommons/export)
+
+        @Test
+        public void logged_out_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_export_all_rows_as_a_json_array() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommons row1 = UCSBDiningCommons.builder().code("ortega").build();
+                UCSBDiningCommons row2 = UCSBDiningCommons.builder().code("portola").build();
+
+                when(ucsbDiningCommonsRepository.streamAll()).thenReturn(Stream.of(row1, row2));
+
+                // act
+                MvcResult asyncResult = mockMvc.perform(get("/api/ucsbdiningcommons/export"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(asyncResult))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Disposition", "attachment; filename=\"ucsbdiningcommons.json\""))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsRepository, times(1)).streamAll();
+                verify(entityManager, times(1)).detach(row1);
+                verify(entityManager, times(1)).detach(row2);
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(row1, row2));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_commons_by_code_is_not_modified_without_a_query() throws Exception {
+
+                // arrange
+                long stamp = tableVersions.stamp(UCSBDiningCommons.class);
+
+                // act
+                MvcResult unchanged = mockMvc.perform(get("/api/ucsbdiningcommons?code=ortega")
+                                .header("If-None-Match", "W/\"2.%d\"".formatted(stamp)))
+                                .andExpect(status().isNotModified()).andReturn();
+                mockMvc.perform(get("/api/ucsbdiningcommons?code=ortega")
+                                .header("If-None-Match", "\"2.%d\"".formatted(stamp - 1)))
+                                .andExpect(status().isNotFound());
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).findById("ortega");
+                assertEquals("W/\"2.%d\"".formatted(stamp), unchanged.getResponse().getHeader("ETag"));
+                assertEquals("no-cache, private", unchanged.getResponse().getHeader("Cache-Control"));
+        }
+
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_commons_are_served_from_one_snapshot_gzipped_when_accepted() throws Exception {
+
+                // arrange
+                UCSBDiningCommons ortega = UCSBDiningCommons.builder().code("ortega").name("Ortega")
+                                .hasSackMeal(true).hasTakeOutMeal(true).hasDiningCam(true)
+                                .latitude(34.410987).longitude(-119.84709).build();
+                when(ucsbDiningCommonsRepository.findAll()).thenReturn(List.of(ortega));
+
+                // act
+                MvcResult gzipped = mockMvc.perform(get("/api/ucsbdiningcommons/all").header("Accept-Encoding", "gzip, deflate"))
+                                .andExpect(status().isOk()).andReturn();
+                MvcResult plain = mockMvc.perform(get("/api/ucsbdiningcommons/all").header("Accept-Encoding", "gzip;q=0"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).findAll();
+                String expectedJson = mapper.writeValueAsString(List.of(ortega));
+                assertEquals("gzip", gzipped.getResponse().getHeader("Content-Encoding"));
+                assertEquals("Accept-Encoding", gzipped.getResponse().getHeader("Vary"));
+                try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getResponse().getContentAsByteArray()))) {
+                        assertEquals(expectedJson, new String(in.readAllBytes()));
+                }
+                assertEquals(null, plain.getResponse().getHeader("Content-Encoding"));
+                assertEquals(expectedJson, plain.getResponse().getContentAsString());
+                assertEquals(gzipped.getResponse().getHeader("ETag"), plain.getResponse().getHeader("ETag"));
+        }
 }
@@ -0,0 +1,103 @@
+package edu.ucsb.cs156.example.controllers;
+
+import static edu.ucsb.cs156.example.QueryCountTestCase.QueryBudget.atMost;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import edu.ucsb.cs156.example.QueryCountTestCase;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+
+public class UCSBDiningCommonsMenuItemControllerQueryCountTests extends QueryCountTestCase {
+
+  private static UCSBDiningCommonsMenuItem item(String diningCommonsCode, String name) {
+    return UCSBDiningCommonsMenuItem.builder()
+        .diningCommonsCode(diningCommonsCode)
+        .name(name)
+        .station("Entrees")
+        .build();
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void all_is_one_query() throws Exception {
+    persist(item("ortega", "a"), item("ortega", "b"), item("portola", "c"));
+
+    perform(get("/api/UCSBDiningCommonsMenuItem/all"), atMost(1, 3)).andExpect(status().isOk());
+    perform(get("/api/UCSBDiningCommonsMenuItem/all?diningCommonsCode=ortega"), atMost(1, 2))
+        .andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void page_is_one_query_for_at_most_one_row_more_than_the_limit() throws Exception {
+    persist(item("ortega", "a"), item("ortega", "b"), item("ortega", "c"), item("ortega", "d"));
+
+    perform(get("/api/UCSBDiningCommonsMenuItem/page?limit=2"), atMost(1, 3)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void get_by_id_is_one_query_and_then_served_from_the_cache() throws Exception {
+    UCSBDiningCommonsMenuItem item = item("ortega", "a");
+    persist(item);
+
+    perform(get("/api/UCSBDiningCommonsMenuItem?id=" + item.getId()), atMost(1, 1)).andExpect(status().isOk());
+    perform(get("/api/UCSBDiningCommonsMenuItem?id=" + item.getId()), atMost(0, 0)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void bulk_post_inserts_in_jdbc_batches() throws Exception {
+    String items = mapper.writeValueAsString(java.util.List.of(item("ortega", "a"), item("ortega", "b"),
+        item("ortega", "c"), item("portola", "d"), item("portola", "e")));
+
+    // one batched insert, and now and then the next block of ids
+    perform(post("/api/UCSBDiningCommonsMenuItem/bulk").with(csrf())
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(items), atMost(2, 0))
+        .andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void writes_are_single_statements() throws Exception {
+    UCSBDiningCommonsMenuItem item = item("ortega", "a");
+    persist(item);
+
+    perform(post("/api/UCSBDiningCommonsMenuItem/post?diningCommonsCode=ortega&name=b&station=Grill").with(csrf()),
+        atMost(2, 0)).andExpect(status().isOk()); // the insert, and now and then the next block of ids
+    perform(put("/api/UCSBDiningCommonsMenuItem?id=" + item.getId()).with(csrf())
+        .header(HttpHeaders.IF_MATCH, "\"0\"")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(item("ortega", "renamed"))), atMost(1, 0))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+    perform(delete("/api/UCSBDiningCommonsMenuItem?id=" + item.getId()).with(csrf()), atMost(1, 0))
+        .andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void put_without_if_match_reads_back_the_version_it_wrote() throws Exception {
+    UCSBDiningCommonsMenuItem item = item("ortega", "a");
+    persist(item);
+
+    perform(put("/api/UCSBDiningCommonsMenuItem?id=" + item.getId()).with(csrf())
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(item("ortega", "renamed"))), atMost(2, 0))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+        .andExpect(jsonPath("$.version").value(1)); // the update, then its version, read while the row is still locked
+  }
+}
@@ -22,16 +22,28 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 
 import java.util.Optional;
+import org.springframework.data.domain.PageRequest;
+import java.util.List;
+import edu.ucsb.cs156.example.services.JsonExportService;
+import org.springframework.transaction.PlatformTransactionManager;
+import javax.persistence.EntityManager;
+import java.util.stream.Stream;
+import edu.ucsb.cs156.example.services.BulkSaveService;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.models.BulkRowResult;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
 
 @WebMvcTest(controllers = UCSBDiningCommonsMenuItemController.class)
-@Import(TestConfig.class)
+@Import({ TestConfig.class, JsonExportService.class, BulkSaveService.class })
 public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase {
 
         @MockBean
@@ -40,6 +52,12 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        EntityManager entityManager;
+
+        @MockBean
+        PlatformTransactionManager transactionManager;
+
         // Authorization tests for /api/UCSBDiningCommonsMenuItem/admin/all
 
         @Test
@@ -186,13 +204,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
         public void admin_can_delete_a_menuitem() throws Exception {
                 // arrange
 
-                UCSBDiningCommonsMenuItem noodles = UCSBDiningCommonsMenuItem.builder()
-                            .name("Dragon Noodles")
-                            .diningCommonsCode("Carrillo")
-                            .station("Euro")
-                            .build();
-
-                when(ucsbDiningCommonsMenuItemRepository.findById(eq(1L))).thenReturn(Optional.of(noodles));
+                when(ucsbDiningCommonsMenuItemRepository.deleteRow(eq(1L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -201,8 +213,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(1L);
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).delete(any());
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).deleteRow(1L);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommonsMenuItem with the id of 1 is deleted", json.get("message"));
@@ -213,7 +224,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                         throws Exception {
                 // arrange
 
-                when(ucsbDiningCommonsMenuItemRepository.findById(eq(1L))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsMenuItemRepository.deleteRow(eq(1L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -222,7 +233,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(1L);
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).deleteRow(1L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommonsMenuItem with id 1 not found", json.get("message"));
         }
@@ -231,13 +242,8 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
         public void admin_can_edit_an_existing_menuitem() throws Exception {
                 // arrange
 
-                UCSBDiningCommonsMenuItem noodles_orig = UCSBDiningCommonsMenuItem.builder()
-                    .name("Dragon Noodles")
-                    .diningCommonsCode("Carrillo")
-                    .station("Euro")
-                    .build();
-
                 UCSBDiningCommonsMenuItem noodles_edit = UCSBDiningCommonsMenuItem.builder()
+                    .id(1L)
                     .name("Star Noodles")
                     .diningCommonsCode("DLG")
                     .station("Blue Plate")
@@ -245,7 +251,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
 
                 String requestBody = mapper.writeValueAsString(noodles_edit);
 
-                when(ucsbDiningCommonsMenuItemRepository.findById(eq(1L))).thenReturn(Optional.of(noodles_orig));
+                when(ucsbDiningCommonsMenuItemRepository.updateRowAndGetVersion(eq(noodles_edit), isNull())).thenReturn(Optional.of(1L));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -257,10 +263,12 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(1L);
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).save(noodles_edit); // should be saved with updated info
+                // the update wrote version 1, and the response says so
+                noodles_edit.setVersion(1L);
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).updateRowAndGetVersion(noodles_edit, null);
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                assertEquals(mapper.writeValueAsString(noodles_edit), responseString);
+                assertEquals("\"1\"", response.getResponse().getHeader("ETag"));
         }
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
@@ -275,7 +283,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
 
                 String requestBody = mapper.writeValueAsString(editedNoodles);
 
-                when(ucsbDiningCommonsMenuItemRepository.findById(eq(1L))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsMenuItemRepository.updateRowAndGetVersion(any(), any())).thenReturn(Optional.empty());
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -287,11 +295,195 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(1L);
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).updateRowAndGetVersion(any(), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommonsMenuItem with id 1 not found", json.get("message"));
 
         }
-}
+
+        // Tests for keyset pagination (/api/UCSBDiningCommonsMenuItem/page)
+
+        @Test
+        public void logged_out_users_cannot_get_page() throws Exception {
+                mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/page"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_first_page_and_next_cursor() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommonsMenuItem row1 = UCSBDiningCommonsMenuItem.builder().id(1L).build();
+                UCSBDiningCommonsMenuItem row2 = UCSBDiningCommonsMenuItem.builder().id(2L).build();
+                UCSBDiningCommonsMenuItem row3 = UCSBDiningCommonsMenuItem.builder().id(3L).build();
+
+                when(ucsbDiningCommonsMenuItemRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 3))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(row1, row2, row3)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/page?limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 3)));
+                String expectedJson = mapper.writeValueAsString(Map.of("content", Arrays.asList(row1, row2), "next", 2L));
+                assertEquals(mapper.readTree(expectedJson), mapper.readTree(response.getResponse().getContentAsString()));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_last_page_without_next_cursor() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommonsMenuItem row3 = UCSBDiningCommonsMenuItem.builder().id(3L).build();
+
+                when(ucsbDiningCommonsMenuItemRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), eq(PageRequest.of(0, 3))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(row3)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/page?afterId=2&limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(1, ((List<?>) json.get("content")).size());
+                assertEquals(null, json.get("next"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_page_limit_is_capped() throws Exception {
+
+                // act
+                mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/page?limit=100000"))
+                                .andExpect(status().isOk());
+
+                // assert
+
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT + 1)));
+        }
+
+        // Tests for streaming export (/api/UCSBDiningCommonsMenuItem/export)
+
+        @Test
+        public void logged_out_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_export_all_rows_as_a_json_array() throws Exception {
+
+                // arrange
+
+                UCSBDiningCommonsMenuItem row1 = UCSBDiningCommonsMenuItem.builder().id(1L).build();
+                UCSBDiningCommonsMenuItem row2 = UCSBDiningCommonsMenuItem.builder().id(2L).build();
+
+                when(ucsbDiningCommonsMenuItemRepository.streamAll()).thenReturn(Stream.of(row1, row2));
+
+                // act
+                MvcResult asyncResult = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/export"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(asyncResult))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Disposition", "attachment; filename=\"ucsbmenuitems.json\""))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).streamAll();
+                verify(entityManager, times(1)).detach(row1);
+                verify(entityManager, times(1)).detach(row2);
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(row1, row2));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+
+        // Tests for bulk create (/api/UCSBDiningCommonsMenuItem/bulk)
+
+        @Test
+        public void logged_out_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/UCSBDiningCommonsMenuItem/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content("[]"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_post_bulk() throws Exception {
+                mockMvc.perform(post("/api/UCSBDiningCommonsMenuItem/bulk").with(csrf())
+                                .contentType(MediaType.APPLICATION_JSON).content("[]"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_post_bulk_and_invalid_rows_are_rejected() throws Exception {
+
+                // arrange
+
+                when(ucsbDiningCommonsMenuItemRepository.saveAll(anyList())).thenAnswer(invocation -> {
+                        List<UCSBDiningCommonsMenuItem> batch = new ArrayList<>(invocation.getArgument(0));
+                        long id = 1;
+                        for (UCSBDiningCommonsMenuItem menuitem : batch) {
+                                menuitem.setId(id++);
+                        }
+                        return batch;
+                });
+                String ndjson = "{\"diningCommonsCode\":\"ortega\",\"name\":\"Pizza\",\"station\":\"Entrees\"}\n"
+                                + "{\"diningCommonsCode\":\"\",\"name\":\"Pizza\",\"station\":\"Entrees\"}\n"
+                                + "{\"diningCommonsCode\":\"dlg\",\"station\":\"Grill\"}\n"
+                                + "{\"diningCommonsCode\":\"dlg\",\"name\":\"Burger\"}\n"
+                                + "{\"diningCommonsCode\":\"dlg\",\"name\":\"Burger\",\"station\":\"Grill\"}\n";
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/UCSBDiningCommonsMenuItem/bulk").with(csrf())
+                                                .contentType(MediaType.APPLICATION_NDJSON)
+                                                .content(ndjson))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).saveAll(anyList());
+                String expectedJson = mapper.writeValueAsString(new BulkResult(2, 3, List.of(
+                                new BulkRowResult(0, 1L, null),
+                                new BulkRowResult(1, null, "diningCommonsCode is required"),
+                                new BulkRowResult(2, null, "name is required"),
+                                new BulkRowResult(3, null, "station is required"),
+                                new BulkRowResult(4, 2L, null))));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
 
 
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_filter_menu_items_by_dining_commons() throws Exception {
+
+                // arrange
+                UCSBDiningCommonsMenuItem item = UCSBDiningCommonsMenuItem.builder().diningCommonsCode("ortega").name("Baked Pesto Pasta with Chicken").station("Entree Specials").build();
+                when(ucsbDiningCommonsMenuItemRepository.findAllByDiningCommonsCode(eq("ortega"))).thenReturn(List.of(item));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/all?diningCommonsCode=ortega"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, never()).findAll();
+                assertEquals(mapper.writeValueAsString(List.of(item)), response.getResponse().getContentAsString());
+        }
+}
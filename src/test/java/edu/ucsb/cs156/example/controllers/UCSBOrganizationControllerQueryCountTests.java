@@ -0,0 +1,95 @@
+package edu.ucsb.cs156.example.controllers;
+
+import static edu.ucsb.cs156.example.QueryCountTestCase.QueryBudget.atMost;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import edu.ucsb.cs156.example.QueryCountTestCase;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+
+public class UCSBOrganizationControllerQueryCountTests extends QueryCountTestCase {
+
+  private static UCSBOrganization org(String orgCode) {
+    return UCSBOrganization.builder()
+        .orgCode(orgCode)
+        .orgTranslationShort(orgCode + " short")
+        .orgTranslation(orgCode + " long")
+        .inactive(false)
+        .build();
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void all_is_one_query_and_then_served_from_the_snapshot() throws Exception {
+    persist(org("ZPR"), org("SKY"), org("OSLI"));
+
+    perform(get("/api/ucsborganization/all"), atMost(1, 3)).andExpect(status().isOk());
+    perform(get("/api/ucsborganization/all"), atMost(0, 0)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void page_is_one_query_for_at_most_one_row_more_than_the_limit() throws Exception {
+    persist(org("A"), org("B"), org("C"), org("D"));
+
+    perform(get("/api/ucsborganization/page?limit=2&afterId=A"), atMost(1, 3)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void get_by_id_is_one_query_and_then_served_from_the_cache() throws Exception {
+    persist(org("ZPR"));
+
+    perform(get("/api/ucsborganization?orgCode=ZPR"), atMost(1, 1)).andExpect(status().isOk());
+    perform(get("/api/ucsborganization?orgCode=ZPR"), atMost(0, 0)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "ADMIN" })
+  @Test
+  public void export_is_one_query() throws Exception {
+    persist(org("ZPR"), org("SKY"), org("OSLI"));
+
+    perform(get("/api/ucsborganization/export"), atMost(1, 3)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void writes_are_single_statements() throws Exception {
+    persist(org("ZPR"));
+
+    // save() of an assigned id checks whether the row exists first
+    perform(post("/api/ucsborganization/post?orgCode=SKY&orgTranslationShort=s&orgTranslation=t&inactive=false")
+        .with(csrf()), atMost(2, 0)).andExpect(status().isOk());
+    perform(put("/api/ucsborganization?orgCode=ZPR").with(csrf())
+        .header(HttpHeaders.IF_MATCH, "\"0\"")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(org("ZPR"))), atMost(1, 0))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+    perform(delete("/api/ucsborganization?orgCode=ZPR").with(csrf()), atMost(1, 0)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void put_without_if_match_reads_back_the_version_it_wrote() throws Exception {
+    persist(org("ZPR"));
+
+    perform(put("/api/ucsborganization?orgCode=ZPR").with(csrf())
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(mapper.writeValueAsString(org("ZPR"))), atMost(2, 0))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+        .andExpect(jsonPath("$.version").value(1)); // the update, then its version, read while the row is still locked
+  }
+}
@@ -10,6 +10,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import edu.ucsb.cs156.example.events.TableChangedEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.junit.jupiter.api.BeforeEach;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
@@ -20,26 +23,60 @@ import org.springframework.test.web.servlet.MvcResult;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 
 import java.util.Optional;
+import org.springframework.data.domain.PageRequest;
+import java.util.List;
+import edu.ucsb.cs156.example.services.JsonExportService;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import edu.ucsb.cs156.example.services.JsonSnapshotService;
+import org.springframework.transaction.PlatformTransactionManager;
+import javax.persistence.EntityManager;
+import java.util.stream.Stream;
+import edu.ucsb.cs156.example.services.ImportService;
+import edu.ucsb.cs156.example.models.ImportProgress;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.beans.factory.annotation.Autowired;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.never;
 
 @WebMvcTest(controllers = UCSBOrganizationController.class)
-@Import(TestConfig.class)
+@Import({ TestConfig.class, JsonExportService.class, ImportService.class, TableVersionService.class, JsonSnapshotService.class })
 public class UCSBOrganizationControllerTests extends ControllerTestCase {
 
         @MockBean
         UCSBOrganizationRepository ucsbOrganizationRepository;
 
+        @Autowired
+        TableVersionService tableVersions;
+
+        @Autowired
+        ApplicationEventPublisher publisher;
+
+        @BeforeEach
+        void startWithAFreshTableStamp() {
+                // the /all snapshot is shared by every test in this class, so make each one rebuild it
+                publisher.publishEvent(new TableChangedEvent(UCSBOrganization.class));
+        }
+
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        EntityManager entityManager;
+
+        @MockBean
+        PlatformTransactionManager transactionManager;
+
         // Authorization tests for /api/ucsborganization/admin/all
 
         @Test
@@ -223,14 +260,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
         public void admin_can_delete_an_organization() throws Exception {
                 // arrange
 
-                UCSBOrganization weg = UCSBOrganization.builder()
-                            .orgCode("WEG")
-                            .orgTranslationShort("WaterEnthusiasts")
-                            .orgTranslation("WaterEnthusiastsGroup")
-                            .inactive(false)
-                            .build();
-
-                when(ucsbOrganizationRepository.findById("WEG")).thenReturn(Optional.of(weg));
+                when(ucsbOrganizationRepository.deleteRow(eq("WEG"))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -239,8 +269,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbOrganizationRepository, times(1)).findById("WEG");
-                verify(ucsbOrganizationRepository, times(1)).delete(any());
+                verify(ucsbOrganizationRepository, times(1)).deleteRow("WEG");
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBOrganization with id WEG deleted", json.get("message"));
@@ -253,7 +282,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbOrganizationRepository.findById(eq("NEO"))).thenReturn(Optional.empty());
+                when(ucsbOrganizationRepository.deleteRow(eq("NEO"))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -262,7 +291,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbOrganizationRepository, times(1)).findById(eq("NEO"));
+                verify(ucsbOrganizationRepository, times(1)).deleteRow("NEO");
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBOrganization with id NEO not found", json.get("message"));
         }
@@ -273,13 +302,6 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
         public void admin_can_edit_an_existing_organization_t2f() throws Exception {
                 // arrange
 
-                UCSBOrganization hch1 = UCSBOrganization.builder()
-                                .orgCode("HCH")
-                                .orgTranslationShort("HotCheetoHaters")
-                                .orgTranslation("HotCheetoHatersClub")
-                                .inactive(true)
-                                .build();
-
                 UCSBOrganization hch2 = UCSBOrganization.builder()
                                 .orgCode("HCH")
                                 .orgTranslationShort("HOTCHEETOHATERS")
@@ -289,7 +311,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(hch2);
 
-                when(ucsbOrganizationRepository.findById(eq("HCH"))).thenReturn(Optional.of(hch1));
+                when(ucsbOrganizationRepository.updateRowAndGetVersion(eq(hch2), isNull())).thenReturn(Optional.of(1L));
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -301,10 +323,12 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbOrganizationRepository, times(1)).findById("HCH");
-                verify(ucsbOrganizationRepository, times(1)).save(hch2); // should be saved with updated info
+                // the update wrote version 1, and the response says so
+                hch2.setVersion(1L);
+                verify(ucsbOrganizationRepository, times(1)).updateRowAndGetVersion(hch2, null);
                 String responseString = response.getResponse().getContentAsString();
-                assertEquals(requestBody, responseString);
+                assertEquals(mapper.writeValueAsString(hch2), responseString);
+                assertEquals("\"1\"", response.getResponse().getHeader("ETag"));
         }
 
         @WithMockUser(roles = { "ADMIN", "USER" })
@@ -321,7 +345,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
 
                 String requestBody = mapper.writeValueAsString(mpc);
 
-                when(ucsbOrganizationRepository.findById("MPC")).thenReturn(Optional.empty());
+                when(ucsbOrganizationRepository.updateRowAndGetVersion(any(), any())).thenReturn(Optional.empty());
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -333,9 +357,214 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbOrganizationRepository, times(1)).findById("MPC");
+                verify(ucsbOrganizationRepository, times(1)).updateRowAndGetVersion(any(), any());
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBOrganization with id MPC not found", json.get("message"));
 
         }
+
+        // Tests for keyset pagination (/api/ucsborganization/page)
+
+        @Test
+        public void logged_out_users_cannot_get_page() throws Exception {
+                mockMvc.perform(get("/api/ucsborganization/page"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_first_page_and_next_cursor() throws Exception {
+
+                // arrange
+
+                UCSBOrganization row1 = UCSBOrganization.builder().orgCode("a").build();
+                UCSBOrganization row2 = UCSBOrganization.builder().orgCode("b").build();
+                UCSBOrganization row3 = UCSBOrganization.builder().orgCode("c").build();
+
+                when(ucsbOrganizationRepository.findByOrgCodeGreaterThanOrderByOrgCodeAsc(eq(""), eq(PageRequest.of(0, 3))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(row1, row2, row3)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsborganization/page?limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                verify(ucsbOrganizationRepository, times(1)).findByOrgCodeGreaterThanOrderByOrgCodeAsc(eq(""), eq(PageRequest.of(0, 3)));
+                String expectedJson = mapper.writeValueAsString(Map.of("content", Arrays.asList(row1, row2), "next", "b"));
+                assertEquals(mapper.readTree(expectedJson), mapper.readTree(response.getResponse().getContentAsString()));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_last_page_without_next_cursor() throws Exception {
+
+                // arrange
+
+                UCSBOrganization row3 = UCSBOrganization.builder().orgCode("c").build();
+
+                when(ucsbOrganizationRepository.findByOrgCodeGreaterThanOrderByOrgCodeAsc(eq("b"), eq(PageRequest.of(0, 3))))
+                                .thenReturn(new ArrayList<>(Arrays.asList(row3)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsborganization/page?afterId=b&limit=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(1, ((List<?>) json.get("content")).size());
+                assertEquals(null, json.get("next"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_page_limit_is_capped() throws Exception {
+
+                // act
+                mockMvc.perform(get("/api/ucsborganization/page?limit=100000"))
+                                .andExpect(status().isOk());
+
+                // assert
+
+                verify(ucsbOrganizationRepository, times(1)).findByOrgCodeGreaterThanOrderByOrgCodeAsc(eq(""), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT + 1)));
+        }
+
+        // Tests for streaming export (/api/ucsborganization/export)
+
+        @Test
+        public void logged_out_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/ucsborganization/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_export() throws Exception {
+                mockMvc.perform(get("/api/ucsborganization/export"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_export_all_rows_as_a_json_array() throws Exception {
+
+                // arrange
+
+                UCSBOrganization row1 = UCSBOrganization.builder().orgCode("ZPR").build();
+                UCSBOrganization row2 = UCSBOrganization.builder().orgCode("SKY").build();
+
+                when(ucsbOrganizationRepository.streamAll()).thenReturn(Stream.of(row1, row2));
+
+                // act
+                MvcResult asyncResult = mockMvc.perform(get("/api/ucsborganization/export"))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(asyncResult))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Disposition", "attachment; filename=\"ucsborganization.json\""))
+                                .andReturn();
+
+                // assert
+
+                verify(ucsbOrganizationRepository, times(1)).streamAll();
+                verify(entityManager, times(1)).detach(row1);
+                verify(entityManager, times(1)).detach(row2);
+                String expectedJson = mapper.writeValueAsString(Arrays.asList(row1, row2));
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+
+        // Tests for import (/api/ucsborganization/import)
+
+        private MockMultipartFile orgsNdjson = new MockMultipartFile("file", "orgs.ndjson", "application/x-ndjson",
+                        ("{\"orgCode\":\"ZPR\",\"orgTranslationShort\":\"ZETA PHI RHO\",\"orgTranslation\":\"ZETA PHI RHO\",\"inactive\":false}\n"
+                                        + "{\"orgCode\":\"SKY\",\"orgTranslationShort\":\"SKYDIVING CLUB\",\"orgTranslation\":\"SKYDIVING CLUB AT UCSB\",\"inactive\":true}\n").getBytes());
+
+        @Test
+        public void logged_out_users_cannot_import() throws Exception {
+                mockMvc.perform(multipart("/api/ucsborganization/import").file(orgsNdjson).with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_import() throws Exception {
+                mockMvc.perform(multipart("/api/ucsborganization/import").file(orgsNdjson).with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_import_ndjson_and_existing_orgs_are_updated() throws Exception {
+
+                // arrange
+
+                UCSBOrganization sky = UCSBOrganization.builder()
+                                .orgCode("SKY")
+                                .orgTranslationShort("SKY")
+                                .orgTranslation("SKY")
+                                .inactive(false)
+                                .build();
+
+                when(ucsbOrganizationRepository.findAllById(anyIterable())).thenReturn(List.of(sky));
+
+                // act
+                MvcResult asyncResult = mockMvc.perform(multipart("/api/ucsborganization/import").file(orgsNdjson).with(csrf()))
+                                .andExpect(request().asyncStarted()).andReturn();
+                MvcResult response = mockMvc.perform(asyncDispatch(asyncResult))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+
+                UCSBOrganization zpr = UCSBOrganization.builder()
+                                .orgCode("ZPR")
+                                .orgTranslationShort("ZETA PHI RHO")
+                                .orgTranslation("ZETA PHI RHO")
+                                .inactive(false)
+                                .build();
+                verify(entityManager, times(1)).persist(zpr);
+                assertEquals("SKYDIVING CLUB", sky.getOrgTranslationShort());
+                assertEquals("SKYDIVING CLUB AT UCSB", sky.getOrgTranslation());
+                assertEquals(true, sky.getInactive());
+                String expectedJson = mapper.writeValueAsString(new ImportProgress(2, 1, 1, 0, true, List.of())) + "\n";
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void all_orgs_are_not_modified_until_the_table_changes() throws Exception {
+
+                // arrange
+                UCSBOrganization nla = UCSBOrganization.builder().orgCode("NLA").orgTranslationShort("NightLifeAssociation")
+                                .orgTranslation("NightLifeAssociationOrg").inactive(false).build();
+                when(ucsbOrganizationRepository.findAll()).thenReturn(List.of(nla));
+                when(ucsbOrganizationRepository.updateRowAndGetVersion(any(), any())).thenReturn(Optional.of(1L));
+                long stamp = tableVersions.stamp(UCSBOrganization.class);
+
+                // act
+                MvcResult fresh = mockMvc.perform(get("/api/ucsborganization/all"))
+                                .andExpect(status().isOk()).andReturn();
+                String etag = fresh.getResponse().getHeader("ETag");
+                mockMvc.perform(get("/api/ucsborganization/all").header("If-None-Match", etag))
+                                .andExpect(status().isNotModified());
+                verify(ucsbOrganizationRepository, times(1)).findAll();
+
+                mockMvc.perform(put("/api/ucsborganization?orgCode=NLA")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(mapper.writeValueAsString(nla))
+                                .with(csrf()).with(user("admin").roles("ADMIN", "USER")))
+                                .andExpect(status().isOk());
+                MvcResult changed = mockMvc.perform(get("/api/ucsborganization/all").header("If-None-Match", etag))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                assertEquals("W/\"%d\"".formatted(stamp), etag);
+                verify(ucsbOrganizationRepository, times(2)).findAll();
+                assertEquals("W/\"%d\"".formatted(tableVersions.stamp(UCSBOrganization.class)),
+                                changed.getResponse().getHeader("ETag"));
+                assertEquals(mapper.writeValueAsString(List.of(nla)), changed.getResponse().getContentAsString());
+        }
 }
@@ -0,0 +1,46 @@
+package edu.ucsb.cs156.example.controllers;
+
+import static edu.ucsb.cs156.example.QueryCountTestCase.QueryBudget.atMost;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import edu.ucsb.cs156.example.QueryCountTestCase;
+import edu.ucsb.cs156.example.entities.User;
+
+public class UsersControllerQueryCountTests extends QueryCountTestCase {
+
+  private static User user(String email) {
+    return User.builder()
+        .email(email)
+        .googleSub(email)
+        .fullName(email)
+        .build();
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void all_is_one_query() throws Exception {
+    persist(user("a@ucsb.edu"), user("b@ucsb.edu"), user("c@ucsb.edu"));
+
+    perform(get("/api/admin/users"), atMost(1, 3)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void page_is_one_query_for_at_most_one_row_more_than_the_limit() throws Exception {
+    persist(user("a@ucsb.edu"), user("b@ucsb.edu"), user("c@ucsb.edu"), user("d@ucsb.edu"));
+
+    perform(get("/api/admin/users/page?limit=2"), atMost(1, 3)).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void export_is_one_query() throws Exception {
+    persist(user("a@ucsb.edu"), user("b@ucsb.edu"), user("c@ucsb.edu"));
+
+    perform(get("/api/admin/users/export"), atMost(1, 3)).andExpect(status().isOk());
+  }
+}
@@ -18,17 +18,31 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.mockito.ArgumentMatchers.eq;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import org.springframework.data.domain.PageRequest;
+import java.util.Map;
+import java.util.List;
+import edu.ucsb.cs156.example.services.JsonExportService;
+import org.springframework.transaction.PlatformTransactionManager;
+import javax.persistence.EntityManager;
+import java.util.stream.Stream;
 
 @WebMvcTest(controllers = UsersController.class)
-@Import(TestConfig.class)
+@Import({ TestConfig.class, JsonExportService.class })
 public class UsersControllerTests extends ControllerTestCase {
 
   @MockBean
   UserRepository userRepository;
 
+  @MockBean
+  EntityManager entityManager;
+
+  @MockBean
+  PlatformTransactionManager transactionManager;
+
   @Test
   public void users__logged_out() throws Exception {
     mockMvc.perform(get("/api/admin/users"))
@@ -70,4 +84,108 @@ public class UsersControllerTests extends ControllerTestCase {
     assertEquals(expectedJson, responseString);
 
   }
+
+  // Tests for keyset pagination (/api/admin/users/page)
+
+  @Test
+  public void logged_out_users_cannot_get_page() throws Exception {
+    mockMvc.perform(get("/api/admin/users/page"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admin_user_gets_first_page_and_next_cursor() throws Exception {
+
+    // arrange
+
+    User row1 = User.builder().id(1L).build();
+    User row2 = User.builder().id(2L).build();
+    User row3 = User.builder().id(3L).build();
+
+    when(userRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 3))))
+        .thenReturn(new ArrayList<>(Arrays.asList(row1, row2, row3)));
+
+    // act
+    MvcResult response = mockMvc.perform(get("/api/admin/users/page?limit=2"))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    verify(userRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, 3)));
+    String expectedJson = mapper.writeValueAsString(Map.of("content", Arrays.asList(row1, row2), "next", 2L));
+    assertEquals(mapper.readTree(expectedJson), mapper.readTree(response.getResponse().getContentAsString()));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admin_user_gets_last_page_without_next_cursor() throws Exception {
+
+    // arrange
+
+    User row3 = User.builder().id(3L).build();
+
+    when(userRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), eq(PageRequest.of(0, 3))))
+        .thenReturn(new ArrayList<>(Arrays.asList(row3)));
+
+    // act
+    MvcResult response = mockMvc.perform(get("/api/admin/users/page?afterId=2&limit=2"))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals(1, ((List<?>) json.get("content")).size());
+    assertEquals(null, json.get("next"));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admin_user_page_limit_is_capped() throws Exception {
+
+    // act
+    mockMvc.perform(get("/api/admin/users/page?limit=100000"))
+        .andExpect(status().isOk());
+
+    // assert
+
+    verify(userRepository, times(1)).findByIdGreaterThanOrderByIdAsc(eq(0L), eq(PageRequest.of(0, ApiController.MAX_PAGE_LIMIT + 1)));
+  }
+
+  // Tests for streaming export (/api/admin/users/export)
+
+  @Test
+  public void logged_out_users_cannot_export() throws Exception {
+    mockMvc.perform(get("/api/admin/users/export"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admin_can_export_all_rows_as_a_json_array() throws Exception {
+
+    // arrange
+
+    User row1 = User.builder().id(1L).build();
+    User row2 = User.builder().id(2L).build();
+
+    when(userRepository.streamAll()).thenReturn(Stream.of(row1, row2));
+
+    // act
+    MvcResult asyncResult = mockMvc.perform(get("/api/admin/users/export"))
+        .andExpect(request().asyncStarted()).andReturn();
+    MvcResult response = mockMvc.perform(asyncDispatch(asyncResult))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Content-Disposition", "attachment; filename=\"users.json\""))
+        .andReturn();
+
+    // assert
+
+    verify(userRepository, times(1)).streamAll();
+    verify(entityManager, times(1)).detach(row1);
+    verify(entityManager, times(1)).detach(row2);
+    String expectedJson = mapper.writeValueAsString(Arrays.asList(row1, row2));
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(expectedJson, responseString);
+  }
 }
@@ -0,0 +1,81 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.IllegalTransactionStateException;
+
+import edu.ucsb.cs156.example.QueryCountTestCase;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+
+public class ReadOnlyRepositoriesTests extends QueryCountTestCase {
+
+  @Autowired
+  UCSBDateRepository ucsbDateRepository;
+
+  @Autowired
+  MenuItemReviewRepository menuItemReviewRepository;
+
+  private static UCSBDate ucsbDate(String quarterYYYYQ, String name) {
+    return UCSBDate.builder()
+        .quarterYYYYQ(quarterYYYYQ)
+        .name(name)
+        .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+        .build();
+  }
+
+  /** Runs the reads and checks they began one transaction each and never flushed. */
+  private void assertReadOnly(int reads, Runnable read) {
+    Statistics statistics = statistics();
+    long transactions = statistics.getTransactionCount();
+    long flushes = statistics.getFlushCount();
+
+    read.run();
+
+    assertEquals(reads, statistics.getTransactionCount() - transactions);
+    assertEquals(0, statistics.getFlushCount() - flushes);
+  }
+
+  @Test
+  public void find_all_and_find_by_id_read_without_flushing() {
+    UCSBDate date = ucsbDate("20221", "a");
+    persist(date, ucsbDate("20221", "b"));
+
+    assertReadOnly(2, () -> {
+      assertEquals(2, ucsbDateRepository.findAll().spliterator().estimateSize());
+      assertEquals("a", ucsbDateRepository.findById(date.getId()).orElseThrow().getName());
+    });
+  }
+
+  @Test
+  public void derived_finders_read_in_a_transaction_without_flushing() {
+    persist(ucsbDate("20221", "a"), ucsbDate("20221", "b"), ucsbDate("20222", "c"));
+
+    assertReadOnly(2, () -> {
+      assertEquals(2, ucsbDateRepository.findAllByQuarterYYYYQ("20221").spliterator().estimateSize());
+      assertEquals(1, ucsbDateRepository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, 1)).size());
+    });
+  }
+
+  @Test
+  public void writes_still_commit() {
+    UCSBDate date = ucsbDateRepository.save(ucsbDate("20221", "a"));
+    date.setName("renamed");
+    assertEquals(1, ucsbDateRepository.updateRow(date, null));
+
+    assertEquals("renamed", ucsbDateRepository.findById(date.getId()).orElseThrow().getName());
+    assertEquals(1, ucsbDateRepository.deleteRow(date.getId()));
+    assertEquals(0, ucsbDateRepository.count());
+  }
+
+  @Test
+  public void locking_read_needs_the_callers_transaction() {
+    assertThrows(IllegalTransactionStateException.class, () -> menuItemReviewRepository.findByIdForUpdate(1));
+  }
+}
@@ -0,0 +1,98 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.events.UserChangedEvent;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = AdminService.class)
+@TestPropertySource(properties = "app.admin.emails=phtcon@ucsb.edu,admin@ucsb.edu")
+class AdminServiceTests {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Autowired
+  AdminService adminService;
+
+  @Autowired
+  ApplicationEventPublisher publisher;
+
+  User cgaucho = User.builder().id(1L).email("cgaucho@ucsb.edu").admin(true).build();
+  User ldelplaya = User.builder().id(2L).email("ldelplaya@ucsb.edu").admin(false).build();
+
+  @BeforeEach
+  void clearCache() {
+    publisher.publishEvent(new UserChangedEvent(cgaucho));
+    publisher.publishEvent(new UserChangedEvent(ldelplaya));
+  }
+
+  @Test
+  void test_listed_emails_are_admins_without_a_query() {
+    assertTrue(adminService.isAdminEmail("admin@ucsb.edu"));
+    assertTrue(adminService.isAdmin("phtcon@ucsb.edu"));
+    verify(userRepository, never()).findByEmail(any());
+  }
+
+  @Test
+  void test_admin_flag_from_database_is_cached() {
+    when(userRepository.findByEmail(eq("cgaucho@ucsb.edu"))).thenReturn(Optional.of(cgaucho));
+    when(userRepository.findByEmail(eq("ldelplaya@ucsb.edu"))).thenReturn(Optional.of(ldelplaya));
+
+    assertFalse(adminService.isAdminEmail("cgaucho@ucsb.edu"));
+    assertTrue(adminService.isAdmin("cgaucho@ucsb.edu"));
+    assertTrue(adminService.isAdmin("cgaucho@ucsb.edu"));
+    assertFalse(adminService.isAdmin("ldelplaya@ucsb.edu"));
+    assertFalse(adminService.isAdmin("ldelplaya@ucsb.edu"));
+
+    verify(userRepository, times(1)).findByEmail("cgaucho@ucsb.edu");
+    verify(userRepository, times(1)).findByEmail("ldelplaya@ucsb.edu");
+  }
+
+  @Test
+  void test_unknown_users_are_not_admins() {
+    when(userRepository.findByEmail(any())).thenReturn(Optional.empty());
+    assertFalse(adminService.isAdmin("nobody@ucsb.edu"));
+  }
+
+  @Test
+  void test_a_null_email_is_not_an_admin_and_is_not_looked_up() {
+    assertFalse(adminService.isAdminEmail(null));
+    assertFalse(adminService.isAdmin(null));
+    verify(userRepository, never()).findByEmail(any());
+  }
+
+  @Test
+  void test_admin_flag_is_reloaded_after_user_changes() {
+    when(userRepository.findByEmail(eq("ldelplaya@ucsb.edu"))).thenReturn(Optional.of(ldelplaya));
+    assertFalse(adminService.isAdmin("ldelplaya@ucsb.edu"));
+
+    User promoted = User.builder().id(2L).email("ldelplaya@ucsb.edu").admin(true).build();
+    when(userRepository.findByEmail(eq("ldelplaya@ucsb.edu"))).thenReturn(Optional.of(promoted));
+    publisher.publishEvent(new UserChangedEvent(promoted));
+
+    assertTrue(adminService.isAdmin("ldelplaya@ucsb.edu"));
+    verify(userRepository, times(2)).findByEmail("ldelplaya@ucsb.edu");
+  }
+}
@@ -0,0 +1,119 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.models.BulkResult;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = { BulkSaveService.class, ObjectMapper.class })
+@TestPropertySource(properties = "app.bulk.batchSize=2")
+class BulkSaveServiceTests {
+
+  @MockBean
+  UCSBDiningCommonsMenuItemRepository repository;
+
+  @MockBean
+  PlatformTransactionManager transactionManager;
+
+  @Autowired
+  BulkSaveService bulkSaveService;
+
+  private static InputStream body(String s) {
+    return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String item(String name) {
+    return "{\"diningCommonsCode\":\"ortega\",\"name\":\"%s\",\"station\":\"Entrees\"}".formatted(name);
+  }
+
+  private BulkResult save(String s) throws Exception {
+    return bulkSaveService.saveAll(body(s), UCSBDiningCommonsMenuItem.class,
+        menuitem -> menuitem.getName().startsWith("bad") ? "bad name" : null,
+        repository, UCSBDiningCommonsMenuItem::getName);
+  }
+
+  @Test
+  void test_rows_are_saved_in_batches() throws Exception {
+    List<Integer> batchSizes = new ArrayList<>();
+    when(repository.saveAll(anyList())).thenAnswer(invocation -> {
+      List<UCSBDiningCommonsMenuItem> batch = new ArrayList<>(invocation.getArgument(0));
+      batchSizes.add(batch.size());
+      return batch;
+    });
+
+    BulkResult result = save("[" + item("a") + "," + item("bad1") + "," + item("b") + "," + item("c") + "," + item("d") + "]");
+
+    assertEquals(List.of(2, 2), batchSizes);
+    assertEquals(4, result.getSaved());
+    assertEquals(1, result.getRejected());
+    assertEquals("a", result.getRows().get(0).getId());
+    assertEquals("bad name", result.getRows().get(1).getError());
+    assertEquals("d", result.getRows().get(4).getId());
+  }
+
+  @Test
+  void test_ndjson_and_json_array_bodies_are_both_accepted() throws Exception {
+    when(repository.saveAll(anyList())).thenAnswer(invocation -> new ArrayList<>(invocation.getArgument(0)));
+
+    BulkResult ndjson = save(item("a") + "\n" + item("b") + "\n" + item("c") + "\n");
+    BulkResult array = save("[" + item("a") + "," + item("b") + "," + item("c") + "]");
+
+    assertEquals(3, ndjson.getSaved());
+    assertEquals(ndjson, array);
+  }
+
+  @Test
+  void test_malformed_row_stops_processing_but_keeps_earlier_batches() throws Exception {
+    when(repository.saveAll(anyList())).thenAnswer(invocation -> new ArrayList<>(invocation.getArgument(0)));
+
+    BulkResult result = save(item("a") + "\n" + item("b") + "\n" + item("c") + "\n{\"name\": \n" + item("d") + "\n");
+
+    verify(repository, times(2)).saveAll(anyList());
+    assertEquals(3, result.getSaved());
+    assertEquals(1, result.getRejected());
+    assertEquals(4, result.getRows().size());
+    assertTrue(result.getRows().get(3).getError().startsWith("malformed JSON: "));
+  }
+
+  @Test
+  void test_failed_batch_is_reported_per_row() throws Exception {
+    when(repository.saveAll(anyList()))
+        .thenThrow(new DataIntegrityViolationException("value too long"))
+        .thenAnswer(invocation -> new ArrayList<>(invocation.getArgument(0)));
+
+    BulkResult result = save(item("a") + "\n" + item("b") + "\n" + item("c") + "\n");
+
+    assertEquals(1, result.getSaved());
+    assertEquals(2, result.getRejected());
+    assertEquals("save failed: value too long", result.getRows().get(0).getError());
+    assertNull(result.getRows().get(0).getId());
+    assertEquals("save failed: value too long", result.getRows().get(1).getError());
+    assertEquals("c", result.getRows().get(2).getId());
+  }
+}
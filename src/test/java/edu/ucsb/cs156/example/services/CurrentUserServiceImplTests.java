@@ -0,0 +1,137 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.events.UserChangedEvent;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = { CurrentUserServiceImpl.class, AdminService.class })
+@TestPropertySource(properties = "app.admin.emails=admin@ucsb.edu")
+class CurrentUserServiceImplTests {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @MockBean
+  GrantedAuthoritiesService grantedAuthoritiesService;
+
+  @Autowired
+  CurrentUserServiceImpl currentUserService;
+
+  @Autowired
+  ApplicationEventPublisher publisher;
+
+  User cgaucho = User.builder().id(1L).email("cgaucho@ucsb.edu").googleSub("sub-cgaucho").build();
+
+  @BeforeEach
+  void logInAsCgaucho() {
+    List<GrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+    Map<String, Object> attributes = Map.of(
+        "sub", "sub-cgaucho",
+        "email", "cgaucho@ucsb.edu",
+        "email_verified", true);
+    DefaultOAuth2User principal = new DefaultOAuth2User(authorities, attributes, "sub");
+    SecurityContextHolder.getContext().setAuthentication(new OAuth2AuthenticationToken(principal, authorities, "google"));
+    when(userRepository.findByEmail(eq("cgaucho@ucsb.edu"))).thenReturn(Optional.of(cgaucho));
+
+    // the service is shared by every test in this class, so start each one with a cold cache
+    publisher.publishEvent(new UserChangedEvent(cgaucho));
+  }
+
+  @AfterEach
+  void logOut() {
+    SecurityContextHolder.clearContext();
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  @Test
+  void test_getUser_is_cached_across_requests() {
+    User first = currentUserService.getUser();
+    User second = currentUserService.getUser();
+
+    assertEquals(cgaucho, first);
+    assertEquals(cgaucho, second);
+    assertNotSame(first, second);
+    verify(userRepository, times(1)).findByEmail(any());
+  }
+
+  @Test
+  void test_getUser_changes_made_by_one_request_are_not_seen_by_the_next() {
+    User unchanged = cgaucho.toBuilder().build();
+    User first = currentUserService.getUser();
+    first.setAdmin(true);
+    first.setFullName("Someone Else");
+
+    User second = currentUserService.getUser();
+
+    assertEquals(unchanged, second);
+    verify(userRepository, times(1)).findByEmail(any());
+  }
+
+  @Test
+  void test_getUser_without_a_sub_is_not_cached() {
+    List<GrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+    Map<String, Object> attributes = Map.of(
+        "email", "cgaucho@ucsb.edu",
+        "email_verified", true);
+    DefaultOAuth2User principal = new DefaultOAuth2User(authorities, attributes, "email");
+    SecurityContextHolder.getContext().setAuthentication(new OAuth2AuthenticationToken(principal, authorities, "google"));
+
+    assertEquals(cgaucho, currentUserService.getUser());
+    assertEquals(cgaucho, currentUserService.getUser());
+
+    verify(userRepository, times(2)).findByEmail(any());
+  }
+
+  @Test
+  void test_getUser_is_memoized_for_the_request() {
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+    currentUserService.getUser();
+    publisher.publishEvent(new UserChangedEvent(cgaucho));
+    currentUserService.getUser();
+
+    // the cross-request cache was invalidated, but the request still sees its own copy
+    verify(userRepository, times(1)).findByEmail(any());
+  }
+
+  @Test
+  void test_getUser_reloads_after_user_changed() {
+    currentUserService.getUser();
+    publisher.publishEvent(new UserChangedEvent(cgaucho));
+    currentUserService.getUser();
+
+    verify(userRepository, times(2)).findByEmail(any());
+  }
+}
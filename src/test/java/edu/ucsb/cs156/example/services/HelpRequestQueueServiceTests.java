@@ -0,0 +1,239 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.events.HelpRequestChangedEvent;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = { HelpRequestQueueService.class })
+class HelpRequestQueueServiceTests {
+
+  @MockBean
+  HelpRequestRepository helpRequestRepository;
+
+  @Autowired
+  HelpRequestQueueService queue;
+
+  @Autowired
+  ApplicationEventPublisher publisher;
+
+  private static HelpRequest request(long id, String teamId, String requestTime) {
+    return HelpRequest.builder().id(id).teamId(teamId).requesterEmail("cgaucho@ucsb.edu")
+        .requestTime(LocalDateTime.parse(requestTime)).version(0L).build();
+  }
+
+  HelpRequest a1 = request(1L, "team-a", "2022-01-03T10:05:00");
+  HelpRequest b2 = request(2L, "team-b", "2022-01-03T10:00:00");
+  HelpRequest a3 = request(3L, "team-a", "2022-01-03T10:01:00");
+
+  private void loadWith(HelpRequest... unsolved) {
+    when(helpRequestRepository.findAllBySolved(eq(false))).thenReturn(List.of(unsolved));
+    queue.load();
+  }
+
+  @Test
+  void test_requests_are_ordered_by_request_time_overall_and_per_team() {
+    loadWith(a1, b2, a3);
+
+    assertEquals(List.of(b2, a3, a1), queue.peek(null, 10));
+    assertEquals(List.of(a3, a1), queue.peek("team-a", 10));
+    assertEquals(List.of(b2), queue.peek(null, 1));
+    assertEquals(Optional.of(a3), queue.next("team-a"));
+    assertEquals(Optional.empty(), queue.next("team-z"));
+  }
+
+  @Test
+  void test_changes_are_applied_to_the_index() {
+    loadWith(a1, b2);
+
+    HelpRequest a4 = request(4L, "team-a", "2022-01-03T09:00:00");
+    publisher.publishEvent(HelpRequestChangedEvent.created(a4));
+    assertEquals(List.of(a4, a1), queue.peek("team-a", 10));
+
+    // moving a request to another team
+    HelpRequest a1MovedToB = request(1L, "team-b", "2022-01-03T10:05:00");
+    publisher.publishEvent(HelpRequestChangedEvent.updated(a1MovedToB));
+    assertEquals(List.of(a4), queue.peek("team-a", 10));
+    assertEquals(List.of(b2, a1MovedToB), queue.peek("team-b", 10));
+
+    HelpRequest b2Solved = request(2L, "team-b", "2022-01-03T10:00:00");
+    b2Solved.setSolved(true);
+    publisher.publishEvent(HelpRequestChangedEvent.updated(b2Solved));
+    publisher.publishEvent(HelpRequestChangedEvent.deleted(4L));
+    assertEquals(List.of(a1MovedToB), queue.peek(null, 10));
+    assertEquals(1, queue.size());
+  }
+
+  @Test
+  void test_requests_claimed_elsewhere_are_not_loaded() {
+    HelpRequest a5 = request(5L, "team-a", "2022-01-03T09:00:00");
+    a5.setClaimedBy("ta@ucsb.edu");
+    loadWith(a1, a5);
+
+    assertEquals(List.of(a1), queue.peek(null, 10));
+  }
+
+  @Test
+  void test_claim_records_who_claimed_the_oldest_request() {
+    loadWith(a1, b2, a3);
+    when(helpRequestRepository.markClaimed(anyLong(), anyLong(), anyString(), any())).thenReturn(1);
+
+    Optional<HelpRequest> claimed = queue.claim("team-a", "ta@ucsb.edu");
+
+    assertEquals(3L, claimed.get().getId());
+    assertEquals("ta@ucsb.edu", claimed.get().getClaimedBy());
+    assertNotNull(claimed.get().getClaimedAt());
+    assertFalse(claimed.get().getSolved());
+    verify(helpRequestRepository, times(1)).markClaimed(eq(3L), eq(0L), eq("ta@ucsb.edu"), any());
+    assertEquals(List.of(b2, a1), queue.peek(null, 10));
+  }
+
+  @Test
+  void test_release_puts_a_claimed_request_back_in_the_queue() {
+    loadWith(a1, a3);
+    when(helpRequestRepository.markClaimed(anyLong(), anyLong(), anyString(), any())).thenReturn(1);
+    HelpRequest claimed = queue.claim("team-a", "ta@ucsb.edu").get();
+    HelpRequest released = request(3L, "team-a", "2022-01-03T10:01:00");
+    released.setVersion(2L);
+    when(helpRequestRepository.releaseClaim(eq(3L))).thenReturn(1);
+    when(helpRequestRepository.findById(eq(3L))).thenReturn(Optional.of(released));
+
+    assertEquals(Optional.of(released), queue.release(claimed.getId()));
+
+    assertEquals(List.of(released, a1), queue.peek("team-a", 10));
+  }
+
+  @Test
+  void test_release_of_an_unclaimed_request_leaves_the_queue_alone() {
+    loadWith(a1);
+    HelpRequest a3Solved = request(3L, "team-a", "2022-01-03T10:01:00");
+    a3Solved.setSolved(true);
+    when(helpRequestRepository.releaseClaim(eq(3L))).thenReturn(0);
+    when(helpRequestRepository.findById(eq(3L))).thenReturn(Optional.of(a3Solved));
+
+    assertEquals(Optional.of(a3Solved), queue.release(3L));
+    assertEquals(Optional.empty(), queue.release(7L));
+
+    assertEquals(List.of(a1), queue.peek(null, 10));
+  }
+
+  @Test
+  void test_claim_skips_requests_that_were_claimed_elsewhere() {
+    loadWith(a1, a3);
+    HelpRequest a3ClaimedElsewhere = request(3L, "team-a", "2022-01-03T10:01:00");
+    a3ClaimedElsewhere.setClaimedBy("other-ta@ucsb.edu");
+    a3ClaimedElsewhere.setVersion(1L);
+    when(helpRequestRepository.markClaimed(eq(3L), anyLong(), anyString(), any())).thenReturn(0);
+    when(helpRequestRepository.findById(eq(3L))).thenReturn(Optional.of(a3ClaimedElsewhere));
+    when(helpRequestRepository.markClaimed(eq(1L), anyLong(), anyString(), any())).thenReturn(1);
+
+    assertEquals(1L, queue.claim(null, "ta@ucsb.edu").get().getId());
+    assertEquals(Optional.empty(), queue.claim(null, "ta@ucsb.edu"));
+  }
+
+  @Test
+  void test_claim_of_a_row_changed_elsewhere_retries_with_its_current_version() {
+    loadWith(a3);
+    HelpRequest a3ChangedElsewhere = request(3L, "team-a", "2022-01-03T10:01:00");
+    a3ChangedElsewhere.setExplanation("still stuck");
+    a3ChangedElsewhere.setVersion(4L);
+    when(helpRequestRepository.markClaimed(eq(3L), eq(0L), anyString(), any())).thenReturn(0);
+    when(helpRequestRepository.findById(eq(3L))).thenReturn(Optional.of(a3ChangedElsewhere));
+    when(helpRequestRepository.markClaimed(eq(3L), eq(4L), anyString(), any())).thenReturn(1);
+
+    HelpRequest claimed = queue.claim("team-a", "ta@ucsb.edu").get();
+
+    assertEquals("still stuck", claimed.getExplanation());
+    assertEquals(5L, claimed.getVersion());
+    assertEquals(0, queue.size());
+  }
+
+  @Test
+  void test_a_claim_that_fails_in_the_database_leaves_the_request_queued() {
+    loadWith(a1, a3);
+    when(helpRequestRepository.markClaimed(eq(3L), anyLong(), anyString(), any()))
+        .thenThrow(new QueryTimeoutException("timed out"));
+
+    assertThrows(QueryTimeoutException.class, () -> queue.claim("team-a", "ta@ucsb.edu"));
+
+    assertEquals(List.of(a3, a1), queue.peek("team-a", 10));
+    assertEquals(List.of(a3, a1), queue.peek(null, 10));
+  }
+
+  @Test
+  void test_a_claim_whose_reread_fails_leaves_the_request_queued() {
+    loadWith(a3);
+    when(helpRequestRepository.markClaimed(eq(3L), anyLong(), anyString(), any())).thenReturn(0);
+    when(helpRequestRepository.findById(eq(3L))).thenThrow(new QueryTimeoutException("timed out"));
+
+    assertThrows(QueryTimeoutException.class, () -> queue.claim(null, "ta@ucsb.edu"));
+
+    assertEquals(Optional.of(a3), queue.next("team-a"));
+  }
+
+  @Test
+  void test_concurrent_claims_never_hand_out_the_same_request() throws Exception {
+    List<HelpRequest> unsolved = new ArrayList<>();
+    for (long id = 1; id <= 2000; id++) {
+      unsolved.add(request(id, "team-" + (id % 3), "2022-01-03T10:00:00"));
+    }
+    loadWith(unsolved.toArray(HelpRequest[]::new));
+    when(helpRequestRepository.markClaimed(anyLong(), anyLong(), anyString(), any())).thenReturn(1);
+
+    Set<Long> claimedIds = ConcurrentHashMap.newKeySet();
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<Integer>> workers = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      String teamId = i % 2 == 0 ? null : "team-" + (i % 3);
+      workers.add(pool.submit(() -> {
+        int count = 0;
+        for (Optional<HelpRequest> claimed = queue.claim(teamId, "ta@ucsb.edu"); claimed.isPresent();
+            claimed = queue.claim(teamId, "ta@ucsb.edu")) {
+          claimedIds.add(claimed.get().getId());
+          count++;
+        }
+        return count;
+      }));
+    }
+    int total = 0;
+    for (Future<Integer> worker : workers) {
+      total += worker.get();
+    }
+    pool.shutdown();
+
+    assertEquals(2000, total);
+    assertEquals(2000, claimedIds.size());
+    assertEquals(0, queue.size());
+  }
+}
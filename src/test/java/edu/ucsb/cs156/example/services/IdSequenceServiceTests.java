@@ -0,0 +1,65 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.dialect.H2Dialect;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import edu.ucsb.cs156.example.QueryCountTestCase;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+
+public class IdSequenceServiceTests extends QueryCountTestCase {
+
+  @Autowired
+  IdSequenceService idSequences;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  private static UCSBDate ucsbDate(String name) {
+    return UCSBDate.builder()
+        .quarterYYYYQ("20221")
+        .name(name)
+        .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+        .build();
+  }
+
+  @Test
+  public void a_sequence_behind_the_existing_ids_is_moved_past_them() {
+    // a row whose id came from the old IDENTITY column, far ahead of the sequence
+    jdbcTemplate.update("insert into ucsbdates (id, name, version) values (100000, 'old', 0)");
+
+    idSequences.moveSequencesPastExistingIds();
+
+    // the next block of ids starts right after it (this context's Hibernate may
+    // still hold an earlier block; at startup none has been taken yet)
+    assertEquals(100001L, jdbcTemplate.queryForObject(new H2Dialect().getSequenceNextValString("ucsbdates_seq"),
+        Long.class));
+  }
+
+  @Test
+  public void a_sequence_already_past_the_existing_ids_is_left_alone() {
+    persist(ucsbDate("a"));
+
+    long restartedAt = idSequences.moveSequencePastIds(new H2Dialect(), "ucsbdates_seq", "ucsbdates", "id");
+
+    assertEquals(-1, restartedAt);
+  }
+
+  @Test
+  public void a_batch_of_inserts_is_one_jdbc_batch() {
+    idSequences.moveSequencesPastExistingIds();
+    long statements = statistics().getPrepareStatementCount();
+
+    persist(ucsbDate("a"), ucsbDate("b"), ucsbDate("c"), ucsbDate("d"), ucsbDate("e"));
+
+    // at most one call for the next block of ids, and one batched insert
+    assertTrue(statistics().getPrepareStatementCount() - statements <= 2);
+    assertEquals(5L, jdbcTemplate.queryForObject("select count(*) from ucsbdates", Long.class));
+  }
+}
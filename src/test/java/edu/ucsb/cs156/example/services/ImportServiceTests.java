@@ -0,0 +1,137 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.models.BulkRowResult;
+import edu.ucsb.cs156.example.models.ImportProgress;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = { ImportService.class, TableVersionService.class, ObjectMapper.class })
+@TestPropertySource(properties = "app.import.batchSize=2")
+class ImportServiceTests {
+
+  @MockBean
+  UCSBOrganizationRepository repository;
+
+  @MockBean
+  EntityManager entityManager;
+
+  @MockBean
+  PlatformTransactionManager transactionManager;
+
+  @Autowired
+  ImportService importService;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Autowired
+  TableVersionService tableVersions;
+
+  private List<ImportProgress> importFile(String filename, String contents) throws Exception {
+    MockMultipartFile file = new MockMultipartFile("file", filename, null, contents.getBytes());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    importService.importRows(file, UCSBOrganization.class,
+        org -> org.getOrgCode().startsWith("bad") ? "bad orgCode" : null,
+        UCSBOrganization::getOrgCode,
+        repository::findAllById,
+        (incoming, org) -> org.setOrgTranslation(incoming.getOrgTranslation()))
+        .writeTo(out);
+
+    List<ImportProgress> lines = new ArrayList<>();
+    for (String line : out.toString().split("\n")) {
+      lines.add(mapper.readValue(line, ImportProgress.class));
+    }
+    return lines;
+  }
+
+  @Test
+  void test_csv_is_upserted_in_batches_with_progress_after_each() throws Exception {
+    UCSBOrganization existing = UCSBOrganization.builder().orgCode("B").orgTranslation("old").build();
+    when(repository.findAllById(anyIterable())).thenReturn(List.of(existing));
+
+    List<ImportProgress> lines = importFile("orgs.csv",
+        "orgCode,orgTranslationShort,orgTranslation,inactive\n"
+            + "A,a,new,false\n"
+            + "B,b,new,false\n"
+            + "bad1,x,x,false\n"
+            + "C,c,new,true\n");
+
+    verify(repository, times(2)).findAllById(anyIterable());
+    verify(entityManager, times(2)).persist(any());
+    assertEquals("new", existing.getOrgTranslation());
+    assertEquals(List.of(
+        new ImportProgress(2, 1, 1, 0, false, List.of()),
+        new ImportProgress(4, 2, 1, 1, true, List.of(new BulkRowResult(2, null, "bad orgCode")))),
+        lines);
+  }
+
+  @Test
+  void test_finished_import_moves_the_table_stamp() throws Exception {
+    long before = tableVersions.stamp(UCSBOrganization.class);
+
+    importFile("orgs.ndjson", "{\"orgCode\":\"A\"}\n");
+
+    assertTrue(tableVersions.stamp(UCSBOrganization.class) > before);
+  }
+
+  @Test
+  void test_rejected_rows_are_reported_without_waiting_for_a_batch() throws Exception {
+    List<ImportProgress> lines = importFile("orgs.ndjson",
+        "{\"orgCode\":\"bad1\"}\n{\"orgCode\":\"bad2\"}\n{\"orgCode\":\"bad3\"}\n");
+
+    assertEquals(2, lines.size());
+    assertEquals(2, lines.get(0).getErrors().size());
+    assertEquals(3, lines.get(1).getRejected());
+    assertEquals(1, lines.get(1).getErrors().size());
+  }
+
+  @Test
+  void test_malformed_row_stops_the_import() throws Exception {
+    List<ImportProgress> lines = importFile("orgs.ndjson", "{\"orgCode\":\"A\"}\n{\"orgCode\": \n{\"orgCode\":\"B\"}\n");
+
+    ImportProgress last = lines.get(lines.size() - 1);
+    assertTrue(last.getDone());
+    assertEquals(1, last.getInserted());
+    assertEquals(1, last.getRejected());
+    assertTrue(last.getErrors().get(0).getError().startsWith("malformed input: "));
+  }
+
+  @Test
+  void test_failed_batch_is_rejected_row_by_row() throws Exception {
+    doThrow(new DataIntegrityViolationException("value too long")).when(entityManager).persist(any());
+
+    List<ImportProgress> lines = importFile("orgs.ndjson", "{\"orgCode\":\"A\"}\n");
+
+    assertEquals(List.of(new ImportProgress(1, 0, 0, 1, true,
+        List.of(new BulkRowResult(0, null, "save failed: value too long")))), lines);
+  }
+}
@@ -0,0 +1,77 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.models.JsonSnapshot;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = { JsonSnapshotService.class, ObjectMapper.class })
+class JsonSnapshotServiceTests {
+
+  @Autowired
+  JsonSnapshotService jsonSnapshots;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  AtomicInteger loads = new AtomicInteger();
+
+  Supplier<List<UCSBOrganization>> orgs = () -> {
+    loads.incrementAndGet();
+    return List.of(UCSBOrganization.builder().orgCode("OSLI").orgTranslation("Student Life").build());
+  };
+
+  @Test
+  void test_snapshot_is_rebuilt_only_when_the_stamp_moves() throws Exception {
+    JsonSnapshot first = jsonSnapshots.snapshot(UCSBOrganization.class, 100, orgs);
+    JsonSnapshot again = jsonSnapshots.snapshot(UCSBOrganization.class, 100, orgs);
+    JsonSnapshot older = jsonSnapshots.snapshot(UCSBOrganization.class, 99, orgs);
+    JsonSnapshot newer = jsonSnapshots.snapshot(UCSBOrganization.class, 101, orgs);
+
+    assertEquals(2, loads.get());
+    assertSame(first, again);
+    assertSame(first, older);
+    assertEquals(101, newer.getTableStamp());
+    assertEquals(mapper.writeValueAsString(orgs.get()), new String(first.getJson()));
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(first.getGzip()))) {
+      assertEquals(new String(first.getJson()), new String(in.readAllBytes()));
+    }
+  }
+
+  @Test
+  void test_without_a_stamp_nothing_is_kept() {
+    JsonSnapshot first = jsonSnapshots.snapshot(UCSBDiningCommons.class, -1, orgs);
+    JsonSnapshot second = jsonSnapshots.snapshot(UCSBDiningCommons.class, -1, orgs);
+
+    assertEquals(2, loads.get());
+    assertEquals(new String(first.getJson()), new String(second.getJson()));
+  }
+
+  @Test
+  void test_one_off_encodings_are_not_kept_or_gzipped() {
+    JsonSnapshot filtered = jsonSnapshots.encode(100, List.of());
+    JsonSnapshot all = jsonSnapshots.snapshot(UCSBDiningCommons.class, 100, List::of);
+
+    assertEquals("[]", new String(filtered.getJson()));
+    assertNull(filtered.getGzip());
+    assertEquals(100, all.getTableStamp());
+  }
+}
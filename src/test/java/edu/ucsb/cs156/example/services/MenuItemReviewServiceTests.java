@@ -0,0 +1,198 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.MenuItemRatingSummary;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.EntityPreconditionFailedException;
+import edu.ucsb.cs156.example.repositories.MenuItemRatingSummaryRepository;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = { MenuItemReviewService.class })
+class MenuItemReviewServiceTests {
+
+  @MockBean
+  MenuItemReviewRepository menuItemReviewRepository;
+
+  @MockBean
+  MenuItemRatingSummaryRepository menuItemRatingSummaryRepository;
+
+  @Autowired
+  MenuItemReviewService menuItemReviewService;
+
+  private static MenuItemReview review(long id, long itemId, int stars) {
+    return MenuItemReview.builder().id(id).itemId(itemId).reviewerEmail("cgaucho@ucsb.edu").stars(stars).build();
+  }
+
+  @Test
+  void test_new_reviews_are_merged_into_the_summary() {
+    MenuItemReview review = review(1L, 7L, 4);
+    when(menuItemReviewRepository.save(review)).thenReturn(review);
+
+    assertEquals(review, menuItemReviewService.createReview(review));
+
+    verify(menuItemRatingSummaryRepository, times(1)).upsertDeltaMerge(
+        MenuItemRatingSummary.builder().itemId(7L).reviewCount(1).starTotal(4).stars4(1).build());
+    verify(menuItemRatingSummaryRepository, never()).upsertDeltaOnConflict(any());
+    verify(menuItemRatingSummaryRepository, never()).addDelta(any());
+    verify(menuItemRatingSummaryRepository, never()).save(any());
+  }
+
+  @Nested
+  @TestPropertySource(properties = "spring.datasource.url=jdbc:postgresql://localhost/reviews")
+  class OnPostgreSQL {
+
+    // the mocks of this context, not the outer one
+    @Autowired
+    MenuItemReviewRepository postgresReviewRepository;
+
+    @Autowired
+    MenuItemRatingSummaryRepository postgresSummaryRepository;
+
+    @Autowired
+    MenuItemReviewService postgresReviewService;
+
+    @Test
+    void test_new_reviews_are_upserted_on_conflict() {
+      MenuItemReview review = review(1L, 7L, 1);
+      when(postgresReviewRepository.save(review)).thenReturn(review);
+
+      postgresReviewService.createReview(review);
+
+      verify(postgresSummaryRepository, times(1)).upsertDeltaOnConflict(
+          MenuItemRatingSummary.builder().itemId(7L).reviewCount(1).starTotal(1).stars1(1).build());
+      verify(postgresSummaryRepository, never()).upsertDeltaMerge(any());
+    }
+  }
+
+  @Test
+  void test_editing_only_the_comments_leaves_the_summary_alone() {
+    when(menuItemReviewRepository.findByIdForUpdate(eq(1L))).thenReturn(Optional.of(review(1L, 7L, 3)));
+    MenuItemReview incoming = review(0L, 7L, 3);
+    incoming.setComments("changed my mind about the sauce");
+
+    menuItemReviewService.updateReview(1L, incoming, null);
+
+    assertEquals(1L, incoming.getId());
+    assertEquals(1L, incoming.getVersion());
+    verify(menuItemReviewRepository, times(1)).updateRow(incoming, 0L);
+    verify(menuItemRatingSummaryRepository, never()).addDelta(any());
+  }
+
+  @Test
+  void test_changing_the_stars_moves_the_review_between_histogram_buckets() {
+    when(menuItemReviewRepository.findByIdForUpdate(eq(1L))).thenReturn(Optional.of(review(1L, 7L, 3)));
+    when(menuItemRatingSummaryRepository.addDelta(any())).thenReturn(1);
+
+    menuItemReviewService.updateReview(1L, review(0L, 7L, 5), null);
+
+    verify(menuItemRatingSummaryRepository, times(1)).addDelta(
+        MenuItemRatingSummary.builder().itemId(7L).reviewCount(-1).starTotal(-3).stars3(-1).build());
+    verify(menuItemRatingSummaryRepository, times(1)).upsertDeltaMerge(
+        MenuItemRatingSummary.builder().itemId(7L).reviewCount(1).starTotal(5).stars5(1).build());
+  }
+
+  @Test
+  void test_update_of_missing_review_throws() {
+    when(menuItemReviewRepository.findByIdForUpdate(eq(1L))).thenReturn(Optional.empty());
+
+    assertThrows(EntityNotFoundException.class, () -> menuItemReviewService.updateReview(1L, review(0L, 7L, 5), null));
+    verify(menuItemReviewRepository, never()).updateRow(any(), any());
+  }
+
+  @Test
+  void test_update_of_a_review_that_moved_past_the_expected_version_throws() {
+    MenuItemReview current = review(1L, 7L, 3);
+    current.setVersion(2L);
+    when(menuItemReviewRepository.findByIdForUpdate(eq(1L))).thenReturn(Optional.of(current));
+
+    assertThrows(EntityPreconditionFailedException.class, () -> menuItemReviewService.updateReview(1L, review(0L, 7L, 5), 1L));
+    verify(menuItemReviewRepository, never()).updateRow(any(), any());
+    verify(menuItemRatingSummaryRepository, never()).addDelta(any());
+  }
+
+  @Test
+  void test_delete_removes_the_review_from_its_summary() {
+    when(menuItemReviewRepository.findByIdForUpdate(eq(1L))).thenReturn(Optional.of(review(1L, 7L, 2)));
+    when(menuItemRatingSummaryRepository.addDelta(any())).thenReturn(1);
+
+    menuItemReviewService.deleteReview(1L);
+
+    verify(menuItemReviewRepository, times(1)).deleteRow(1L);
+    verify(menuItemRatingSummaryRepository, times(1)).addDelta(
+        MenuItemRatingSummary.builder().itemId(7L).reviewCount(-1).starTotal(-2).stars2(-1).build());
+  }
+
+  @Test
+  void test_delete_never_inserts_a_summary_with_negative_counts() {
+    when(menuItemReviewRepository.findByIdForUpdate(eq(1L))).thenReturn(Optional.of(review(1L, 7L, 2)));
+    when(menuItemRatingSummaryRepository.addDelta(any())).thenReturn(0);
+
+    menuItemReviewService.deleteReview(1L);
+
+    verify(menuItemRatingSummaryRepository, never()).upsertDeltaMerge(any());
+    verify(menuItemRatingSummaryRepository, never()).upsertDeltaOnConflict(any());
+    verify(menuItemRatingSummaryRepository, never()).save(any());
+  }
+
+  @Test
+  void test_delete_of_missing_review_throws() {
+    when(menuItemReviewRepository.findByIdForUpdate(eq(1L))).thenReturn(Optional.empty());
+
+    assertThrows(EntityNotFoundException.class, () -> menuItemReviewService.deleteReview(1L));
+    verify(menuItemReviewRepository, never()).deleteRow(anyLong());
+  }
+
+  @Test
+  void test_recorded_reviews_are_applied_once_per_item() {
+    menuItemReviewService.recordReviews(List.of(review(1L, 7L, 5), review(2L, 8L, 1), review(3L, 7L, 4), review(4L, 7L, 9)));
+
+    verify(menuItemRatingSummaryRepository, times(2)).upsertDeltaMerge(any());
+    verify(menuItemRatingSummaryRepository, times(1)).upsertDeltaMerge(
+        MenuItemRatingSummary.builder().itemId(7L).reviewCount(3).starTotal(18).stars4(1).stars5(1).build());
+    verify(menuItemRatingSummaryRepository, times(1)).upsertDeltaMerge(
+        MenuItemRatingSummary.builder().itemId(8L).reviewCount(1).starTotal(1).stars1(1).build());
+  }
+
+  @Test
+  void test_backfill_inserts_the_missing_summaries() {
+    when(menuItemRatingSummaryRepository.insertMissingSummaries()).thenReturn(3);
+
+    menuItemReviewService.backfillSummaries();
+
+    verify(menuItemRatingSummaryRepository, times(1)).insertMissingSummaries();
+  }
+
+  @Test
+  void test_backfill_racing_another_instance_does_not_fail_startup() {
+    when(menuItemRatingSummaryRepository.insertMissingSummaries())
+        .thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+    menuItemReviewService.backfillSummaries();
+
+    verify(menuItemRatingSummaryRepository, times(1)).insertMissingSummaries();
+  }
+}
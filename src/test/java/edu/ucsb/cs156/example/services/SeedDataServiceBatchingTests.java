@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import edu.ucsb.cs156.example.QueryCountTestCase;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+
+public class SeedDataServiceBatchingTests extends QueryCountTestCase {
+
+  @Autowired
+  SeedDataService seedData;
+
+  @Autowired
+  UserRepository userRepository;
+
+  @Test
+  public void seeded_rows_go_out_in_jdbc_batches() {
+    long statements = statistics().getPrepareStatementCount();
+
+    assertEquals(500, seedData.seedTable(User.class, userRepository, 500, seedData::user, null));
+
+    // the count, then per 50 rows one batched insert and at most one call for the next block of ids
+    long used = statistics().getPrepareStatementCount() - statements;
+    assertTrue(used <= 1 + 2 * 10, "500 rows took " + used + " statements");
+    assertEquals(500, userRepository.count());
+  }
+}
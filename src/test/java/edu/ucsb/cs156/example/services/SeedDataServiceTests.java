@@ -0,0 +1,123 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = { SeedDataService.class, TableVersionService.class })
+@TestPropertySource(properties = { "app.seed.batchSize=2", "app.seed.users=5", "app.seed.menuItemReviews=3" })
+class SeedDataServiceTests {
+
+  @MockBean
+  EntityManager entityManager;
+
+  @MockBean
+  PlatformTransactionManager transactionManager;
+
+  @MockBean
+  UserRepository userRepository;
+
+  @MockBean
+  UCSBDiningCommonsMenuItemRepository menuItemRepository;
+
+  @MockBean
+  MenuItemReviewRepository menuItemReviewRepository;
+
+  @MockBean
+  HelpRequestRepository helpRequestRepository;
+
+  @MockBean
+  MenuItemReviewService menuItemReviewService;
+
+  @Autowired
+  SeedDataService seedData;
+
+  @Autowired
+  TableVersionService tableVersions;
+
+  @Test
+  void test_rows_depend_only_on_their_number() {
+    assertEquals(seedData.user(7), seedData.user(7));
+    assertNotEquals(seedData.user(7), seedData.user(8));
+    assertEquals(seedData.helpRequest(7), seedData.helpRequest(7));
+    assertEquals(seedData.menuItemReview(7, List.of(10L, 11L)), seedData.menuItemReview(7, List.of(10L, 11L)));
+  }
+
+  @Test
+  void test_reviews_only_name_existing_items_and_seeded_users() {
+    for (long n = 0; n < 100; n++) {
+      MenuItemReview review = seedData.menuItemReview(n, List.of(10L, 11L));
+      assertTrue(List.of(10L, 11L).contains(review.getItemId()));
+      assertTrue(review.getStars() >= 1 && review.getStars() <= 5);
+      assertTrue(review.getReviewerEmail().matches("seed-user-[0-4]@example.org"));
+    }
+  }
+
+  @Test
+  void test_only_missing_rows_are_added_in_batches() {
+    when(userRepository.count()).thenReturn(2L);
+    long before = tableVersions.stamp(User.class);
+
+    ArgumentCaptor<User> persisted = ArgumentCaptor.forClass(User.class);
+    assertEquals(3, seedData.seedTable(User.class, userRepository, 5, seedData::user, null));
+
+    verify(entityManager, times(3)).persist(persisted.capture());
+    assertEquals(List.of(seedData.user(2), seedData.user(3), seedData.user(4)), persisted.getAllValues());
+    verify(entityManager, times(2)).flush();
+    verify(entityManager, times(2)).clear();
+    assertTrue(tableVersions.stamp(User.class) > before);
+  }
+
+  @Test
+  void test_full_table_is_left_alone() {
+    when(userRepository.count()).thenReturn(5L);
+
+    assertEquals(0, seedData.seedTable(User.class, userRepository, 5, seedData::user, null));
+
+    verify(entityManager, never()).persist(any());
+  }
+
+  @Test
+  void test_seeded_reviews_are_counted_in_the_rating_summaries() {
+    when(menuItemRepository.findAllIds()).thenReturn(List.of(10L, 11L));
+    List<Integer> batchSizes = new ArrayList<>();
+    ArgumentCaptor<List<MenuItemReview>> batches = ArgumentCaptor.forClass(List.class);
+
+    seedData.seed();
+
+    verify(menuItemReviewService, times(2)).recordReviews(batches.capture());
+    batches.getAllValues().forEach(batch -> batchSizes.add(batch.size()));
+    assertEquals(List.of(2, 1), batchSizes);
+    verify(menuItemReviewService, never()).createReview(any());
+    verify(helpRequestRepository).count();
+    verify(entityManager, times(5 + 3)).persist(any());
+  }
+}
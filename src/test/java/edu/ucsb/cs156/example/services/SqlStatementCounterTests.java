@@ -0,0 +1,37 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class SqlStatementCounterTests {
+
+  SqlStatementCounter sqlStatements = new SqlStatementCounter();
+
+  @Test
+  void test_statements_are_counted_and_left_unchanged() {
+    long before = sqlStatements.count();
+
+    assertEquals("select 1", sqlStatements.inspect("select 1"));
+    sqlStatements.inspect("select 2");
+
+    assertEquals(before + 2, sqlStatements.count());
+  }
+
+  @Test
+  void test_each_thread_has_its_own_count() throws Exception {
+    sqlStatements.inspect("select 1");
+    long mine = sqlStatements.count();
+    long[] theirs = new long[1];
+
+    Thread other = new Thread(() -> {
+      sqlStatements.inspect("select 2");
+      theirs[0] = sqlStatements.count();
+    });
+    other.start();
+    other.join();
+
+    assertEquals(1, theirs[0]);
+    assertEquals(mine, sqlStatements.count());
+  }
+}
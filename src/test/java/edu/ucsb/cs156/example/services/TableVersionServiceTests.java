@@ -0,0 +1,93 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.events.TableChangedEvent;
+
+class TableVersionServiceTests {
+
+  /** A clock that only moves when the test moves it. */
+  static class TestClock extends Clock {
+    Instant now = Instant.parse("2022-05-01T12:00:00.250Z");
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+
+  TestClock clock = new TestClock();
+
+  TableVersionService tableVersions = new TableVersionService(clock);
+
+  @Test
+  void test_tables_start_at_the_boot_time() {
+    assertEquals(1651406400250000L, tableVersions.stamp(UCSBDate.class));
+    assertEquals(tableVersions.stamp(UCSBDate.class), tableVersions.stamp(UCSBOrganization.class));
+
+    // not until the boot second is over
+    assertEquals(-1, tableVersions.lastModified(UCSBDate.class));
+    clock.now = Instant.parse("2022-05-01T12:00:01Z");
+    assertEquals(1651406400000L, tableVersions.lastModified(UCSBDate.class));
+  }
+
+  @Test
+  void test_every_write_moves_only_its_own_table_forward() {
+    long dates = tableVersions.stamp(UCSBDate.class);
+    long orgs = tableVersions.stamp(UCSBOrganization.class);
+
+    clock.now = Instant.parse("2022-05-01T12:00:05.100Z");
+    for (int i = 0; i < 3; i++) {
+      tableVersions.onTableChanged(new TableChangedEvent(UCSBDate.class));
+    }
+
+    assertEquals(dates + 3, tableVersions.stamp(UCSBDate.class));
+    assertEquals(orgs, tableVersions.stamp(UCSBOrganization.class));
+    clock.now = Instant.parse("2022-05-01T12:00:06Z");
+    assertEquals(1651406405000L, tableVersions.lastModified(UCSBDate.class));
+    assertEquals(1651406400000L, tableVersions.lastModified(UCSBOrganization.class));
+  }
+
+  @Test
+  void test_a_burst_of_writes_never_dates_last_modified_into_the_future() {
+    clock.now = Instant.parse("2022-05-01T12:00:05.100Z");
+    for (int i = 0; i < 100; i++) {
+      tableVersions.onTableChanged(new TableChangedEvent(UCSBDate.class));
+      // another write can still come in this second, so there is no Last-Modified to give
+      assertEquals(-1, tableVersions.lastModified(UCSBDate.class));
+    }
+
+    clock.now = Instant.parse("2022-05-01T12:00:06Z");
+    assertEquals(1651406405000L, tableVersions.lastModified(UCSBDate.class));
+  }
+
+  @Test
+  void test_turned_off_there_is_neither_a_stamp_nor_a_last_modified() {
+    TableVersionService turnedOff = new TableVersionService(clock, false);
+
+    turnedOff.onTableChanged(new TableChangedEvent(UCSBDate.class));
+    clock.now = Instant.parse("2022-05-01T12:00:06Z");
+
+    assertEquals(-1, turnedOff.stamp(UCSBDate.class));
+    assertEquals(-1, turnedOff.lastModified(UCSBDate.class));
+  }
+}